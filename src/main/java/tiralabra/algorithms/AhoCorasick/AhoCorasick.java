@@ -1,12 +1,18 @@
 package tiralabra.algorithms.AhoCorasick;
 
+import tiralabra.algorithms.MatchSink;
+import tiralabra.algorithms.MatcherReport;
 import tiralabra.algorithms.StringMatcher;
 import tiralabra.algorithms.StringMatcherBuilder;
 import tiralabra.utils.ArrayList;
 import tiralabra.utils.Queue;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Represents a single node in the trie used by the Aho-Corasick algorithm.
@@ -20,8 +26,10 @@ class Node {
     /**
      * Children of this node.
      * Value of the edge leading to the child can be determined by inspecting the child's {@link #path}.
+     *
+     * Most nodes in a large trie have only one or two children, so the list is kept small initially.
      */
-    ArrayList<Node> children = new ArrayList<>();
+    ArrayList<Node> children = new ArrayList<>(2);
 
     /**
      * Link to the node which represents the longest possible suffix of this node's path.
@@ -40,6 +48,21 @@ class Node {
      */
     boolean accepting = false;
 
+    /**
+     * Index of the pattern represented by this node in the order the patterns were added.
+     * Used for prioritizing matches with {@link MatchSemantics#LEFTMOST_FIRST} and as the identifier of the
+     * pattern in reported matches. Only valid for accepting nodes.
+     */
+    int priority;
+
+    /**
+     * Nodes whose {@link #suffixLink} points to this node, i.e. the children of this node in the
+     * tree formed by the suffix links.
+     *
+     * Only maintained after the automaton has been modified incrementally and {@code null} if empty.
+     */
+    ArrayList<Node> suffixLinkReferrers;
+
     /**
      * Construct a new non-accepting trie node.
      *
@@ -75,6 +98,49 @@ class Node {
     byte getEdgeByte() {
         return path[path.length - 1];
     }
+
+    /**
+     * Removes a child node.
+     *
+     * @param child - The child to remove.
+     */
+    void removeChild(Node child) {
+        removeFrom(children, child);
+    }
+
+    /**
+     * Records that {@code referrer}'s suffix link points to this node.
+     *
+     * @param referrer - Node whose {@link #suffixLink} points to this node.
+     */
+    void addSuffixLinkReferrer(Node referrer) {
+        if (suffixLinkReferrers == null)
+            suffixLinkReferrers = new ArrayList<>(2);
+
+        suffixLinkReferrers.add(referrer);
+    }
+
+    /**
+     * Records that {@code referrer}'s suffix link no longer points to this node.
+     *
+     * @param referrer - Node whose {@link #suffixLink} used to point to this node.
+     */
+    void removeSuffixLinkReferrer(Node referrer) {
+        if (suffixLinkReferrers != null)
+            removeFrom(suffixLinkReferrers, referrer);
+    }
+
+    /**
+     * Removes a node from a list without maintaining the order of the list.
+     */
+    private static void removeFrom(ArrayList<Node> list, Node node) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == node) {
+                list.swapRemove(i);
+                return;
+            }
+        }
+    }
 }
 
 /**
@@ -91,20 +157,186 @@ public class AhoCorasick extends StringMatcher {
      */
     Node trieRoot = new Node(new byte[0]);
 
+    /**
+     * Pool on which the trie is constructed in parallel, or {@code null} for single-threaded construction.
+     */
+    private ForkJoinPool pool;
+
     /**
      * Current state of the state machine, represented by a node in the trie.
      */
     Node state = trieRoot;
 
+    /**
+     * Determines which of the found matches are reported.
+     */
+    private MatchSemantics semantics;
+
+    /**
+     * Priority given to the next pattern added with {@link #addPattern(byte[])}.
+     */
+    private int nextPriority;
+
+    /**
+     * Every pattern ever added to this matcher, indexed by its priority.
+     * Removed patterns are kept, so that the identifiers of already reported matches stay valid.
+     */
+    private ArrayList<byte[]> patternsById;
+
     /**
      * Constructs an instance which matches all of the strings in the provided dictionary.
      *
      * @param dictionary - List of byte string which this instance will match.
      */
     AhoCorasick(ArrayList<byte[]> dictionary) {
-        this.dictionary = dictionary;
+        this(dictionary, null, MatchSemantics.ALL_OVERLAPPING);
+    }
+
+    /**
+     * Constructs an instance which matches all of the strings in the provided dictionary.
+     *
+     * @param dictionary - List of byte string which this instance will match.
+     * @param pool - Pool used for constructing the trie in parallel or {@code null}
+     *               if the trie should be constructed on the current thread.
+     * @param semantics - Determines which of the found matches are reported.
+     */
+    AhoCorasick(ArrayList<byte[]> dictionary, ForkJoinPool pool, MatchSemantics semantics) {
+        // Copy the dictionary, as it can be modified with addPattern and removePattern.
+        this.dictionary = new ArrayList<>(Math.max(2, dictionary.size()));
+
+        this.patternsById = new ArrayList<>(Math.max(2, dictionary.size()));
+
+        for (int i = 0; i < dictionary.size(); i++) {
+            this.dictionary.add(dictionary.get(i));
+            this.patternsById.add(dictionary.get(i));
+        }
+
+        this.pool = pool;
+        this.semantics = semantics;
+        this.nextPriority = dictionary.size();
 
         constructTrie();
+
+        // The pool is only needed during construction.
+        this.pool = null;
+    }
+
+    /**
+     * Whether the trie and the dictionary are shared with the matcher this cursor was created from.
+     * A shared trie is copied before {@link #addPattern(byte[])} or {@link #removePattern(byte[])}
+     * modifies it, so that the other cursors are not affected.
+     */
+    private boolean trieShared = false;
+
+    /**
+     * Constructs an instance at the start of a new input stream, sharing the trie
+     * and the dictionary of another instance.
+     *
+     * @param compiled - The instance whose trie is shared. Its trie must not be modified afterwards.
+     */
+    private AhoCorasick(AhoCorasick compiled) {
+        this.dictionary = compiled.dictionary;
+        this.patternsById = compiled.patternsById;
+        this.trieRoot = compiled.trieRoot;
+        this.state = trieRoot;
+        this.semantics = compiled.semantics;
+        this.nextPriority = compiled.nextPriority;
+        this.trieShared = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The trie is shared copy-on-write: modifying the dictionary of the cursor gives it a private copy of the trie.
+     */
+    @Override
+    protected StringMatcher newCursor() {
+        return new AhoCorasick(this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+        super.reset();
+        state = trieRoot;
+        pendingMatch = null;
+        inputOffset = 0;
+    }
+
+    /**
+     * Replaces a shared trie with a private copy, along with the dictionary.
+     *
+     * The copy has the same nodes, priorities and links, so the current state
+     * and a pending match are carried over to the nodes with the same paths.
+     */
+    private void unshareTrie() {
+        if (!trieShared)
+            return;
+
+        Node original = trieRoot;
+        trieRoot = new Node(original.path);
+
+        Queue<Node> originals = new Queue<>(16);
+        Queue<Node> copies = new Queue<>(16);
+        originals.push(original);
+        copies.push(trieRoot);
+
+        while (!originals.empty()) {
+            Node node = originals.remove();
+            Node copy = copies.remove();
+
+            copy.accepting = node.accepting;
+            copy.priority = node.priority;
+
+            for (int i = 0; i < node.children.size(); i++) {
+                Node child = node.children.get(i);
+                Node childCopy = new Node(child.path);
+
+                copy.children.add(childCopy);
+                originals.push(child);
+                copies.push(childCopy);
+            }
+        }
+
+        // The links only depend on the shape of the trie and the accepting nodes, so they can be computed anew.
+        trieRoot.suffixLink = trieRoot;
+        linkLevels();
+
+        state = findNode(state.path);
+
+        if (pendingMatch != null)
+            pendingMatch = findNode(pendingMatch.path);
+
+        ArrayList<byte[]> sharedDictionary = dictionary;
+        ArrayList<byte[]> sharedPatternsById = patternsById;
+        dictionary = new ArrayList<>(Math.max(2, sharedDictionary.size()));
+        patternsById = new ArrayList<>(Math.max(2, sharedPatternsById.size()));
+
+        for (int i = 0; i < sharedDictionary.size(); i++) {
+            dictionary.add(sharedDictionary.get(i));
+        }
+
+        for (int i = 0; i < sharedPatternsById.size(); i++) {
+            patternsById.add(sharedPatternsById.get(i));
+        }
+
+        suffixLinksIndexed = false;
+        trieShared = false;
+    }
+
+    /**
+     * Finds the node representing a prefix which is known to be in the trie.
+     *
+     * @param path - The prefix.
+     */
+    private Node findNode(byte[] path) {
+        Node node = trieRoot;
+
+        for (byte b : path) {
+            node = node.getChild(b);
+        }
+
+        return node;
     }
 
     @Override
@@ -113,155 +345,634 @@ public class AhoCorasick extends StringMatcher {
     }
 
     /**
-     * Returns a {@link StringMatcherBuilder} for constructing Aho-Corasick matchers.
+     * {@inheritDoc}
      *
-     * @return A {@link StringMatcherBuilder} which constructs Aho-Corasick matchers.
+     * Patterns added with {@link #addPattern(byte[])} get the next free identifier. Duplicates of a
+     * pattern are reported using the identifier of the earliest copy.
      */
-    public static StringMatcherBuilder getBuilder() {
-        return new StringMatcherBuilder() {
-            ArrayList<byte[]> patterns = new ArrayList<>();
+    @Override
+    public byte[] getPattern(int patternId) {
+        return patternsById.get(patternId);
+    }
 
-            @Override
-            public StringMatcherBuilder addPattern(byte[] pattern) {
-                patterns.add(pattern);
-                return this;
-            }
+    /**
+     * {@inheritDoc}
+     *
+     * Reports the size and shape of the trie. Each node stores the whole path
+     * from the root, so the automaton takes memory in proportion to the sum of
+     * the depths of the nodes rather than to the number of nodes.
+     */
+    @Override
+    public MatcherReport explain() {
+        MatcherReport report = super.explain().setAlgorithm("Aho-Corasick");
+
+        int states = 0;
+        int transitions = 0;
+        int acceptingStates = 0;
+        int innerStates = 0;
+        int depth = 0;
+        long automatonBytes = 0;
+
+        boolean[] edgeBytes = new boolean[256];
+        int distinctEdgeBytes = 0;
+
+        Queue<Node> queue = new Queue<>(16);
+        queue.push(trieRoot);
+
+        while (queue.size() > 0) {
+            Node node = queue.remove();
+
+            states++;
+            transitions += node.children.size();
+            depth = Math.max(depth, node.path.length);
+
+            if (node.accepting)
+                acceptingStates++;
+
+            if (node.children.size() > 0)
+                innerStates++;
+
+            // Five references, a boolean and an int.
+            automatonBytes += MatcherReport.objectBytes(5 * MatcherReport.REFERENCE_BYTES + 1 + 4);
+            automatonBytes += MatcherReport.arrayBytes(node.path.length, 1);
+            automatonBytes += MatcherReport.listBytes(node.children.capacity());
+
+            if (node.suffixLinkReferrers != null)
+                automatonBytes += MatcherReport.listBytes(node.suffixLinkReferrers.capacity());
 
-            @Override
-            public StringMatcher buildMatcher() {
-                return new AhoCorasick(patterns);
+            for (Node child : node.children) {
+                int edge = child.getEdgeByte() & 0xFF;
+
+                if (!edgeBytes[edge]) {
+                    edgeBytes[edge] = true;
+                    distinctEdgeBytes++;
+                }
+
+                queue.push(child);
             }
-        };
+        }
+
+        report.add("states", states);
+        report.add("accepting states", acceptingStates);
+        report.add("transitions", transitions);
+        report.add("depth", depth);
+        report.add("distinct edge bytes", distinctEdgeBytes);
+        report.add("root fan-out", trieRoot.children.size());
+        report.add("mean fan-out of inner states", innerStates == 0 ? 0.0 : (double) transitions / innerStates);
+        report.add("match semantics", semantics.toString());
+        report.addMemory("automaton", automatonBytes);
+        report.addMemory("dictionary", MatcherReport.listBytes(dictionary.capacity()) + MatcherReport.listBytes(patternsById.capacity()));
+
+        return report;
+    }
+
+    /**
+     * Returns a {@link StringMatcherBuilder} for constructing Aho-Corasick matchers.
+     *
+     * @return A {@link StringMatcherBuilder} which constructs Aho-Corasick matchers.
+     */
+    public static AhoCorasickBuilder getBuilder() {
+        return new AhoCorasickBuilder();
     }
 
     /**
      * Constructs the state machine trie from the pattern dictionary.
+     *
+     * Construction happens in two phases: first the patterns are inserted into the trie,
+     * after which the {@code suffixLink} and {@code dictionarySuffixLink} fields are populated
+     * by traversing the trie breadth-first, one depth level at a time.
+     *
+     * For large dictionaries both phases are executed in parallel on {@link #pool}.
      */
     private void constructTrie() {
-        // Keep count of the total number of nodes in the trie.
-        int node_count = 0;
-
         // The root (i.e. empty string) is the suffix of itself.
         // The root node is also used as a sentinel in loops traversing the trie.
         trieRoot.suffixLink = trieRoot;
 
+        if (pool != null && dictionary.size() >= PARALLEL_INSERT_THRESHOLD) {
+            insertPatternsParallel();
+        } else {
+            for (int i = 0; i < dictionary.size(); i++) {
+                insertPattern(trieRoot, dictionary.get(i), i);
+            }
+        }
+
+        linkLevels();
+    }
+
+    /**
+     * Minimum number of patterns in the dictionary for the trie insertion to be done in parallel.
+     */
+    static final int PARALLEL_INSERT_THRESHOLD = 4096;
+
+    /**
+     * Minimum number of nodes on a single depth level of the trie for the suffix links
+     * of that level to be computed in parallel. Also used as the size of the chunks
+     * into which the level is split.
+     */
+    static final int PARALLEL_LINK_THRESHOLD = 2048;
+
+    /**
+     * Inserts a pattern into the trie, creating new nodes if they don't already exist.
+     *
+     * @param start - Node from which the insertion is started. The path of this node
+     *                must be a prefix of the pattern.
+     * @param pattern - The pattern to insert.
+     * @param priority - Index of the pattern in the dictionary.
+     */
+    private static void insertPattern(Node start, byte[] pattern, int priority) {
+        if (pattern.length == 0)
+            return;
+
+        Node node = start;
+
+        // The following loop starts from the `start` node and traverses the path
+        // specified by the pattern, creating new nodes if they don't already exist.
+
+        for (int j = start.path.length; j < pattern.length; j++) {
+            Node child = node.getChild(pattern[j]);
+
+            if (child == null) {
+                // A node at path pattern[0..j+1] does not exist, so let's create it
+                // and insert it into the trie.
+
+                child = new Node(Arrays.copyOf(pattern, j+1));
+                node.children.add(child);
+            }
+
+            node = child;
+        }
+
+        // The last node on the path represents the whole pattern, so mark it to be an accepting state.
+        // The node might have already existed if the pattern is a prefix of some other pattern.
+        // If the pattern is a duplicate, the earliest copy determines it's priority.
+
+        if (!node.accepting || node.priority > priority) {
+            node.accepting = true;
+            node.priority = priority;
+        }
+    }
+
+    /**
+     * Inserts the dictionary into the trie in parallel.
+     *
+     * The patterns are sharded by their first byte. Patterns in different shards share
+     * no nodes besides the trie root, so each of the shards can be inserted independently.
+     */
+    private void insertPatternsParallel() {
+        // Count the number of patterns in each shard so that we can allocate exactly sized shards.
+
+        int[] shardSizes = new int[256];
+
         for (int i = 0; i < dictionary.size(); i++) {
             byte[] pattern = dictionary.get(i);
 
-            Node node = trieRoot;
+            if (pattern.length > 0)
+                shardSizes[pattern[0] & 0xFF]++;
+        }
+
+        // Each shard contains the indexes of it's patterns in the dictionary.
 
-            // The following loop starts from the the trie root and traverses the path
-            // specified by the pattern, creating new nodes if they don't already exist.
+        int[][] shards = new int[256][];
 
-            byteLoop:
-            for (int j = 0; j < pattern.length; j++) {
-                Node child = node.getChild(pattern[j]);
+        for (int i = 0; i < 256; i++) {
+            if (shardSizes[i] > 0) {
+                shards[i] = new int[shardSizes[i]];
+                shardSizes[i] = 0;
+            }
+        }
 
-                if (child != null) {
-                    node = child;
-                    continue byteLoop;
+        for (int i = 0; i < dictionary.size(); i++) {
+            byte[] pattern = dictionary.get(i);
+
+            if (pattern.length > 0) {
+                int shard = pattern[0] & 0xFF;
+                shards[shard][shardSizes[shard]++] = i;
+            }
+        }
+
+        // The root's children are created here, on a single thread, as they are the
+        // only nodes shared between the shards.
+
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(256);
+
+        for (int i = 0; i < 256; i++) {
+            if (shards[i] == null)
+                continue;
+
+            Node shardRoot = new Node(new byte[] { (byte) i });
+            trieRoot.children.add(shardRoot);
+
+            int[] shard = shards[i];
+
+            tasks.add(pool.submit(() -> {
+                for (int index : shard) {
+                    insertPattern(shardRoot, dictionary.get(index), index);
                 }
+            }));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Populates the {@code suffixLink} and {@code dictionarySuffixLink} fields of every node in the trie.
+     *
+     * The trie is traversed breadth-first, one depth level at a time. The links of a node only depend
+     * on the links of nodes strictly above it, so all of the nodes on a single level can be processed
+     * concurrently once the previous levels have been processed.
+     */
+    private void linkLevels() {
+        // Nodes on the current depth level and their parents at the same indexes.
+        Node[] nodes = new Node[] { trieRoot };
+        Node[] parents = new Node[] { null };
 
-                // A node at path pattern[0..j+1] does not exist, so let's create it.
+        while (true) {
+            // Collect the next depth level.
 
-                byte[] path = Arrays.copyOf(pattern, j+1);
-                Node newChild = new Node(path);
+            int levelSize = 0;
 
-                // If this is the end of the current pattern, mark the node to be an accepting state.
+            for (Node node : nodes) {
+                levelSize += node.children.size();
+            }
 
-                if (j == pattern.length-1) {
-                    newChild.accepting = true;
+            if (levelSize == 0)
+                break;
+
+            Node[] level = new Node[levelSize];
+            Node[] levelParents = new Node[levelSize];
+            int index = 0;
+
+            for (Node node : nodes) {
+                for (int i = 0; i < node.children.size(); i++) {
+                    level[index] = node.children.get(i);
+                    levelParents[index] = node;
+                    index++;
                 }
+            }
+
+            nodes = level;
+            parents = levelParents;
+
+            if (pool != null && nodes.length >= PARALLEL_LINK_THRESHOLD) {
+                pool.invoke(new LinkTask(nodes, parents, 0, nodes.length));
+            } else {
+                linkNodes(nodes, parents, 0, nodes.length);
+            }
+        }
+    }
+
+    /**
+     * Task computing the suffix links for a slice of a single trie level.
+     */
+    private class LinkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Node[] nodes;
+        private final Node[] parents;
+        private final int start;
+        private final int end;
+
+        LinkTask(Node[] nodes, Node[] parents, int start, int end) {
+            this.nodes = nodes;
+            this.parents = parents;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_LINK_THRESHOLD) {
+                linkNodes(nodes, parents, start, end);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+
+            invokeAll(
+                new LinkTask(nodes, parents, start, middle),
+                new LinkTask(nodes, parents, middle, end)
+            );
+        }
+    }
+
+    /**
+     * Computes the suffix links for the nodes {@code nodes[start..end]}.
+     *
+     * NOTE: All nodes strictly above these nodes in the trie must have their links populated.
+     *
+     * @param nodes - Nodes on a single depth level of the trie.
+     * @param parents - Parents of the nodes in {@code nodes}.
+     * @param start - Index of the first node to process.
+     * @param end - Index one past the last node to process.
+     */
+    private void linkNodes(Node[] nodes, Node[] parents, int start, int end) {
+        for (int i = start; i < end; i++) {
+            Node child = nodes[i];
+            Node parent = parents[i];
+            byte edge = child.getEdgeByte();
+
+            if (parent == trieRoot) {
+                // The only proper suffix of a single byte is the empty string.
+                child.suffixLink = trieRoot;
+                child.dictionarySuffixLink = null;
+                continue;
+            }
+
+            // Start from the `child`'s parent's suffix and traverse up the trie, following the `suffixLink`s,
+            // until we find a node with a leaving edge with the same label as between `parent` and `child`.
+            // The node into which this edge leads to is the `child`'s `suffixLink`.
+
+            Node suffixNode = parent.suffixLink;
+            Node suffixNodeChild = suffixNode.getChild(edge);
+
+            while (suffixNodeChild == null && suffixNode != trieRoot) {
+                suffixNode = suffixNode.suffixLink;
+                suffixNodeChild = suffixNode.getChild(edge);
+            }
+
+            // If no non-trivial suffix is found, use the trie root.
+            // The trie root represents an empty string and thus is a trivial suffix of every node.
+
+            child.suffixLink = suffixNodeChild != null ? suffixNodeChild : trieRoot;
+
+            // The accepting node with the longest common suffix is either the `suffixLink` itself
+            // or the node pointed by it's `dictionarySuffixLink`.
+
+            child.dictionarySuffixLink = child.suffixLink.accepting
+                ? child.suffixLink
+                : child.suffixLink.dictionarySuffixLink;
+        }
+    }
+
+    /**
+     * Whether the {@code suffixLinkReferrers} fields of the nodes have been populated.
+     */
+    private boolean suffixLinksIndexed = false;
+
+    /**
+     * Adds a pattern to the dictionary of this matcher without reconstructing the whole automaton.
+     *
+     * Only the suffix and dictionary suffix links affected by the new nodes are updated.
+     * The state of the matcher is preserved, but occurrences of the new pattern which begin before
+     * the pattern was added might not be reported. A match held back by leftmost match semantics
+     * is reported before the automaton is modified.
+     *
+     * NOTE: This method must not be called concurrently with any other method of this matcher.
+     *
+     * @param pattern - The pattern to add.
+     *
+     * @return {@code false} if the pattern is empty or already in the dictionary, {@code true} otherwise.
+     */
+    public boolean addPattern(byte[] pattern) {
+        if (pattern.length == 0)
+            return false;
+
+        unshareTrie();
+        indexSuffixLinks();
+        flushPendingMatches();
+
+        Node node = trieRoot;
+
+        for (int j = 0; j < pattern.length; j++) {
+            Node child = node.getChild(pattern[j]);
+
+            if (child == null) {
+                child = new Node(Arrays.copyOf(pattern, j+1));
+                node.children.add(child);
+
+                // The links of `node` are valid at this point, since the path is created top-down.
+                linkNodes(new Node[] { child }, new Node[] { node }, 0, 1);
+                child.suffixLink.addSuffixLinkReferrer(child);
+
+                redirectSuffixLinks(node, child);
+            }
+
+            node = child;
+        }
+
+        if (node.accepting)
+            return false;
+
+        node.accepting = true;
+        node.priority = nextPriority++;
+        dictionary.add(pattern);
+        patternsById.add(pattern);
+
+        // Nodes which have `node` as a suffix now have a new closest accepting suffix.
+        updateDictionarySuffixLinks(node);
+
+        return true;
+    }
+
+    /**
+     * Removes a pattern from the dictionary of this matcher without reconstructing the whole automaton.
+     *
+     * Nodes which are no longer needed are pruned from the trie and links pointing to them are
+     * redirected to their suffixes. If the current state of the matcher is pruned, the matcher
+     * continues from the longest suffix of the state which remains in the trie. A match held back by
+     * leftmost match semantics is reported before the automaton is modified.
+     *
+     * NOTE: This method must not be called concurrently with any other method of this matcher.
+     *
+     * @param pattern - The pattern to remove.
+     *
+     * @return {@code true} if the pattern was removed and {@code false} if it was not in the dictionary.
+     */
+    public boolean removePattern(byte[] pattern) {
+        // Nodes on the path to the pattern's node indexed by their depth.
+        Node[] path = new Node[pattern.length + 1];
+        path[0] = trieRoot;
+
+        for (int j = 0; j < pattern.length; j++) {
+            path[j+1] = path[j].getChild(pattern[j]);
+
+            if (path[j+1] == null)
+                return false;
+        }
+
+        Node node = path[pattern.length];
+
+        if (node == trieRoot || !node.accepting)
+            return false;
+
+        if (trieShared) {
+            // The path above leads through the shared trie, so look the pattern up again in the copy.
+            unshareTrie();
+            return removePattern(pattern);
+        }
+
+        indexSuffixLinks();
+        flushPendingMatches();
+
+        node.accepting = false;
+
+        // The dictionary may contain duplicates of the pattern, so make sure all of them are removed.
+
+        int index = 0;
+
+        while (index < dictionary.size()) {
+            if (Arrays.equals(dictionary.get(index), pattern)) {
+                dictionary.swapRemove(index);
+            } else {
+                index++;
+            }
+        }
+
+        // Nodes which had `node` as their closest accepting suffix now need to point to `node`'s.
+        updateDictionarySuffixLinks(node);
+
+        // Prune the nodes which are neither accepting nor on a path to an accepting node.
+
+        for (int depth = pattern.length; depth > 0; depth--) {
+            node = path[depth];
+
+            if (node.accepting || node.children.size() > 0)
+                break;
 
-                // Insert the node into the trie and immediately traverse into it.
+            path[depth - 1].removeChild(node);
+            node.suffixLink.removeSuffixLinkReferrer(node);
 
-                node.children.add(newChild);
-                node = newChild;
+            // Nodes which had `node` as their longest suffix now have `node`'s longest suffix as theirs.
+            // Since `node` is not accepting, their dictionary suffix links remain unchanged.
 
-                node_count++;
+            if (node.suffixLinkReferrers != null) {
+                for (int i = 0; i < node.suffixLinkReferrers.size(); i++) {
+                    Node referrer = node.suffixLinkReferrers.get(i);
+                    referrer.suffixLink = node.suffixLink;
+                    node.suffixLink.addSuffixLinkReferrer(referrer);
+                }
             }
+
+            if (state == node)
+                state = node.suffixLink;
         }
 
-        // Create a queue with capacity to hold all of our nodes if necessary.
-        Queue<Node> stack = new Queue<>(node_count);
+        return true;
+    }
 
-        // Start from the root...
-        stack.push(trieRoot);
+    /**
+     * Populates the {@code suffixLinkReferrers} fields of all nodes in the trie, if not already populated.
+     *
+     * This is done lazily, so that matchers whose dictionary is never modified do not pay for it.
+     */
+    private void indexSuffixLinks() {
+        if (suffixLinksIndexed)
+            return;
 
-        // ...and traverse down the trie breadth-first.
-        while (!stack.empty()) {
-            Node node = stack.remove();
+        Queue<Node> queue = new Queue<>(16);
+        queue.push(trieRoot);
 
-            // We could process `node` here...
+        while (!queue.empty()) {
+            Node node = queue.remove();
 
             for (int i = 0; i < node.children.size(); i++) {
                 Node child = node.children.get(i);
-                stack.push(child);
+                child.suffixLink.addSuffixLinkReferrer(child);
+                queue.push(child);
+            }
+        }
 
-                // ...but instead we process it's children here.
+        suffixLinksIndexed = true;
+    }
 
-                // This way we can have the child's parent in scope without any additional book keeping.
-                // We can do this because aren't interested in the root node itself, as it cannot have
-                // non-trivial suffixes.
+    /**
+     * Redirects the suffix links of existing nodes to a newly inserted node where needed.
+     *
+     * The nodes whose longest suffix might now be {@code child} are the children (with the same edge byte)
+     * of the nodes which have {@code parent} as a suffix, i.e. the nodes in the subtree of {@code parent}
+     * in the tree formed by the suffix links.
+     *
+     * @param parent - Parent of the inserted node.
+     * @param child - The inserted node.
+     */
+    private void redirectSuffixLinks(Node parent, Node child) {
+        byte edge = child.getEdgeByte();
 
-                // NOTE: Loop invariant:
-                //   Up to this point, we have processed all nodes strictly above this node in the trie.
-                //   This means that all those nodes have their `suffixLink` field populated, including `node`,
-                //   `child`'s parent.
+        Queue<Node> queue = new Queue<>(16);
+        pushSuffixLinkReferrers(queue, parent);
 
-                // Start from the `child`'s parent...
-                Node suffixNode = node.suffixLink;
+        while (!queue.empty()) {
+            Node node = queue.remove();
+            Node candidate = node.getChild(edge);
 
-                // ... and traverse up the trie, following the `suffixLink`s.
-                do {
+            if (candidate == null) {
+                pushSuffixLinkReferrers(queue, node);
+                continue;
+            }
 
-                    // Find the node with the longest common prefix with `node` (the parent) and
-                    // a leaving edge with the same label as between `node` and `child`.
-                    // The node into which this edge leads to is the `child`'s `suffixLink`.
+            // If `candidate` exists, all nodes below `node` in the suffix link tree have
+            // `candidate` or some longer node as their suffix, so they are not affected.
 
-                    if (child.suffixLink == null) {
-                        Node suffixNodeChild = suffixNode.getChild(child.getEdgeByte());
+            if (candidate.suffixLink.path.length < child.path.length) {
+                candidate.suffixLink.removeSuffixLinkReferrer(candidate);
+                candidate.suffixLink = child;
+                child.addSuffixLinkReferrer(candidate);
 
-                        if (suffixNodeChild != null && suffixNodeChild != child) {
-                            child.suffixLink = suffixNodeChild;
-                        }
-                    }
+                Node dictionarySuffixLink = child.accepting ? child : child.dictionarySuffixLink;
 
-                    // Find the accepting node with longest common suffix.
-                    // That node is the `child`'s `dictionarySuffixLink`.
+                if (candidate.dictionarySuffixLink != dictionarySuffixLink) {
+                    candidate.dictionarySuffixLink = dictionarySuffixLink;
 
-                    if (child.dictionarySuffixLink == null) {
-                        if (suffixNode.accepting) {
-                            child.dictionarySuffixLink = suffixNode;
-                        }
-                    }
+                    if (!candidate.accepting)
+                        updateDictionarySuffixLinks(candidate);
+                }
+            }
+        }
+    }
 
-                    // If both `suffixLink` and `dictionarySuffixLink` fields have been populated,
-                    // we can break out of this loop.
+    /**
+     * Recomputes the dictionary suffix links of the nodes below {@code node} in the suffix link tree,
+     * after {@code node}'s accepting status or dictionary suffix link has changed.
+     *
+     * @param node - The node which has changed.
+     */
+    private void updateDictionarySuffixLinks(Node node) {
+        Queue<Node> queue = new Queue<>(16);
+        queue.push(node);
 
-                    if (child.suffixLink != null && child.dictionarySuffixLink != null)
-                        break;
+        while (!queue.empty()) {
+            Node suffix = queue.remove();
+            Node dictionarySuffixLink = suffix.accepting ? suffix : suffix.dictionarySuffixLink;
 
-                    // Traverse to the next node following `suffixLink` and terminating
-                    // when the root node is reached.
-                } while ((suffixNode = suffixNode.suffixLink) != trieRoot);
+            if (suffix.suffixLinkReferrers == null)
+                continue;
 
-                // If no non-trivial suffix is found, use the trie root.
+            for (int i = 0; i < suffix.suffixLinkReferrers.size(); i++) {
+                Node referrer = suffix.suffixLinkReferrers.get(i);
 
-                // The trie root represents an empty string and thus is
-                // a trivial suffix of every node.
+                if (referrer.dictionarySuffixLink == dictionarySuffixLink)
+                    continue;
 
-                if (child.suffixLink == null) {
-                    child.suffixLink = trieRoot;
-                }
+                referrer.dictionarySuffixLink = dictionarySuffixLink;
+
+                // The referrers of an accepting node always use the node itself as their
+                // dictionary suffix link, so there is no need to descend further.
+
+                if (!referrer.accepting)
+                    queue.push(referrer);
             }
         }
     }
 
+    /**
+     * Pushes the nodes whose suffix link points to {@code node} to a queue.
+     */
+    private static void pushSuffixLinkReferrers(Queue<Node> queue, Node node) {
+        if (node.suffixLinkReferrers == null)
+            return;
+
+        for (int i = 0; i < node.suffixLinkReferrers.size(); i++) {
+            queue.push(node.suffixLinkReferrers.get(i));
+        }
+    }
+
     /**
      * Current offset in the input stream.
      */
-    private int inputOffset = 0;
+    private long inputOffset = 0;
 
     /** {@inheritDoc} */
     @Override
@@ -273,71 +984,201 @@ public class AhoCorasick extends StringMatcher {
         return size;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int pushBuffer(ByteBuffer source) {
+        int size = source.remaining();
+
+        for (int i = source.position(); i < source.limit(); i++) {
+            pushByte(source.get(i));
+        }
+
+        source.position(source.limit());
+
+        return size;
+    }
+
     /**
-     * Transition the state machine into the next state.
+     * {@inheritDoc}
      *
-     * Checks if that state is an accepting state and handles any possible found matches.
+     * The automaton is run over the array with a local state. Leftmost match semantics
+     * hold matches back, so they are searched using a cursor instead.
+     */
+    @Override
+    protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+        if (semantics != MatchSemantics.ALL_OVERLAPPING && semantics != MatchSemantics.NON_OVERLAPPING) {
+            super.searchAll(haystack, from, to, sink);
+            return;
+        }
+
+        Node current = trieRoot;
+
+        for (int i = from; i < to; i++) {
+            current = nextState(current, haystack[i]);
+
+            Node match = current.accepting ? current : current.dictionarySuffixLink;
+
+            if (semantics == MatchSemantics.NON_OVERLAPPING) {
+                if (match != null) {
+                    sink.onMatch(i - match.path.length + 1, match.priority);
+                    current = trieRoot;
+                }
+
+                continue;
+            }
+
+            while (match != null) {
+                sink.onMatch(i - match.path.length + 1, match.priority);
+                match = match.dictionarySuffixLink;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
      *
-     * @param newState - New state for the state machine.
+     * A match starting at or before the earliest found match would have to be a suffix
+     * of the input which is in the trie, so the search stops once the current state is
+     * shorter than the distance to the earliest found match.
      */
-    private void transition(Node newState) {
-        state = newState;
+    @Override
+    protected Match searchFirst(byte[] haystack, int from, int to) {
+        if (semantics != MatchSemantics.ALL_OVERLAPPING)
+            return super.searchFirst(haystack, from, to);
 
-        if (state.accepting) {
-            // The found matches can be determined by traversing the trie from the accepting
-            // state upwards, following the `dictionarySuffixLink` field. All of the nodes on this
-            // path are matches.
+        Node current = trieRoot;
+        Node first = null;
+        int firstStart = 0;
 
-            Node dictSuffixNode = state;
+        for (int i = from; i < to; i++) {
+            current = nextState(current, haystack[i]);
 
-            while (dictSuffixNode != null) {
-                addMatch(inputOffset - dictSuffixNode.path.length + 1, dictSuffixNode.path);
-                dictSuffixNode = dictSuffixNode.dictionarySuffixLink;
+            for (Node match = current.accepting ? current : current.dictionarySuffixLink; match != null; match = match.dictionarySuffixLink) {
+                int start = i - match.path.length + 1;
+
+                if (first == null || start < firstStart) {
+                    first = match;
+                    firstStart = start;
+                }
             }
+
+            if (first != null && i - current.path.length + 1 >= firstStart)
+                break;
         }
+
+        return first == null ? null : new Match(firstStart, patternsById.get(first.priority));
     }
 
     /**
-     * Processes a single byte of input.
+     * {@inheritDoc}
      *
-     * @param b - The next input byte.
+     * Only the path of the current state can begin a match, as it is the longest suffix of the input
+     * which is in the trie. With the other match semantics the state, and which matches are reported at all,
+     * depend on where the matches reported earlier ended, so no number of following bytes is enough to
+     * tell. {@link #reportsAllMatches()} is false for them, and they must be scanned from the start
+     * of the input rather than in separate chunks.
+     */
+    @Override
+    protected int partialMatchLength() {
+        if (semantics != MatchSemantics.ALL_OVERLAPPING)
+            return super.partialMatchLength();
+
+        return state.path.length;
+    }
+
+    /**
+     * {@inheritDoc}
      *
-     * @return This implementation always consumes the input immediately, and so this method returns always true.
+     * Only {@link MatchSemantics#ALL_OVERLAPPING} reports every match. The other semantics suppress the matches
+     * overlapping the ones reported before them.
      */
     @Override
-    public boolean pushByte(byte b) {
-        boolean match = false;
+    protected boolean reportsAllMatches() {
+        return semantics == MatchSemantics.ALL_OVERLAPPING;
+    }
 
+    /**
+     * Determines the next state of the state machine.
+     *
+     * @param current - Current state of the state machine.
+     * @param b - The next input byte.
+     *
+     * @return The node representing the longest suffix of the input, which is contained in the trie.
+     */
+    private Node nextState(Node current, byte b) {
         // Traverse the trie, starting from the node representing the current state.
 
-        Node suffixNode = state;
+        Node suffixNode = current;
 
-        do {
+        while (true) {
             Node suffixNodeChild = suffixNode.getChild(b);
 
             // If there is a valid transition for the current node with the input byte `b`,
-            // make that transition and break out of the loop.
-            if (suffixNodeChild != null) {
-                transition(suffixNodeChild);
-                match = true;
-                break;
-            }
+            // that transition is our next state.
+            if (suffixNodeChild != null)
+                return suffixNodeChild;
+
+            // If the root node was reached during the traversal and no valid transition
+            // for the input byte `b` was found, default to a transition to the root node.
+
+            if (suffixNode == trieRoot)
+                return trieRoot;
 
             // If no such transition exists, traverse to the node pointed
             // by `suffixLink` and look for a similar transition there.
 
             suffixNode = suffixNode.suffixLink;
+        }
+    }
 
-            // Terminate if the root node is reached.
+    /**
+     * Reports all of the matches ending at the current state.
+     *
+     * The found matches can be determined by traversing the trie from the current
+     * state upwards, following the `dictionarySuffixLink` field. All of the nodes on this
+     * path are matches. The state itself is a match only if it is accepting.
+     */
+    private void reportAllMatches() {
+        Node dictSuffixNode = state.accepting ? state : state.dictionarySuffixLink;
 
-        } while (suffixNode != trieRoot);
+        while (dictSuffixNode != null) {
+            addMatch(inputOffset - dictSuffixNode.path.length + 1, dictSuffixNode.priority);
+            dictSuffixNode = dictSuffixNode.dictionarySuffixLink;
+        }
+    }
 
-        // If the root node was reached during the above traversal and
-        // no valid transition for the input byte `b` was found,
-        // default to a transition to the root node.
+    /**
+     * Processes a single byte of input.
+     *
+     * @param b - The next input byte.
+     *
+     * @return This implementation always consumes the input immediately, and so this method returns always true.
+     */
+    @Override
+    public boolean pushByte(byte b) {
+        switch (semantics) {
+            case ALL_OVERLAPPING:
+                state = nextState(state, b);
+                reportAllMatches();
+                break;
+
+            case NON_OVERLAPPING:
+                state = nextState(state, b);
 
-        if (!match) {
-            transition(trieRoot);
+                // Report only the longest of the matches ending here and start over from the root,
+                // so that the next match cannot overlap this one.
+
+                Node match = state.accepting ? state : state.dictionarySuffixLink;
+
+                if (match != null) {
+                    addMatch(inputOffset - match.path.length + 1, match.priority);
+                    state = trieRoot;
+                }
+
+                break;
+
+            default:
+                processLeftmost(b, inputOffset);
         }
 
         // NOTE: Make sure that the above code does not do early returns,
@@ -346,4 +1187,122 @@ public class AhoCorasick extends StringMatcher {
 
         return true;
     }
+
+    /**
+     * The best match found so far, which has not yet been reported because a match starting
+     * further left or a better match starting at the same offset might still be found.
+     *
+     * Only used with the leftmost match semantics. {@code null} if there is no such match.
+     */
+    private Node pendingMatch;
+
+    /**
+     * Start offset of {@link #pendingMatch} in the input stream.
+     */
+    private long pendingMatchStart;
+
+    /**
+     * Processes a single byte of input using the leftmost match semantics.
+     *
+     * A found match is held in {@link #pendingMatch} until no match in progress can start at or
+     * before it. When the match is reported, the automaton is restarted from the end of the match
+     * and the input following the match is processed again. The replayed bytes are always
+     * contained in the path of the previous state, so no separate input buffer is needed.
+     *
+     * @param b - The next input byte.
+     * @param offset - Offset of the byte in the input stream.
+     */
+    private void processLeftmost(byte b, long offset) {
+        Node previous = state;
+        state = nextState(state, b);
+
+        // The leftmost offset from which a match in progress could start.
+        long inProgressStart = offset - state.path.length + 1;
+
+        if (pendingMatch != null && inProgressStart > pendingMatchStart) {
+            long matchEnd = reportPendingMatch();
+
+            // NOTE: Loop invariant:
+            //   While a match is pending, the path of the state covers the input from the start of the
+            //   pending match onwards. Thus the bytes between the end of the match and `offset` can be
+            //   read from the previous state's path.
+
+            byte[] history = previous.path;
+            long historyStart = offset - history.length;
+
+            for (long i = matchEnd; i < offset; i++) {
+                processLeftmost(history[(int) (i - historyStart)], i);
+            }
+
+            processLeftmost(b, offset);
+            return;
+        }
+
+        // The longest match ending at this offset is the one starting furthest left.
+
+        Node match = state.accepting ? state : state.dictionarySuffixLink;
+
+        if (match == null)
+            return;
+
+        long matchStart = offset - match.path.length + 1;
+
+        boolean better;
+
+        if (pendingMatch == null || matchStart < pendingMatchStart) {
+            better = true;
+        } else if (matchStart > pendingMatchStart) {
+            better = false;
+        } else if (semantics == MatchSemantics.LEFTMOST_LONGEST) {
+            // A match ending later with the same start is always longer.
+            better = true;
+        } else {
+            better = match.priority < pendingMatch.priority;
+        }
+
+        if (better) {
+            pendingMatch = match;
+            pendingMatchStart = matchStart;
+        }
+    }
+
+    /**
+     * Reports the pending match and restarts the automaton from the root.
+     *
+     * @return Offset of the first byte after the reported match.
+     */
+    private long reportPendingMatch() {
+        addMatch(pendingMatchStart, pendingMatch.priority);
+
+        long matchEnd = pendingMatchStart + pendingMatch.path.length;
+
+        pendingMatch = null;
+        state = trieRoot;
+
+        return matchEnd;
+    }
+
+    /**
+     * Reports the pending match and any matches following it in the input processed so far,
+     * as if the input stream had ended.
+     */
+    private void flushPendingMatches() {
+        while (pendingMatch != null) {
+            byte[] history = state.path;
+            long historyStart = inputOffset - history.length;
+
+            long matchEnd = reportPendingMatch();
+
+            for (long i = matchEnd; i < inputOffset; i++) {
+                processLeftmost(history[(int) (i - historyStart)], i);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void finish() {
+        flushPendingMatches();
+        super.finish();
+    }
 }
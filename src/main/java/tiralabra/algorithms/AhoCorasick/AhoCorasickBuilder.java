@@ -0,0 +1,68 @@
+package tiralabra.algorithms.AhoCorasick;
+
+import tiralabra.algorithms.StringMatcher;
+import tiralabra.algorithms.StringMatcherBuilder;
+import tiralabra.utils.ArrayList;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builder for constructing {@link AhoCorasick} matchers.
+ */
+public class AhoCorasickBuilder implements StringMatcherBuilder {
+    /**
+     * List of the patterns matched by the constructed matchers.
+     */
+    private ArrayList<byte[]> patterns = new ArrayList<>();
+
+    /**
+     * Pool used for constructing the trie of large dictionaries in parallel.
+     */
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Determines which of the found matches are reported by the constructed matchers.
+     */
+    private MatchSemantics semantics = MatchSemantics.ALL_OVERLAPPING;
+
+    /**
+     * Set the pool on which the automaton is constructed.
+     *
+     * Construction is parallelized only for dictionaries large enough to benefit from it.
+     *
+     * @param pool - A fork-join pool or {@code null} to always construct the automaton on the calling thread.
+     *
+     * @return Reference to the builder for method chaining.
+     */
+    public AhoCorasickBuilder setConstructionPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Set the semantics used for deciding which of the overlapping matches are reported.
+     *
+     * Defaults to {@link MatchSemantics#ALL_OVERLAPPING}.
+     *
+     * @param semantics - The match semantics.
+     *
+     * @return Reference to the builder for method chaining.
+     */
+    public AhoCorasickBuilder setMatchSemantics(MatchSemantics semantics) {
+        this.semantics = semantics;
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public StringMatcherBuilder addPattern(byte[] pattern) {
+        patterns.add(pattern);
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public StringMatcher buildMatcher() {
+        return new AhoCorasick(patterns, pool, semantics);
+    }
+}
@@ -0,0 +1,32 @@
+package tiralabra.algorithms.AhoCorasick;
+
+/**
+ * Determines which matches an {@link AhoCorasick} matcher reports when the found matches overlap.
+ *
+ * Matches suppressed by the selected semantics are never reported by the matcher.
+ */
+public enum MatchSemantics {
+    /**
+     * Every occurrence of every pattern is reported, including overlapping and nested occurrences.
+     */
+    ALL_OVERLAPPING,
+
+    /**
+     * Matches are reported as soon as they are found, choosing the longest of the matches ending
+     * at the same offset. Matching restarts after each reported match, so reported matches never overlap.
+     */
+    NON_OVERLAPPING,
+
+    /**
+     * Of the overlapping matches, the one starting furthest left is reported. If multiple matches
+     * start at the same offset, the one whose pattern was added first is reported.
+     * Reported matches never overlap.
+     */
+    LEFTMOST_FIRST,
+
+    /**
+     * Of the overlapping matches, the one starting furthest left is reported. If multiple matches
+     * start at the same offset, the longest one is reported. Reported matches never overlap.
+     */
+    LEFTMOST_LONGEST,
+}
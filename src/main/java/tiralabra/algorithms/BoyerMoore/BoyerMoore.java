@@ -5,11 +5,13 @@
 
 package tiralabra.algorithms.BoyerMoore;
 
+import tiralabra.algorithms.MatchSink;
+import tiralabra.algorithms.MatcherReport;
 import tiralabra.algorithms.StringMatcher;
 import tiralabra.algorithms.StringMatcherBuilder;
 import tiralabra.algorithms.SingleStringMatcherBuilder;
 import tiralabra.utils.ArrayList;
-import tiralabra.utils.RingBuffer;
+import tiralabra.utils.InputWindow;
 
 import java.util.Iterator;
 
@@ -21,14 +23,39 @@ public class BoyerMoore extends StringMatcher {
 
   public BoyerMoore(byte[] pattern) {
     this.pattern = pattern;
-    this.backbuffer_size = pattern.length - 1;
-    // this.cursor = pattern.length - 1;
 
     preprocess_bad_character_table();
     preprocess_good_suffix_table();
     preprocess_full_shift_table();
   }
 
+  /**
+   * Creates an instance at the start of a new input stream, sharing the pattern
+   * and the shift tables of another instance.
+   *
+   * @param compiled - The instance whose tables are shared.
+   */
+  private BoyerMoore(BoyerMoore compiled) {
+    this.pattern = compiled.pattern;
+    this.bad_character_table = compiled.bad_character_table;
+    this.good_suffix_table = compiled.good_suffix_table;
+    this.full_shift_table = compiled.full_shift_table;
+  }
+
+  @Override
+  protected StringMatcher newCursor() {
+    return new BoyerMoore(this);
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    cursor = 0;
+
+    if (input_window != null)
+      input_window.clear();
+  }
+
   public static StringMatcherBuilder getBuilder() {
     return new SingleStringMatcherBuilder() {
       public StringMatcher buildMatcher(byte[] pattern) {
@@ -55,6 +82,70 @@ public class BoyerMoore extends StringMatcher {
     };
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The matcher only has the pattern with identifier 0.
+   */
+  @Override
+  public byte[] getPattern(int patternId) {
+    return pattern;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The expected shifts are those of the bad character rule after a mismatch
+   * on the last byte of the pattern, averaged over uniformly distributed input
+   * bytes and over input made of the bytes of the pattern.
+   */
+  @Override
+  public MatcherReport explain() {
+    MatcherReport report = super.explain().setAlgorithm("Boyer-Moore");
+
+    report.add("pattern length", pattern.length);
+
+    if (pattern.length == 0)
+      return report;
+
+    long badCharacterBytes = 0;
+
+    for (int i = 0; i < 256; i++) {
+      @SuppressWarnings("unchecked")
+      ArrayList<Integer> occurrences = (ArrayList<Integer>) bad_character_table[i];
+      badCharacterBytes += MatcherReport.listBytes(occurrences.capacity());
+
+      // Integers outside the range cached by Integer.valueOf are boxed separately.
+      for (int j = 0; j < occurrences.size(); j++) {
+        if (occurrences.get(j) > 127)
+          badCharacterBytes += MatcherReport.objectBytes(4);
+      }
+    }
+
+    int last = pattern.length - 1;
+    long uniformShift = 0;
+    long patternShift = 0;
+
+    for (int i = 0; i < 256; i++) {
+      uniformShift += Math.max(1, last - (int) bad_character_table[i].get(last));
+    }
+
+    for (int i = 0; i < pattern.length; i++) {
+      patternShift += Math.max(1, last - (int) bad_character_table[pattern[i] & 0xFF].get(last));
+    }
+
+    report.add("expected shift (uniform bytes)", (double) uniformShift / 256);
+    report.add("expected shift (pattern bytes)", (double) patternShift / pattern.length);
+    report.addMemory("bad character table", MatcherReport.arrayBytes(256, MatcherReport.REFERENCE_BYTES) + badCharacterBytes);
+    report.addMemory("good suffix table", MatcherReport.arrayBytes(good_suffix_table.length, 4));
+    report.addMemory("full shift table", MatcherReport.arrayBytes(full_shift_table.length, 4));
+
+    if (input_window != null)
+      report.addMemory("carry-over window", MatcherReport.arrayBytes(input_window.capacity(), 1));
+
+    return report;
+  }
+
   /**
    * Calculates length of the longest common prefix of substrings at offsets
    * {@code offset1} and {@code offset1} from offset {@code start} in
@@ -179,7 +270,7 @@ public class BoyerMoore extends StringMatcher {
     }
 
     for (int i = 0; i < pattern.length; i++) {
-      byte b = pattern[i];
+      int b = pattern[i] & 0xFF;
 
       alpha[b] = i;
 
@@ -229,53 +320,170 @@ public class BoyerMoore extends StringMatcher {
   }
 
   /**
-   * The number of bytes we keep around in the buffer after processing them.
+   * Number of bytes the pattern can be shifted after a full match.
+   */
+  private int match_shift() {
+    return pattern.length <= 1 ? 1 : pattern.length - full_shift_table[1];
+  }
+
+  /**
+   * Number of bytes the pattern can be shifted after a mismatch, according to the
+   * bad character rule or the good suffix rule, whichever gives the longer shift.
+   *
+   * @param pattern_offset - Offset in the pattern at which the mismatch occurred.
+   * @param mismatched - The input byte which did not match the pattern.
+   */
+  private int mismatch_shift(int pattern_offset, byte mismatched) {
+    int char_shift = pattern_offset - (int) bad_character_table[mismatched & 0xFF].get(pattern_offset);
+    int suffix_shift = 0;
+
+    if (pattern_offset + 1 == pattern.length) {
+      suffix_shift = 1;
+    } else if (good_suffix_table[pattern_offset + 1] == -1) {
+      suffix_shift = pattern.length - full_shift_table[pattern_offset + 1];
+    } else {
+      suffix_shift = pattern.length - 1 - good_suffix_table[pattern_offset + 1];
+    }
+
+    return Math.max(char_shift, suffix_shift);
+  }
+
+  /**
+   * Searches a segment of an array, shifting the pattern over the array directly.
+   *
+   * @param window - Start of the first alignment of the pattern in the array.
+   * @param sink - Receiver of the matches, or {@code null} to stop at the first match.
+   *
+   * @return Start of the first match if {@code sink} is {@code null} and there is a match,
+   *         otherwise the start of the first alignment which does not fit in the segment.
+   */
+  private int search(byte[] haystack, int window, int to, MatchSink sink) {
+    while (window + pattern.length <= to) {
+      int pattern_offset = pattern.length - 1;
+
+      while (pattern_offset >= 0 && pattern[pattern_offset] == haystack[window + pattern_offset]) {
+        pattern_offset -= 1;
+      }
+
+      if (pattern_offset == -1) {
+        if (sink == null)
+          return window;
+
+        sink.onMatch(window, 0);
+        window += match_shift();
+      } else {
+        window += mismatch_shift(pattern_offset, haystack[window + pattern_offset]);
+      }
+    }
+
+    return window;
+  }
+
+  @Override
+  protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+    search(haystack, from, to, sink);
+  }
+
+  @Override
+  protected Match searchFirst(byte[] haystack, int from, int to) {
+    int start = search(haystack, from, to, null);
+    return start + pattern.length <= to ? new Match(start, pattern) : null;
+  }
+
+  /**
+   * The input pushed so far: the array being pushed and the last bytes of the previous ones.
+   * Allocated on first push, as the input of a wrapped matcher is read from a shared window instead.
+   */
+  private InputWindow input_window;
+
+  /**
+   * Start of the next alignment of the pattern in the input stream.
+   */
+  private long cursor = 0;
+
+  /**
+   * Offset in the input stream corresponding to index 0 of the array being pushed.
    */
-  private int backbuffer_size;
+  private long array_base = 0;
 
   /**
-   * Cursor in the input stream, indexed from the start of input and not from the start of the buffer.
+   * Reports the matches found in the array being pushed at their offsets in the input stream.
    */
-  private int cursor = 0;
+  private MatchSink stream_sink = (index, patternId) -> addMatch(array_base + index, patternId);
 
   /**
-   * Start of the buffer expressed in bytes since the start of input.
+   * Buffer for pushing single bytes.
    */
-  private int buffer_start = 0;
+  private byte[] single_byte = new byte[1];
 
-  public void process() {
-    RingBuffer buffer = getBuffer();
+  @Override
+  public boolean pushByte(byte b) {
+    single_byte[0] = b;
+    pushBytes(single_byte, 0, 1);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The bytes are searched in place and all of them are accepted. Only the last
+   * {@code pattern.length - 1} bytes are copied, as the next alignments may start in them.
+   */
+  @Override
+  public int pushBytes(byte[] bytes, int offset, int size) {
+    if (input_window == null)
+      input_window = new InputWindow(requiredHistory());
 
-    while (buffer.size() > backbuffer_size + cursor - buffer_start) {
-      int drop_bytes = Math.max(0, cursor - buffer_start - backbuffer_size);
-      buffer.advance(drop_bytes);
-      buffer_start += drop_bytes;
+    input_window.beginSegment(bytes, offset, size);
+    pushSegment(input_window);
+    input_window.endSegment();
 
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * An alignment of the pattern can start at most {@code pattern.length - 1} bytes before the end of the input.
+   */
+  @Override
+  protected int requiredHistory() {
+    return Math.max(0, pattern.length - 1);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The alignments starting before the segment are compared through the window,
+   * and the rest against the segment's array directly.
+   */
+  @Override
+  protected void pushSegment(InputWindow window) {
+    byte[] bytes = window.segmentArray();
+    int offset = window.segmentOffset();
+    int size = window.segmentSize();
+
+    long segment_start = window.segmentStart();
+    long end = window.end();
+
+    while (cursor < segment_start && cursor + pattern.length <= end) {
       int pattern_offset = pattern.length - 1;
-      int buffer_offset = backbuffer_size + cursor - buffer_start;
 
-      while (pattern_offset >= 0 && pattern[pattern_offset] == (buffer.get(buffer_offset) & 0xFF)) {
+      while (pattern_offset >= 0 && pattern[pattern_offset] == window.get(cursor + pattern_offset)) {
         pattern_offset -= 1;
-        buffer_offset -= 1;
       }
 
       if (pattern_offset == -1) {
-        addMatch(buffer_start + buffer_offset + 1, pattern);
-        cursor += pattern.length == 0 ? 1 : pattern.length - full_shift_table[1];
+        addMatch(cursor, 0);
+        cursor += match_shift();
       } else {
-        int char_shift = pattern_offset - (int) bad_character_table[buffer.get(buffer_offset) & 0xFF].get(pattern_offset);
-        int suffix_shift = 0;
-
-        if (pattern_offset + 1 == pattern.length) {
-          suffix_shift = 1;
-        } else if (good_suffix_table[pattern_offset + 1] == -1) {
-          suffix_shift = pattern.length - full_shift_table[pattern_offset + 1];
-        } else {
-          suffix_shift = pattern.length - 1 - good_suffix_table[pattern_offset + 1];
-        }
-
-        cursor += Math.max(char_shift, suffix_shift);
+        cursor += mismatch_shift(pattern_offset, window.get(cursor + pattern_offset));
       }
     }
+
+    if (cursor >= segment_start) {
+      array_base = segment_start - offset;
+      cursor = array_base + search(bytes, (int) (cursor - array_base), offset + size, stream_sink);
+    }
   }
 }
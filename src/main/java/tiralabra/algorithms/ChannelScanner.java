@@ -0,0 +1,84 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Helper for searching the whole contents of a {@link ReadableByteChannel}.
+ *
+ * The channel is read into a direct buffer, which is reused for all reads and
+ * scans, and the matcher reads the bytes from the buffer in place using
+ * {@link StringMatcher#pushBuffer(ByteBuffer)}. Input is therefore not copied
+ * into heap arrays on the way from the channel to the matcher.
+ *
+ * NOTE: A scanner must not be used by multiple threads at the same time, as they would share the buffer.
+ */
+public class ChannelScanner {
+  /**
+   * Size of the buffer used by {@link #ChannelScanner()}.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Buffer into which the channels are read.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Create a scanner with a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+   */
+  public ChannelScanner() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Create a scanner with a buffer of the specified size.
+   *
+   * @param bufferSize - Size of the direct buffer in bytes.
+   */
+  public ChannelScanner(int bufferSize) {
+    buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  /**
+   * Push the contents of a channel to a matcher until the end of the channel is reached,
+   * after which the matcher is finished.
+   *
+   * The channel should be in blocking mode.
+   *
+   * @param channel - The channel to read.
+   * @param matcher - The matcher to which the input is pushed.
+   *
+   * @return Number of bytes read from the channel.
+   *
+   * @throws IOException if reading the channel fails.
+   */
+  public long scan(ReadableByteChannel channel, StringMatcher matcher) throws IOException {
+    long total = 0;
+
+    buffer.clear();
+
+    while (channel.read(buffer) != -1) {
+      buffer.flip();
+      total += buffer.remaining();
+
+      while (buffer.hasRemaining()) {
+        if (matcher.pushBuffer(buffer) == 0)
+          matcher.process();
+      }
+
+      matcher.process();
+      buffer.clear();
+    }
+
+    matcher.finish();
+
+    return total;
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+import tiralabra.algorithms.StringMatcher.Match;
+
+/**
+ * The data structures of a search algorithm built for a set of patterns,
+ * separated from the state of scanning any particular input stream.
+ *
+ * The set is built once with {@link StringMatcherBuilder#compile()} and is not
+ * modified afterwards, so it can be shared between threads. Each input stream is
+ * scanned with its own cursor created by {@link #newCursor()}, which only holds
+ * the state of that stream and can be reused for another stream after
+ * {@link StringMatcher#reset()}.
+ *
+ * Inputs which are already in memory as a whole can be searched without a cursor
+ * using {@link #findAll}, {@link #findFirst} and {@link #count}, which read the
+ * array directly and do not buffer any input.
+ */
+public class CompiledPatternSet {
+  /**
+   * Matcher owning the shared data structures. Never receives any input.
+   */
+  private final StringMatcher prototype;
+
+  /**
+   * Create a set sharing the data structures of a matcher.
+   *
+   * @param prototype - Newly built matcher, which must not be used by anyone else.
+   */
+  CompiledPatternSet(StringMatcher prototype) {
+    this.prototype = prototype;
+  }
+
+  /**
+   * Create a matcher for scanning a new input stream for the patterns of this set.
+   *
+   * The data structures built for the patterns are shared, so creating a cursor
+   * only allocates the state of a single input stream.
+   *
+   * @return A new matcher at the start of its input stream.
+   */
+  public StringMatcher newCursor() {
+    return prototype.newCursor();
+  }
+
+  /**
+   * Search a segment of an array for all occurrences of the patterns.
+   *
+   * The matches are reported in the order the algorithm finds them, which is not
+   * necessarily the order of their offsets. May be called by several threads at once.
+   *
+   * @param haystack - Array to search.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   * @param sink - Receiver of the matches. The offsets of the matches are indices in {@code haystack}.
+   *
+   * @throws IndexOutOfBoundsException if the segment is not within the array.
+   */
+  public void findAll(byte[] haystack, int from, int to, MatchSink sink) {
+    Objects.checkFromToIndex(from, to, haystack.length);
+    prototype.searchAll(haystack, from, to, sink);
+  }
+
+  /**
+   * Search a segment of an array for the occurrence of the patterns which starts first.
+   *
+   * The search stops as soon as no later occurrence can start before the found one.
+   * May be called by several threads at once.
+   *
+   * @param haystack - Array to search.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   *
+   * @return The match, whose offset is an index in {@code haystack}, or {@code null} if the patterns do not occur.
+   *
+   * @throws IndexOutOfBoundsException if the segment is not within the array.
+   */
+  public Match findFirst(byte[] haystack, int from, int to) {
+    Objects.checkFromToIndex(from, to, haystack.length);
+    return prototype.searchFirst(haystack, from, to);
+  }
+
+  /**
+   * Count the occurrences of the patterns in a segment of an array.
+   *
+   * May be called by several threads at once.
+   *
+   * @param haystack - Array to search.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   *
+   * @return Number of matches.
+   *
+   * @throws IndexOutOfBoundsException if the segment is not within the array.
+   */
+  public long count(byte[] haystack, int from, int to) {
+    long[] count = { 0 };
+    findAll(haystack, from, to, (offset, patternId) -> count[0]++);
+    return count[0];
+  }
+
+  /**
+   * Tell whether the cursors of this set report every occurrence of every pattern, including the overlapping ones.
+   * If they do not, the matches depend on where the earlier matches ended, and the input can only be scanned from its start.
+   *
+   * @return Whether all matches are reported.
+   */
+  public boolean reportsAllMatches() {
+    return prototype.reportsAllMatches();
+  }
+
+  /**
+   * Get an iterator over the patterns of this set.
+   *
+   * @return An iterator over the patterns.
+   */
+  public Iterator<byte[]> getPatterns() {
+    return prototype.getPatterns();
+  }
+
+  /**
+   * Get the pattern identified by a pattern identifier reported by the cursors.
+   *
+   * @param patternId - Identifier of the pattern.
+   *
+   * @return The pattern.
+   */
+  public byte[] getPattern(int patternId) {
+    return prototype.getPattern(patternId);
+  }
+
+  /**
+   * Describe the data structures built for the patterns.
+   *
+   * @return A report of the structures.
+   */
+  public MatcherReport explain() {
+    return prototype.explain();
+  }
+}
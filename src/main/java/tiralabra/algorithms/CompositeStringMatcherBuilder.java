@@ -0,0 +1,539 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms;
+
+import tiralabra.algorithms.AhoCorasick.AhoCorasick;
+import tiralabra.algorithms.BoyerMoore.BoyerMoore;
+import tiralabra.algorithms.RabinKarp.BitShiftHash;
+import tiralabra.algorithms.RabinKarp.RabinKarp;
+import tiralabra.utils.ArrayList;
+import tiralabra.utils.LongIntHeap;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Builder which partitions its patterns into classes by their length and
+ * uses a different search algorithm for each of the classes.
+ *
+ * No single algorithm performs well for both very short and very long patterns.
+ * By default short patterns are matched using Aho-Corasick, medium-length patterns
+ * using Boyer-Moore and long patterns using Rabin-Karp.
+ *
+ * The created {@link StringMatcher} feeds the same input to each of the algorithms
+ * and merges their matches.
+ */
+public class CompositeStringMatcherBuilder implements StringMatcherBuilder {
+  /**
+   * Patterns this long or shorter belong to the short length class.
+   */
+  private int shortMaxLength = 4;
+
+  /**
+   * Patterns this long or longer belong to the long length class.
+   */
+  private int longMinLength = 256;
+
+  /**
+   * The patterns of a length class and the algorithm used for them.
+   */
+  private static class LengthClass {
+    /**
+     * Factory for builders of the algorithm.
+     */
+    StringMatcherBuilderFactory factory;
+
+    /**
+     * Patterns of the class in the order they were added.
+     */
+    ArrayList<byte[]> patterns = new ArrayList<>();
+
+    /**
+     * Identifiers of the patterns, i.e. their indices in {@link #allPatterns}.
+     */
+    ArrayList<Integer> ids = new ArrayList<>();
+
+    LengthClass(StringMatcherBuilderFactory factory) {
+      this.factory = factory;
+    }
+  }
+
+  /**
+   * The length classes, in the order short, medium, long.
+   */
+  private LengthClass[] lengthClasses = new LengthClass[] {
+    new LengthClass(AhoCorasick::getBuilder),
+    new LengthClass(BoyerMoore::getBuilder),
+    new LengthClass(() -> RabinKarp.getBuilder().setHashFunction(BitShiftHash::new)),
+  };
+
+  /**
+   * All of the patterns in the order they were added.
+   */
+  private ArrayList<byte[]> allPatterns = new ArrayList<>();
+
+  /**
+   * String matcher class whose instances are returned by the composite builder.
+   */
+  public class CompositeStringMatcher extends StringMatcher {
+    /**
+     * Matchers for each of the non-empty length classes.
+     */
+    private StringMatcher[] matchers;
+
+    /**
+     * Matches reported by any of the {@link #matchers}, but not yet passed on.
+     * The pattern identifiers have already been translated to the identifiers of this matcher.
+     *
+     * A heap rather than a queue per matcher, since a matcher reporting its matches where
+     * they end, like Aho-Corasick, does not report them in the order of their offsets.
+     */
+    private LongIntHeap pending = new LongIntHeap(16);
+
+    /**
+     * Identifiers of the patterns of each of the {@link #matchers}, indexed by the
+     * identifiers the wrapped matcher reports.
+     */
+    private int[][] classPatternIds;
+
+    /**
+     * The patterns of this matcher indexed by their identifiers.
+     */
+    private byte[][] patternsById;
+
+    /**
+     * Number of bytes pushed to this matcher so far.
+     */
+    private long inputLength = 0;
+
+    /**
+     * Length of the longest pattern of any of the length classes.
+     */
+    private int longestPattern = 0;
+
+    /**
+     * Initialize the matcher by building a matcher for each non-empty length class.
+     */
+    CompositeStringMatcher() {
+      int count = 0;
+
+      for (LengthClass lengthClass : lengthClasses) {
+        if (lengthClass.patterns.size() > 0)
+          count++;
+      }
+
+      matchers = new StringMatcher[count];
+      classPatternIds = new int[count][];
+      patternsById = new byte[allPatterns.size()][];
+      count = 0;
+
+      for (int i = 0; i < patternsById.length; i++) {
+        patternsById[i] = allPatterns.get(i);
+      }
+
+      for (LengthClass lengthClass : lengthClasses) {
+        if (lengthClass.patterns.size() == 0)
+          continue;
+
+        StringMatcherBuilder builder = lengthClass.factory.createBuilder();
+        int[] ids = new int[lengthClass.patterns.size()];
+
+        for (int j = 0; j < ids.length; j++) {
+          byte[] pattern = lengthClass.patterns.get(j);
+          builder.addPattern(pattern);
+          ids[j] = lengthClass.ids.get(j);
+          longestPattern = Math.max(longestPattern, pattern.length);
+        }
+
+        matchers[count] = builder.buildMatcher();
+        classPatternIds[count] = ids;
+        count++;
+      }
+
+      connectMatchers();
+    }
+
+    /**
+     * Initialize the matcher with cursors of the matchers of another instance.
+     *
+     * @param compiled - The instance whose matchers' structures are shared.
+     */
+    private CompositeStringMatcher(CompositeStringMatcher compiled) {
+      int count = compiled.matchers.length;
+
+      matchers = new StringMatcher[count];
+      classPatternIds = compiled.classPatternIds;
+      patternsById = compiled.patternsById;
+      longestPattern = compiled.longestPattern;
+
+      for (int i = 0; i < count; i++) {
+        matchers[i] = compiled.matchers[i].newCursor();
+      }
+
+      connectMatchers();
+    }
+
+    /**
+     * Direct the matches of each of the {@link #matchers} into {@link #pending},
+     * translating the pattern identifiers.
+     */
+    private void connectMatchers() {
+      for (int i = 0; i < matchers.length; i++) {
+        int[] ids = classPatternIds[i];
+
+        matchers[i].setMatchSink((offset, patternId) -> pending.push(offset, ids[patternId]));
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Creates a cursor for the matcher of each length class.
+     */
+    @Override
+    protected StringMatcher newCursor() {
+      return new CompositeStringMatcher(this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+      super.reset();
+
+      for (StringMatcher matcher : matchers) {
+        matcher.reset();
+      }
+
+      pending.clear();
+
+      inputLength = 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] getPattern(int patternId) {
+      return patternsById[patternId];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterator<byte[]> getPatterns() {
+      return new Iterator<byte[]>() {
+        private int matcher_index = 0;
+        private Iterator<byte[]> matcher_iterator = matchers.length > 0 ? matchers[0].getPatterns() : null;
+
+        @Override
+        public boolean hasNext() {
+          while (matcher_iterator != null && !matcher_iterator.hasNext()) {
+            matcher_index++;
+            matcher_iterator = matcher_index < matchers.length ? matchers[matcher_index].getPatterns() : null;
+          }
+
+          return matcher_iterator != null;
+        }
+
+        @Override
+        public byte[] next() {
+          if (!hasNext())
+            throw new NoSuchElementException();
+
+          return matcher_iterator.next();
+        }
+      };
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Includes the report of the matcher of each non-empty length class.
+     */
+    @Override
+    public MatcherReport explain() {
+      MatcherReport report = new MatcherReport("Composite");
+
+      int count = 0;
+      Iterator<byte[]> it = getPatterns();
+
+      while (it.hasNext()) {
+        it.next();
+        count++;
+      }
+
+      report.add("patterns", count);
+      report.add("length classes", matchers.length);
+      report.add("longest pattern", longestPattern);
+
+      for (StringMatcher matcher : matchers) {
+        report.addChild(matcher.explain());
+      }
+
+      return report;
+    }
+
+    /**
+     * Moves the matches found by the wrapped matchers into this matcher's match queue,
+     * merging them in the order of their offsets.
+     *
+     * The wrapped matchers report matches with different delays, so a match is only passed on
+     * once no matcher can report a match starting before it.
+     *
+     * @param watermark - Offset before which all of the matches have been found by all of the matchers.
+     */
+    private void collectMatches(long watermark) {
+      mergeMatches(pending, watermark, queueMatch);
+    }
+
+    /**
+     * Passes {@link #collectMatches(long)} matches on to {@link #addMatch(long, int)}.
+     */
+    private MatchSink queueMatch = this::addMatch;
+
+    /**
+     * {@inheritDoc}
+     *
+     * The matcher of each length class searches the whole segment, after which
+     * their matches are merged like when streaming.
+     */
+    @Override
+    protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+      LongIntHeap found = new LongIntHeap(16);
+
+      for (int i = 0; i < matchers.length; i++) {
+        int[] ids = classPatternIds[i];
+
+        matchers[i].searchAll(haystack, from, to, (offset, patternId) -> found.push(offset, ids[patternId]));
+      }
+
+      mergeMatches(found, Long.MAX_VALUE, sink);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Once a match has been found, the matchers of the other length classes only search
+     * the part of the segment where a pattern could start before that match.
+     */
+    @Override
+    protected Match searchFirst(byte[] haystack, int from, int to) {
+      Match first = null;
+
+      for (StringMatcher matcher : matchers) {
+        int end = to;
+
+        if (first != null)
+          end = (int) Math.max(from, Math.min(to, first.getOffset() - 1 + longestPattern));
+
+        Match match = matcher.searchFirst(haystack, from, end);
+
+        if (match != null && (first == null || match.getOffset() < first.getOffset()))
+          first = match;
+      }
+
+      return first;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean pushByte(byte b) {
+      for (StringMatcher matcher : matchers) {
+        while (!matcher.pushByte(b))
+          matcher.process();
+      }
+
+      inputLength++;
+
+      return true;
+    }
+
+    /**
+     * Pushes the whole segment to each of the wrapped matchers.
+     *
+     * All of the matchers read from the same array, so the input is not copied by this matcher.
+     *
+     * @return Always {@code size}.
+     */
+    @Override
+    public int pushBytes(byte[] bytes, int offset, int size) {
+      for (StringMatcher matcher : matchers) {
+        int consumed = 0;
+
+        while (consumed < size) {
+          int accepted = matcher.pushBytes(bytes, offset + consumed, size - consumed);
+          consumed += accepted;
+
+          if (accepted == 0 || consumed < size)
+            matcher.process();
+        }
+
+        matcher.process();
+      }
+
+      inputLength += size;
+      collectMatches(inputLength - longestPattern + 1);
+
+      return size;
+    }
+
+    /**
+     * Pushes the remaining bytes of the buffer to each of the wrapped matchers, which read them in place.
+     *
+     * @return The number of remaining bytes the buffer had.
+     */
+    @Override
+    public int pushBuffer(ByteBuffer source) {
+      int start = source.position();
+
+      for (StringMatcher matcher : matchers) {
+        source.position(start);
+
+        while (source.hasRemaining()) {
+          if (matcher.pushBuffer(source) == 0 || source.hasRemaining())
+            matcher.process();
+        }
+
+        matcher.process();
+      }
+
+      source.position(source.limit());
+      inputLength += source.limit() - start;
+      collectMatches(inputLength - longestPattern + 1);
+
+      return source.limit() - start;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The matches of the length classes are all passed on, so this holds if it holds for each of their matchers.
+     */
+    @Override
+    protected boolean reportsAllMatches() {
+      for (StringMatcher matcher : matchers) {
+        if (!matcher.reportsAllMatches())
+          return false;
+      }
+
+      return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void process() {
+      for (StringMatcher matcher : matchers) {
+        matcher.process();
+      }
+
+      collectMatches(inputLength - longestPattern + 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void finish() {
+      for (StringMatcher matcher : matchers) {
+        matcher.finish();
+      }
+
+      collectMatches(Long.MAX_VALUE);
+      super.finish();
+    }
+  }
+
+  /**
+   * Moves matches from a heap to a sink in the order of their offsets, as long as
+   * the offsets are before a watermark.
+   *
+   * @param matches - Heap of the offsets and pattern identifiers of the matches.
+   * @param watermark - Offset before which all of the matches have been found.
+   * @param sink - Receiver of the merged matches.
+   */
+  private static void mergeMatches(LongIntHeap matches, long watermark, MatchSink sink) {
+    while (!matches.empty() && matches.peekLong() < watermark) {
+      sink.onMatch(matches.peekLong(), matches.peekInt());
+      matches.remove();
+    }
+  }
+
+  /**
+   * Set the pattern lengths at which the length classes change.
+   *
+   * @param shortMaxLength - Length of the longest pattern in the short length class.
+   * @param longMinLength - Length of the shortest pattern in the long length class.
+   *
+   * @return Reference to the builder for method chaining.
+   */
+  public CompositeStringMatcherBuilder setLengthClasses(int shortMaxLength, int longMinLength) {
+    this.shortMaxLength = shortMaxLength;
+    this.longMinLength = longMinLength;
+    return this;
+  }
+
+  /**
+   * Set the algorithm used for the patterns in the short length class.
+   *
+   * @param factory - Factory for builders of the algorithm.
+   *
+   * @return Reference to the builder for method chaining.
+   */
+  public CompositeStringMatcherBuilder setShortPatternAlgorithm(StringMatcherBuilderFactory factory) {
+    lengthClasses[0].factory = factory;
+    return this;
+  }
+
+  /**
+   * Set the algorithm used for the patterns in the medium length class.
+   *
+   * @param factory - Factory for builders of the algorithm.
+   *
+   * @return Reference to the builder for method chaining.
+   */
+  public CompositeStringMatcherBuilder setMediumPatternAlgorithm(StringMatcherBuilderFactory factory) {
+    lengthClasses[1].factory = factory;
+    return this;
+  }
+
+  /**
+   * Set the algorithm used for the patterns in the long length class.
+   *
+   * @param factory - Factory for builders of the algorithm.
+   *
+   * @return Reference to the builder for method chaining.
+   */
+  public CompositeStringMatcherBuilder setLongPatternAlgorithm(StringMatcherBuilderFactory factory) {
+    lengthClasses[2].factory = factory;
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public StringMatcherBuilder addPattern(byte[] pattern) {
+    LengthClass lengthClass;
+
+    if (pattern.length <= shortMaxLength) {
+      lengthClass = lengthClasses[0];
+    } else if (pattern.length < longMinLength) {
+      lengthClass = lengthClasses[1];
+    } else {
+      lengthClass = lengthClasses[2];
+    }
+
+    lengthClass.patterns.add(pattern);
+    lengthClass.ids.add(allPatterns.size());
+    allPatterns.add(pattern);
+
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public StringMatcher buildMatcher() {
+    return new CompositeStringMatcher();
+  }
+}
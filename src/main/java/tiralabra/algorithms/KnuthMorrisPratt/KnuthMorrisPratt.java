@@ -6,10 +6,13 @@
 package tiralabra.algorithms.KnuthMorrisPratt;
 
 import tiralabra.utils.ArrayList;
+import tiralabra.algorithms.MatchSink;
+import tiralabra.algorithms.MatcherReport;
 import tiralabra.algorithms.StringMatcher;
 import tiralabra.algorithms.StringMatcherBuilder;
 import tiralabra.utils.RingBuffer;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -36,7 +39,7 @@ public class KnuthMorrisPratt extends StringMatcher {
   /**
    * Bytes processed since the beginning of the input stream.
    */
-  int input_offset = 0;
+  long input_offset = 0;
 
   /**
    * Creates an instance which searches for the given pattern.
@@ -49,6 +52,31 @@ public class KnuthMorrisPratt extends StringMatcher {
     buildSkipTable();
   }
 
+  /**
+   * Creates an instance at the start of a new input stream, sharing the pattern
+   * and the skip table of another instance.
+   *
+   * @param compiled - The instance whose tables are shared.
+   */
+  private KnuthMorrisPratt(KnuthMorrisPratt compiled) {
+    this.pattern = compiled.pattern;
+    this.skip_table = compiled.skip_table;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected StringMatcher newCursor() {
+    return new KnuthMorrisPratt(this);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void reset() {
+    super.reset();
+    pattern_offset = 0;
+    input_offset = 0;
+  }
+
   /** {@inheritDoc} */
   public static StringMatcherBuilder getBuilder() {
     return new KnuthMorrisPrattBuilder().adapt();
@@ -67,11 +95,22 @@ public class KnuthMorrisPratt extends StringMatcher {
 
       @Override
       public byte[] next() {
+        consumed = true;
         return pattern;
       }
     };
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The matcher only has the pattern with identifier 0.
+   */
+  @Override
+  public byte[] getPattern(int patternId) {
+    return pattern;
+  }
+
   /**
    * Constructs the {@link #skip_table} from the {@link #pattern}.
    */
@@ -96,10 +135,30 @@ public class KnuthMorrisPratt extends StringMatcher {
     skip_table[pattern_index] = next_possible_offset;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The period of the pattern is the shortest shift after a full match at
+   * which the pattern can match again.
+   */
+  @Override
+  public MatcherReport explain() {
+    MatcherReport report = super.explain().setAlgorithm("Knuth-Morris-Pratt");
+
+    report.add("pattern length", pattern.length);
+    report.add("period", pattern.length - skip_table[pattern.length]);
+    report.addMemory("failure table", MatcherReport.arrayBytes(skip_table.length, 4));
+
+    return report;
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean pushByte(byte b) {
-    processByte(b);
+    if (processByte(b))
+      addMatch(input_offset + 1 - pattern.length, 0);
+
+    input_offset++;
 
     return true;
   }
@@ -107,37 +166,114 @@ public class KnuthMorrisPratt extends StringMatcher {
   /** {@inheritDoc} */
   @Override
   public int pushBytes(byte[] array, int offset, int size) {
-    for (int i = offset; i < offset + size; i++)
-      processByte(array[i]);
+    // Offset in the input stream corresponding to index 0 of the array,
+    // so that the loop does not need to update the 64-bit stream offset.
+    long array_start = input_offset - offset;
+
+    for (int i = offset; i < offset + size; i++) {
+      if (processByte(array[i]))
+        addMatch(array_start + i + 1 - pattern.length, 0);
+    }
+
+    input_offset += size;
 
     return size;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public int pushBuffer(ByteBuffer source) {
+    int position = source.position();
+    int limit = source.limit();
+    long buffer_start = input_offset - position;
+
+    for (int i = position; i < limit; i++) {
+      if (processByte(source.get(i)))
+        addMatch(buffer_start + i + 1 - pattern.length, 0);
+    }
+
+    input_offset += limit - position;
+    source.position(limit);
+
+    return limit - position;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The bytes of the pattern matched so far are the only ones which can begin a match.
+   */
+  @Override
+  protected int partialMatchLength() {
+    return pattern_offset;
+  }
+
+  /**
+   * Runs the automaton over a segment of an array using a local pattern offset.
+   *
+   * @param sink - Receiver of the matches, or {@code null} to stop at the first match.
+   *
+   * @return Start of the first match if {@code sink} is {@code null}, -1 otherwise or if there are no matches.
+   */
+  private int search(byte[] haystack, int from, int to, MatchSink sink) {
+    int offset = 0;
+
+    for (int i = from; i < to; i++) {
+      while (offset >= 0 && pattern[offset] != haystack[i])
+        offset = skip_table[offset];
+
+      offset++;
+
+      if (offset == pattern.length) {
+        if (sink == null)
+          return i + 1 - pattern.length;
+
+        sink.onMatch(i + 1 - pattern.length, 0);
+        offset = skip_table[offset];
+      }
+    }
+
+    return -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+    search(haystack, from, to, sink);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Match searchFirst(byte[] haystack, int from, int to) {
+    int start = search(haystack, from, to, null);
+    return start == -1 ? null : new Match(start, pattern);
+  }
+
   /**
    * Processes a single byte of input.
    *
    * @param b - The next byte in the input stream.
+   *
+   * @return Whether a match of the pattern ends at this byte.
    */
-  private void processByte(byte b) {
+  private boolean processByte(byte b) {
     // Repeat until we have done everything we can with the current byte.
     while (true) {
       if (pattern[pattern_offset] == b) {
         pattern_offset++;
-        input_offset++;
 
         if (pattern_offset == pattern.length) {
           pattern_offset = skip_table[pattern_offset];
-          addMatch(input_offset - pattern.length, pattern);
+          return true;
         }
 
-        break;
+        return false;
       } else {
         pattern_offset = skip_table[pattern_offset];
 
         if (pattern_offset < 0) {
           pattern_offset++;
-          input_offset++;
-          break;
+          return false;
         }
       }
     }
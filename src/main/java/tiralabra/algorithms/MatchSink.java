@@ -0,0 +1,24 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms;
+
+/**
+ * Receiver of the matches found by a {@link StringMatcher}.
+ *
+ * Matches are passed as primitives, so reporting them does not allocate.
+ *
+ * @see StringMatcher#setMatchSink(MatchSink)
+ */
+@FunctionalInterface
+public interface MatchSink {
+  /**
+   * Called by the matcher for every match it finds.
+   *
+   * @param offset - Offset of the beginning of the match in the input stream.
+   * @param patternId - Identifier of the found pattern. See {@link StringMatcher#getPattern(int)}.
+   */
+  void onMatch(long offset, int patternId);
+}
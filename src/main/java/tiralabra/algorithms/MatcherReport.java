@@ -0,0 +1,274 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms;
+
+import tiralabra.utils.ArrayList;
+
+/**
+ * Description of the data structures a {@link StringMatcher} has built for
+ * its patterns: their sizes, their approximate memory usage and figures
+ * related to the expected cost of the search.
+ *
+ * Memory usage is estimated assuming a 64-bit JVM with compressed object
+ * references, that is 12-byte object headers, 16-byte array headers, 4-byte
+ * references and objects aligned to 8 bytes.
+ */
+public class MatcherReport {
+  /**
+   * Size of an object header in bytes.
+   */
+  public static final int OBJECT_HEADER_BYTES = 12;
+
+  /**
+   * Size of an array header in bytes.
+   */
+  public static final int ARRAY_HEADER_BYTES = 16;
+
+  /**
+   * Size of an object reference in bytes.
+   */
+  public static final int REFERENCE_BYTES = 4;
+
+  /**
+   * Name of the algorithm described by this report.
+   */
+  private String algorithm;
+
+  /**
+   * Names of the reported figures.
+   */
+  private ArrayList<String> labels = new ArrayList<>();
+
+  /**
+   * Values of the reported figures, formatted for printing.
+   */
+  private ArrayList<String> values = new ArrayList<>();
+
+  /**
+   * Reports of the matchers wrapped by the described matcher.
+   */
+  private ArrayList<MatcherReport> children = new ArrayList<>(2);
+
+  /**
+   * Estimated memory usage of the structures of this matcher, excluding the children.
+   */
+  private long memoryBytes = 0;
+
+  /**
+   * Create an empty report.
+   *
+   * @param algorithm - Name of the described algorithm.
+   */
+  public MatcherReport(String algorithm) {
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * Round a size in bytes up to the object alignment.
+   */
+  private static long align(long bytes) {
+    return (bytes + 7) / 8 * 8;
+  }
+
+  /**
+   * Estimate the size of an array.
+   *
+   * @param length - Number of elements in the array.
+   * @param elementBytes - Size of a single element in bytes.
+   *
+   * @return Estimated size of the array in bytes.
+   */
+  public static long arrayBytes(long length, int elementBytes) {
+    return align(ARRAY_HEADER_BYTES + length * elementBytes);
+  }
+
+  /**
+   * Estimate the size of an object.
+   *
+   * @param fieldBytes - Combined size of the fields of the object.
+   *
+   * @return Estimated size of the object in bytes.
+   */
+  public static long objectBytes(long fieldBytes) {
+    return align(OBJECT_HEADER_BYTES + fieldBytes);
+  }
+
+  /**
+   * Estimate the size of a {@link tiralabra.utils.ArrayList} without the elements it references.
+   *
+   * @param capacity - Capacity of the list.
+   *
+   * @return Estimated size of the list in bytes.
+   */
+  public static long listBytes(int capacity) {
+    return objectBytes(REFERENCE_BYTES + 4) + arrayBytes(capacity, REFERENCE_BYTES);
+  }
+
+  /**
+   * Format a size in bytes using binary prefixes.
+   */
+  private static String formatBytes(long bytes) {
+    String[] units = { "B", "KiB", "MiB", "GiB", "TiB" };
+    double value = bytes;
+    int unit = 0;
+
+    while (value >= 1024 && unit < units.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+
+    return unit == 0 ? String.format("%d B", bytes) : String.format("%.1f %s", value, units[unit]);
+  }
+
+  /**
+   * Get the name of the described algorithm.
+   */
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Set the name of the described algorithm.
+   *
+   * @param algorithm - Name of the algorithm.
+   *
+   * @return Reference to this report for method chaining.
+   */
+  public MatcherReport setAlgorithm(String algorithm) {
+    this.algorithm = algorithm;
+    return this;
+  }
+
+  /**
+   * Add an integer figure to the report.
+   *
+   * @param label - Name of the figure.
+   * @param value - Value of the figure.
+   *
+   * @return Reference to this report for method chaining.
+   */
+  public MatcherReport add(String label, long value) {
+    return add(label, Long.toString(value));
+  }
+
+  /**
+   * Add a decimal figure to the report.
+   *
+   * @param label - Name of the figure.
+   * @param value - Value of the figure.
+   *
+   * @return Reference to this report for method chaining.
+   */
+  public MatcherReport add(String label, double value) {
+    return add(label, String.format("%.2f", value));
+  }
+
+  /**
+   * Add a textual figure to the report.
+   *
+   * @param label - Name of the figure.
+   * @param value - Value of the figure.
+   *
+   * @return Reference to this report for method chaining.
+   */
+  public MatcherReport add(String label, String value) {
+    labels.add(label);
+    values.add(value);
+    return this;
+  }
+
+  /**
+   * Add the estimated size of a data structure to the report.
+   *
+   * The size is included in the memory usage of the matcher.
+   *
+   * @param label - Name of the data structure.
+   * @param bytes - Estimated size of the data structure in bytes.
+   *
+   * @return Reference to this report for method chaining.
+   */
+  public MatcherReport addMemory(String label, long bytes) {
+    memoryBytes += bytes;
+    return add(label, formatBytes(bytes));
+  }
+
+  /**
+   * Add the report of a wrapped matcher.
+   *
+   * @param child - Report of the wrapped matcher.
+   *
+   * @return Reference to this report for method chaining.
+   */
+  public MatcherReport addChild(MatcherReport child) {
+    children.add(child);
+    return this;
+  }
+
+  /**
+   * Get the value of a figure.
+   *
+   * @param label - Name of the figure.
+   *
+   * @return The formatted value or {@code null} if the report has no such figure.
+   */
+  public String get(String label) {
+    for (int i = 0; i < labels.size(); i++) {
+      if (labels.get(i).equals(label))
+        return values.get(i);
+    }
+
+    return null;
+  }
+
+  /**
+   * Get the reports of the wrapped matchers.
+   */
+  public ArrayList<MatcherReport> getChildren() {
+    return children;
+  }
+
+  /**
+   * Get the estimated memory usage of the matcher, including the wrapped matchers.
+   *
+   * @return Estimated memory usage in bytes.
+   */
+  public long getMemoryBytes() {
+    long total = memoryBytes;
+
+    for (MatcherReport child : children) {
+      total += child.getMemoryBytes();
+    }
+
+    return total;
+  }
+
+  /**
+   * Append the report to a string builder, indenting each line.
+   */
+  private void format(StringBuilder sb, String indent) {
+    sb.append(indent).append(algorithm).append('\n');
+
+    for (int i = 0; i < labels.size(); i++) {
+      sb.append(indent).append("  ").append(labels.get(i)).append(": ").append(values.get(i)).append('\n');
+    }
+
+    sb.append(indent).append("  total memory: ").append(formatBytes(getMemoryBytes())).append('\n');
+
+    for (MatcherReport child : children) {
+      child.format(sb, indent + "  ");
+    }
+  }
+
+  /**
+   * Format the report, and the reports of the wrapped matchers, as indented lines of text.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    format(sb, "");
+    return sb.toString();
+  }
+}
@@ -1,10 +1,13 @@
 package tiralabra.algorithms.NaiveSearch;
 
+import tiralabra.algorithms.MatchSink;
+import tiralabra.algorithms.MatcherReport;
 import tiralabra.algorithms.StringMatcher;
 import tiralabra.algorithms.StringMatcherBuilder;
 import tiralabra.utils.ArrayList;
 import tiralabra.utils.RingBuffer;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 
@@ -44,12 +47,39 @@ public class NaiveSearch extends StringMatcher {
         pattern_offsets = new int[patterns.length][];
         pattern_offset_counts = new int[patterns.length];
 
+        for (int i = 0; i < patterns.length; i++) {
+            pattern_offsets[i] = new int[patterns[i].length];
+        }
+
+        reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The patterns are the only shared data. The partial match offsets are
+     * per-stream state, so the cursor allocates as many offsets as the patterns have bytes.
+     */
+    @Override
+    protected StringMatcher newCursor() {
+        return new NaiveSearch(patterns);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+        super.reset();
+
         // Initialize all patterns to have one offset (0) in their array offset array.
 
         for (int i = 0; i < patterns.length; i++) {
-            pattern_offsets[i] = new int[patterns[i].length];
+            if (pattern_offsets[i].length > 0)
+                pattern_offsets[i][0] = 0;
+
             pattern_offset_counts[i] = 1;
         }
+
+        inputOffset = 0;
     }
 
     /** {@inheritDoc} */
@@ -58,6 +88,34 @@ public class NaiveSearch extends StringMatcher {
         return Arrays.stream(patterns).iterator();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public byte[] getPattern(int patternId) {
+        return patterns[patternId];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every pattern keeps an array of the offsets of its partial matches, which
+     * may hold as many offsets as the pattern is long.
+     */
+    @Override
+    public MatcherReport explain() {
+        MatcherReport report = super.explain().setAlgorithm("Naive");
+
+        long offsetBytes = MatcherReport.arrayBytes(pattern_offsets.length, MatcherReport.REFERENCE_BYTES)
+            + MatcherReport.arrayBytes(pattern_offset_counts.length, 4);
+
+        for (int[] offsets : pattern_offsets) {
+            offsetBytes += MatcherReport.arrayBytes(offsets.length, 4);
+        }
+
+        report.addMemory("partial match offsets", offsetBytes);
+
+        return report;
+    }
+
     /** {@inheritDoc} */
     public static StringMatcherBuilder getBuilder() {
         return new StringMatcherBuilder() {
@@ -85,7 +143,7 @@ public class NaiveSearch extends StringMatcher {
     /**
      * Current location in the input stream.
      */
-    private int inputOffset = 0;
+    private long inputOffset = 0;
 
     /**
      * Processes a single byte of input.
@@ -110,7 +168,7 @@ public class NaiveSearch extends StringMatcher {
                 if (patterns[i][offset] == b) {
                     if (offset == patterns[i].length - 1) {
                         remove_offset = true;
-                        addMatch(inputOffset + 1 - patterns[i].length, patterns[i]);
+                        addMatch(inputOffset + 1 - patterns[i].length, i);
                     } else {
                         pattern_offsets[i][j]++;
                     }
@@ -127,8 +185,10 @@ public class NaiveSearch extends StringMatcher {
                         new_offset_added = true;
                     } else {
                         // Remove the offset by swapping it with the last value in the list and truncating the array.
+                        // The swapped value has not been checked yet, so check it next.
                         pattern_offsets[i][j] = pattern_offsets[i][pattern_offset_counts[i] - 1];
                         pattern_offset_counts[i]--;
+                        j--;
                     }
                 }
             }
@@ -163,4 +223,74 @@ public class NaiveSearch extends StringMatcher {
 
       return size;
     }
+
+    /**
+     * Compares every pattern against every offset of the segment.
+     *
+     * @param sink Receiver of the matches, or {@code null} to stop at the first match.
+     * @return Index of the first pattern matching at the lowest offset if {@code sink} is {@code null},
+     *         -1 otherwise or if there are no matches. The offset of the match is stored in {@code firstStart[0]}.
+     */
+    private int search(byte[] haystack, int from, int to, MatchSink sink, int[] firstStart) {
+        for (int start = from; start < to; start++) {
+            for (int i = 0; i < patterns.length; i++) {
+                byte[] pattern = patterns[i];
+
+                if (start + pattern.length > to)
+                    continue;
+
+                int j = 0;
+
+                while (j < pattern.length && pattern[j] == haystack[start + j])
+                    j++;
+
+                if (j < pattern.length)
+                    continue;
+
+                if (sink == null) {
+                    firstStart[0] = start;
+                    return i;
+                }
+
+                sink.onMatch(start, i);
+            }
+        }
+
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+        search(haystack, from, to, sink, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Match searchFirst(byte[] haystack, int from, int to) {
+        int[] firstStart = new int[1];
+        int id = search(haystack, from, to, null, firstStart);
+
+        return id == -1 ? null : new Match(firstStart[0], patterns[id]);
+    }
+
+    /**
+     * Process the remaining bytes of a buffer.
+     *
+     * This implementation reads the bytes in place and processes them immediately.
+     *
+     * @param source Buffer containing the input bytes.
+     * @return The number of remaining bytes the buffer had.
+     */
+    @Override
+    public int pushBuffer(ByteBuffer source) {
+        int size = source.remaining();
+
+        for (int i = source.position(); i < source.limit(); i++)
+            pushByte(source.get(i));
+
+        source.position(source.limit());
+
+        return size;
+    }
 }
@@ -0,0 +1,395 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import tiralabra.utils.LongIntHeap;
+
+/**
+ * Helper for searching a single large input on several threads at once.
+ *
+ * The input is split into chunks which are searched in parallel, each with a cursor of its own. The chunks
+ * are forked into the {@link ForkJoinPool} of the calling thread, so that the idle workers of the pool
+ * steal them, or into the common pool if the caller is not a worker of a pool. The state of the input at the start of
+ * a chunk is not known, so every chunk is scanned speculatively from the start state of the algorithm. This finds all matches starting
+ * in the chunk, but not the matches starting in the previous chunk and ending in this one. Those are
+ * found by the previous chunk, which continues scanning past its end while a match starting in it may
+ * still be in progress. A match is only reported by the chunk it starts in, which removes the duplicates
+ * found past the ends of the chunks.
+ *
+ * For automata, such as Aho-Corasick with overlapping matches and Knuth-Morris-Pratt, a match may be in
+ * progress only as long as the depth of the current state reaches back into the chunk. Once it does not,
+ * the states of the two runs agree and the speculative run of the next chunk is exact from there on, so the
+ * scan stops, usually within a few bytes of the end of the chunk. The other algorithms which report all
+ * matches can not tell, so their chunks are scanned {@code maxPatternLength - 1} bytes past their ends,
+ * which covers every match starting in the chunk. This overlap does not make the chunks exact for sets
+ * which suppress some of the matches, which are described below.
+ *
+ * The chunks are searched in waves of {@code parallelism} chunks. Once a wave has been searched,
+ * its matches are reported in the order of their offsets, and matches at the same offset in the
+ * order of their pattern identifiers. Only the matches of a single wave are held in memory at once.
+ *
+ * Scanning a chunk from the start state only finds the same matches as scanning the whole input if every
+ * occurrence of every pattern is reported. With match semantics which suppress overlapping matches, such as
+ * the non-overlapping and leftmost semantics of Aho-Corasick, which matches are reported depends on where the
+ * previous match ended, so sets which do not {@link CompiledPatternSet#reportsAllMatches() report all matches}
+ * are scanned from the start of the input to its end on a single cursor instead. All of their matches are
+ * then held in memory until the end of the input.
+ *
+ * NOTE: A scanner must not be used by multiple threads at the same time, as they would share the chunks.
+ */
+public class ParallelScanner {
+  /**
+   * Largest chunk size used unless set with {@link #setMaxChunkSize(long)}.
+   */
+  public static final long DEFAULT_MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Size of the blocks in which the chunks of a file are read.
+   */
+  static final int BLOCK_SIZE = 256 * 1024;
+
+  /**
+   * The patterns searched for.
+   */
+  private CompiledPatternSet patterns;
+
+  /**
+   * Number of chunks searched at once.
+   */
+  private int parallelism;
+
+  /**
+   * Largest size of a chunk in bytes.
+   */
+  private long maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+
+  /**
+   * Length of the longest pattern.
+   */
+  private int maxPatternLength = 0;
+
+  /**
+   * Searches of the chunks of the current wave.
+   */
+  private ChunkSearch[] chunks;
+
+  /**
+   * Search of a single chunk of the input.
+   */
+  private abstract class ChunkSearch extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Offset of the first byte of the chunk.
+     */
+    long start;
+
+    /**
+     * Offset following the last byte of the chunk.
+     */
+    long end;
+
+    /**
+     * Offset following the last byte which may need to be scanned for matches starting in the chunk.
+     */
+    long scanEnd;
+
+    /**
+     * Cursor scanning the chunk, reporting offsets relative to the start of the chunk.
+     */
+    StringMatcher cursor = patterns.newCursor();
+
+    /**
+     * Matches starting in the chunk, ordered by offset and pattern identifier.
+     */
+    LongIntHeap matches = new LongIntHeap(16);
+
+    ChunkSearch() {
+      cursor.setMatchSink((offset, patternId) -> addMatch(start + offset, patternId));
+    }
+
+    /**
+     * Keep a match if it starts in the chunk.
+     */
+    void addMatch(long offset, int patternId) {
+      if (offset >= start && offset < end)
+        matches.push(offset, patternId);
+    }
+
+    /**
+     * Push bytes of the input to the cursor, processing them until they are all accepted.
+     *
+     * @param block - Array containing the bytes.
+     * @param offset - Index of the first byte in {@code block}.
+     * @param length - Number of bytes.
+     */
+    void pushAll(byte[] block, int offset, int length) {
+      int end = offset + length;
+
+      while (offset < end) {
+        offset += cursor.pushBytes(block, offset, end - offset);
+
+        if (offset < end)
+          cursor.process();
+      }
+    }
+
+    /**
+     * Push the next bytes of the input to the cursor. The bytes of the chunk are pushed as a whole,
+     * but the bytes following it only as long as a match starting in the chunk may be in progress.
+     *
+     * @param block - Array containing the bytes.
+     * @param offset - Index of the first byte in {@code block}.
+     * @param length - Number of bytes.
+     * @param position - Offset of the first byte in the input.
+     *
+     * @return Whether more of the input needs to be pushed.
+     */
+    boolean push(byte[] block, int offset, int length, long position) {
+      int inChunk = (int) Math.max(0, Math.min(length, end - position));
+      pushAll(block, offset, inChunk);
+
+      offset += inChunk;
+      length -= inChunk;
+      position += inChunk;
+
+      while (true) {
+        int partial = cursor.partialMatchLength();
+
+        if (position >= scanEnd || partial <= position - end)
+          return false;
+
+        if (length == 0)
+          return true;
+
+        // Algorithms which can not tell how much of the input is needed get all of it at once.
+        int count = partial == Integer.MAX_VALUE ? length : 1;
+        pushAll(block, offset, count);
+
+        offset += count;
+        length -= count;
+        position += count;
+      }
+    }
+
+    /**
+     * Report the matches of the chunk in order, leaving the chunk empty.
+     */
+    void reportMatches(MatchSink sink) {
+      while (!matches.empty()) {
+        sink.onMatch(matches.peekLong(), matches.peekInt());
+        matches.remove();
+      }
+    }
+  }
+
+  /**
+   * Search of a chunk of an array, which is pushed to the cursor of the chunk in place.
+   */
+  private class ArrayChunkSearch extends ChunkSearch {
+    private static final long serialVersionUID = 1L;
+
+    byte[] haystack;
+
+    @Override
+    protected void compute() {
+      cursor.reset();
+      push(haystack, (int) start, (int) (scanEnd - start), start);
+      cursor.finish();
+    }
+  }
+
+  /**
+   * Search of a chunk of a file, read with positional reads and pushed to a cursor of the chunk.
+   */
+  private class FileChunkSearch extends ChunkSearch {
+    private static final long serialVersionUID = 1L;
+
+    FileChannel channel;
+
+    byte[] block = new byte[0];
+
+    ByteBuffer blockBuffer;
+
+    @Override
+    protected void compute() {
+      if (block.length < BLOCK_SIZE && block.length < scanEnd - start) {
+        block = new byte[(int) Math.min(BLOCK_SIZE, scanEnd - start)];
+        blockBuffer = ByteBuffer.wrap(block);
+      }
+
+      cursor.reset();
+
+      try {
+        long position = start;
+
+        while (position < scanEnd) {
+          blockBuffer.clear();
+          blockBuffer.limit((int) Math.min(block.length, scanEnd - position));
+
+          int length = channel.read(blockBuffer, position);
+
+          if (length == -1)
+            break;
+
+          if (!push(block, 0, length, position))
+            break;
+
+          position += length;
+        }
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+
+      cursor.finish();
+    }
+  }
+
+  /**
+   * Create a scanner.
+   *
+   * @param patterns - The patterns to search for.
+   * @param parallelism - Number of chunks searched at once.
+   */
+  public ParallelScanner(CompiledPatternSet patterns, int parallelism) {
+    this.patterns = patterns;
+    this.parallelism = Math.max(1, parallelism);
+
+    Iterator<byte[]> it = patterns.getPatterns();
+
+    while (it.hasNext()) {
+      maxPatternLength = Math.max(maxPatternLength, it.next().length);
+    }
+  }
+
+  /**
+   * Set the largest size of a chunk. The input is split into {@code parallelism} chunks
+   * unless they would be larger than this, in which case it is searched in several waves.
+   *
+   * @param maxChunkSize - Size in bytes.
+   *
+   * @return Reference to the scanner for method chaining.
+   */
+  public ParallelScanner setMaxChunkSize(long maxChunkSize) {
+    this.maxChunkSize = Math.max(1, maxChunkSize);
+    return this;
+  }
+
+  /**
+   * Get the size of the chunks for an input.
+   *
+   * @param size - Size of the input in bytes.
+   */
+  private long chunkSize(long size) {
+    return Math.max(1, Math.min(maxChunkSize, (size + parallelism - 1) / parallelism));
+  }
+
+  /**
+   * Search the input in waves of chunks, reporting the matches of each wave once it has been searched.
+   *
+   * @param from - Offset of the first byte of the input.
+   * @param to - Offset following the last byte of the input.
+   * @param sink - Receiver of the matches.
+   */
+  private void searchChunks(long from, long to, MatchSink sink) {
+    if (!patterns.reportsAllMatches()) {
+      ChunkSearch whole = chunks[0];
+
+      whole.start = from;
+      whole.end = to;
+      whole.scanEnd = to;
+      whole.reinitialize();
+      whole.invoke();
+      whole.reportMatches(sink);
+      return;
+    }
+
+    long chunkSize = chunkSize(to - from);
+
+    for (long waveStart = from; waveStart < to; waveStart += chunkSize * chunks.length) {
+      for (int i = 0; i < chunks.length; i++) {
+        ChunkSearch chunk = chunks[i];
+
+        chunk.start = Math.min(to, waveStart + i * chunkSize);
+        chunk.end = Math.min(to, chunk.start + chunkSize);
+        chunk.scanEnd = Math.min(to, chunk.end + Math.max(0, maxPatternLength - 1));
+        chunk.reinitialize();
+      }
+
+      ForkJoinTask.invokeAll(chunks);
+
+      for (ChunkSearch chunk : chunks) {
+        chunk.reportMatches(sink);
+      }
+    }
+  }
+
+  /**
+   * Search a segment of an array for all occurrences of the patterns.
+   *
+   * @param haystack - Array to search.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   * @param sink - Receiver of the matches, in the order of their offsets. The offsets of the matches are indices in {@code haystack}.
+   *
+   * @throws IndexOutOfBoundsException if the segment is not within the array.
+   */
+  public void search(byte[] haystack, int from, int to, MatchSink sink) {
+    Objects.checkFromToIndex(from, to, haystack.length);
+
+    chunks = new ChunkSearch[parallelism];
+
+    for (int i = 0; i < chunks.length; i++) {
+      ArrayChunkSearch chunk = new ArrayChunkSearch();
+      chunk.haystack = haystack;
+      chunks[i] = chunk;
+    }
+
+    searchChunks(from, to, sink);
+  }
+
+  /**
+   * Search a file for all occurrences of the patterns.
+   *
+   * The file is read with positional reads, so the position of the channel is not changed.
+   *
+   * @param channel - The file to search.
+   * @param sink - Receiver of the matches, in the order of their offsets.
+   *
+   * @return Size of the file in bytes.
+   *
+   * @throws IOException if reading the file fails.
+   */
+  public long search(FileChannel channel, MatchSink sink) throws IOException {
+    long size = channel.size();
+
+    chunks = new ChunkSearch[parallelism];
+
+    for (int i = 0; i < chunks.length; i++) {
+      FileChunkSearch chunk = new FileChunkSearch();
+      chunk.channel = channel;
+      chunks[i] = chunk;
+    }
+
+    try {
+      searchChunks(0, size, sink);
+    } catch (UncheckedIOException uioe) {
+      throw uioe.getCause();
+    }
+
+    return size;
+  }
+}
@@ -0,0 +1,507 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms.Planner;
+
+import tiralabra.algorithms.CompiledPatternSet;
+import tiralabra.algorithms.MatchSink;
+import tiralabra.algorithms.MatcherReport;
+import tiralabra.algorithms.StringMatcher;
+import tiralabra.algorithms.StringMatcherBuilder;
+import tiralabra.utils.ArrayList;
+import tiralabra.utils.RingBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * String matcher which measures the throughput and the density of matches of
+ * the algorithm chosen by the {@link Planner} and switches to another algorithm
+ * mid-stream if the measurements suggest that it would be faster.
+ *
+ * When switching, the last {@code maxPatternLength - 1} bytes of input are
+ * pushed to the new algorithm before any new input, so that matches spanning
+ * the switch point are found. Matches which the new algorithm finds entirely
+ * within these bytes have already been reported by the previous algorithm
+ * and are dropped.
+ */
+public class AdaptiveStringMatcher extends StringMatcher {
+  /**
+   * The algorithm is only switched if the estimated cost of the new algorithm is this
+   * fraction lower than the estimated cost of the current one.
+   */
+  static final double SWITCH_MARGIN = 0.25;
+
+  /**
+   * The searched patterns.
+   */
+  private ArrayList<byte[]> patterns;
+
+  /**
+   * Statistics of the searched patterns.
+   */
+  private PatternStatistics statistics;
+
+  /**
+   * Number of input bytes after which the first measurement is made.
+   */
+  private int firstSampleBytes;
+
+  /**
+   * Number of input bytes between the subsequent measurements.
+   */
+  private int sampleIntervalBytes;
+
+  /**
+   * The algorithm chosen by the plan, with which every input stream is started.
+   */
+  private Plan.Candidate initialCandidate;
+
+  /**
+   * The patterns compiled for {@link #initialCandidate}. Shared by all cursors of this matcher.
+   */
+  private CompiledPatternSet initialEngines;
+
+  /**
+   * The currently used algorithm.
+   */
+  private Plan.Candidate candidate;
+
+  /**
+   * Matcher instance of the currently used algorithm.
+   */
+  private StringMatcher engine;
+
+  /**
+   * Offset in the input stream of the first byte pushed to {@link #engine}.
+   */
+  private long engineStart = 0;
+
+  /**
+   * Matches of {@link #engine} ending at or before this offset have already been reported by a previous engine.
+   */
+  private long dropBefore = 0;
+
+  /**
+   * Number of bytes pushed to this matcher.
+   */
+  private long inputOffset = 0;
+
+  /**
+   * The last {@code maxPatternLength - 1} bytes of input.
+   */
+  private RingBuffer history;
+
+  /**
+   * Maximum number of bytes held in {@link #history}.
+   */
+  private int historyLength;
+
+  /**
+   * Input offset after which the next measurement is made.
+   */
+  private long nextSampleAt;
+
+  /**
+   * Number of input bytes since the previous measurement.
+   */
+  private int sampleBytes = 0;
+
+  /**
+   * Number of matches since the previous measurement.
+   */
+  private int sampleMatches = 0;
+
+  /**
+   * Nanoseconds spent in the {@link #engine} since the previous measurement.
+   */
+  private long sampleNanos = 0;
+
+  /**
+   * Whether the first measurement, which includes the warmup of the engine, has been discarded.
+   */
+  private boolean warmedUp = false;
+
+  /**
+   * Cost of the current algorithm in nanoseconds per input byte at the last measurement,
+   * or {@code NaN} if no measurement has been made.
+   */
+  private double measuredCost = Double.NaN;
+
+  /**
+   * Number of times the algorithm has been switched.
+   */
+  private int switchCount = 0;
+
+  /**
+   * Buffer for pushing single bytes.
+   */
+  private byte[] singleByte = new byte[1];
+
+  /**
+   * Create a matcher starting with the algorithm chosen by a plan.
+   *
+   * @param patterns - The searched patterns.
+   * @param plan - Plan for the patterns.
+   * @param firstSampleBytes - Number of input bytes after which the first measurement is made.
+   * @param sampleIntervalBytes - Number of input bytes between the subsequent measurements.
+   */
+  AdaptiveStringMatcher(ArrayList<byte[]> patterns, Plan plan, int firstSampleBytes, int sampleIntervalBytes) {
+    this.patterns = patterns;
+    this.statistics = plan.getStatistics();
+    this.firstSampleBytes = firstSampleBytes;
+    this.sampleIntervalBytes = sampleIntervalBytes;
+    this.nextSampleAt = firstSampleBytes;
+
+    historyLength = Math.max(0, statistics.getMaxLength() - 1);
+    history = new RingBuffer(Math.max(2, historyLength));
+
+    initialCandidate = plan.getSelected();
+    initialEngines = compileEngine(initialCandidate);
+    candidate = initialCandidate;
+    engine = startEngine(initialEngines);
+  }
+
+  /**
+   * Create a matcher at the start of a new input stream, sharing the patterns
+   * and the compiled initial algorithm with another instance.
+   *
+   * @param compiled - The instance whose structures are shared.
+   */
+  private AdaptiveStringMatcher(AdaptiveStringMatcher compiled) {
+    this.patterns = compiled.patterns;
+    this.statistics = compiled.statistics;
+    this.firstSampleBytes = compiled.firstSampleBytes;
+    this.sampleIntervalBytes = compiled.sampleIntervalBytes;
+    this.nextSampleAt = firstSampleBytes;
+
+    historyLength = compiled.historyLength;
+    history = new RingBuffer(Math.max(2, historyLength));
+
+    initialCandidate = compiled.initialCandidate;
+    initialEngines = compiled.initialEngines;
+    candidate = initialCandidate;
+    engine = startEngine(initialEngines);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Cursors start with the algorithm chosen by the plan. Algorithms switched to
+   * mid-stream are compiled by the cursor which switches.
+   */
+  @Override
+  protected StringMatcher newCursor() {
+    return new AdaptiveStringMatcher(this);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The segment is searched by the algorithm chosen by the plan. There is no
+   * measurement, as the input is not streamed.
+   */
+  @Override
+  protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+    initialEngines.findAll(haystack, from, to, sink);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The segment is searched by the algorithm chosen by the plan.
+   */
+  @Override
+  protected Match searchFirst(byte[] haystack, int from, int to) {
+    return initialEngines.findFirst(haystack, from, to);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The next input stream starts with the algorithm chosen by the plan.
+   */
+  @Override
+  public void reset() {
+    super.reset();
+
+    if (candidate == initialCandidate) {
+      engine.reset();
+    } else {
+      candidate = initialCandidate;
+      engine = startEngine(initialEngines);
+    }
+
+    engineStart = 0;
+    dropBefore = 0;
+    inputOffset = 0;
+    history.advance(history.size());
+    nextSampleAt = firstSampleBytes;
+    sampleBytes = 0;
+    sampleMatches = 0;
+    sampleNanos = 0;
+    warmedUp = false;
+    measuredCost = Double.NaN;
+    switchCount = 0;
+  }
+
+  /**
+   * Get the currently used algorithm.
+   */
+  public Plan.Candidate getCandidate() {
+    return candidate;
+  }
+
+  /**
+   * Get the number of times the algorithm has been switched.
+   */
+  public int getSwitchCount() {
+    return switchCount;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Includes the report of the currently used algorithm.
+   */
+  @Override
+  public MatcherReport explain() {
+    MatcherReport report = new MatcherReport("Adaptive");
+
+    report.add("patterns", patterns.size());
+    report.add("current algorithm", candidate.getName());
+    report.add("estimated cost (ns/byte)", candidate.getCost());
+
+    if (!Double.isNaN(measuredCost))
+      report.add("measured cost (ns/byte)", measuredCost);
+
+    report.add("switches", switchCount);
+    report.addMemory("input history", MatcherReport.arrayBytes(history.capacity(), 1));
+    report.addChild(engine.explain());
+
+    return report;
+  }
+
+  /**
+   * Compile the searched patterns for an algorithm.
+   */
+  private CompiledPatternSet compileEngine(Plan.Candidate candidate) {
+    StringMatcherBuilder builder = candidate.getFactory().createBuilder();
+
+    for (byte[] pattern : patterns) {
+      builder.addPattern(pattern);
+    }
+
+    // The engines are given the patterns in the same order, so the pattern identifiers match.
+    return builder.compile();
+  }
+
+  /**
+   * Create a matcher instance of a compiled algorithm, which reports its matches to this matcher.
+   */
+  private StringMatcher startEngine(CompiledPatternSet engines) {
+    StringMatcher matcher = engines.newCursor();
+    matcher.setMatchSink(this::handleEngineMatch);
+
+    return matcher;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Iterator<byte[]> getPatterns() {
+    return patterns.iterator();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public byte[] getPattern(int patternId) {
+    return patterns.get(patternId);
+  }
+
+  /**
+   * Push a segment of bytes to the current engine until it has accepted all of them.
+   */
+  private void feedEngine(byte[] bytes, int offset, int size) {
+    int consumed = 0;
+
+    while (consumed < size) {
+      int accepted = engine.pushBytes(bytes, offset + consumed, size - consumed);
+      consumed += accepted;
+
+      if (accepted == 0 || consumed < size)
+        engine.process();
+    }
+
+    engine.process();
+  }
+
+  /**
+   * Push the remaining bytes of a buffer to the current engine until it has accepted all of them.
+   */
+  private void feedEngine(ByteBuffer source) {
+    while (source.hasRemaining()) {
+      if (engine.pushBuffer(source) == 0 || source.hasRemaining())
+        engine.process();
+    }
+
+    engine.process();
+  }
+
+  /**
+   * Receives the matches of {@link #engine}, translating their offsets and dropping
+   * the ones already reported by the previous engine.
+   */
+  private void handleEngineMatch(long offset, int patternId) {
+    long start = engineStart + offset;
+
+    if (start + patterns.get(patternId).length <= dropBefore)
+      return;
+
+    addMatch(start, patternId);
+    sampleMatches++;
+  }
+
+  /**
+   * Remember the end of a segment of input for carrying it over to the next engine.
+   */
+  private void recordHistory(byte[] bytes, int offset, int size) {
+    int count = Math.min(size, historyLength);
+    int overflow = history.size() + count - historyLength;
+
+    if (overflow > 0)
+      history.advance(overflow);
+
+    history.pushArray(bytes, offset + size - count, count);
+  }
+
+  /**
+   * Switch to another algorithm, carrying over the end of the input seen so far.
+   *
+   * @param next - The algorithm to switch to.
+   */
+  void switchEngine(Plan.Candidate next) {
+    engine.finish();
+
+    byte[] carry = history.toArray();
+
+    candidate = next;
+    engine = startEngine(compileEngine(next));
+    engineStart = inputOffset - carry.length;
+    dropBefore = inputOffset;
+    switchCount++;
+
+    feedEngine(carry, 0, carry.length);
+  }
+
+  /**
+   * Re-estimate the costs of the algorithms at the measured density of matches,
+   * and switch if another algorithm is clearly cheaper than the current one.
+   *
+   * The estimates are compared with each other rather than with the measured time,
+   * as the model only gives the costs relative to each other. The first measurement
+   * is discarded, since it includes the warmup of the engine.
+   */
+  private void replan() {
+    if (warmedUp) {
+      double matchDensity = (double) sampleMatches / sampleBytes;
+      Plan plan = Planner.plan(statistics, matchDensity);
+      Plan.Candidate best = plan.getSelected();
+
+      measuredCost = (double) sampleNanos / sampleBytes;
+
+      double currentCost = Double.POSITIVE_INFINITY;
+
+      for (Plan.Candidate other : plan.getCandidates()) {
+        if (other.getName().equals(candidate.getName()))
+          currentCost = other.getCost();
+      }
+
+      if (!best.getName().equals(candidate.getName()) && best.getCost() < currentCost * (1 - SWITCH_MARGIN))
+        switchEngine(best);
+    }
+
+    warmedUp = true;
+
+    sampleBytes = 0;
+    sampleMatches = 0;
+    sampleNanos = 0;
+    nextSampleAt = inputOffset + sampleIntervalBytes;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean pushByte(byte b) {
+    singleByte[0] = b;
+    pushBytes(singleByte, 0, 1);
+    return true;
+  }
+
+  /**
+   * Pushes the whole segment to the current engine.
+   *
+   * @return Always {@code size}.
+   */
+  @Override
+  public int pushBytes(byte[] bytes, int offset, int size) {
+    long start = System.nanoTime();
+    feedEngine(bytes, offset, size);
+    sampleNanos += System.nanoTime() - start;
+
+    recordHistory(bytes, offset, size);
+    inputOffset += size;
+    sampleBytes += size;
+
+    if (inputOffset >= nextSampleAt)
+      replan();
+
+    return size;
+  }
+
+  /**
+   * Pushes the remaining bytes of the buffer to the current engine, which reads them in place.
+   *
+   * @return The number of remaining bytes the buffer had.
+   */
+  @Override
+  public int pushBuffer(ByteBuffer source) {
+    int start = source.position();
+    int size = source.remaining();
+
+    long startTime = System.nanoTime();
+    feedEngine(source);
+    sampleNanos += System.nanoTime() - startTime;
+
+    // Remember the end of the segment, like recordHistory does for arrays.
+    int count = Math.min(size, historyLength);
+    int overflow = history.size() + count - historyLength;
+
+    if (overflow > 0)
+      history.advance(overflow);
+
+    source.position(start + size - count);
+    history.pushBuffer(source);
+
+    inputOffset += size;
+    sampleBytes += size;
+
+    if (inputOffset >= nextSampleAt)
+      replan();
+
+    return size;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void process() {
+    engine.process();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void finish() {
+    engine.finish();
+    super.finish();
+  }
+}
@@ -0,0 +1,221 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms.Planner;
+
+import tiralabra.utils.ArrayList;
+import tiralabra.utils.HashMap;
+
+/**
+ * Statistics about a set of patterns, used by the {@link Planner} to estimate
+ * how well each of the search algorithms would perform for the set.
+ */
+public class PatternStatistics {
+  /**
+   * Number of patterns in the set.
+   */
+  private int patternCount;
+
+  /**
+   * Length of the shortest pattern.
+   */
+  private int minLength;
+
+  /**
+   * Length of the longest pattern.
+   */
+  private int maxLength;
+
+  /**
+   * Sum of the lengths of the patterns.
+   */
+  private long totalLength;
+
+  /**
+   * Number of different pattern lengths in the set.
+   */
+  private int distinctLengths;
+
+  /**
+   * Number of different byte values occurring in the patterns.
+   */
+  private int alphabetSize;
+
+  /**
+   * Length of each of the patterns.
+   */
+  private int[] lengths;
+
+  /**
+   * Number of different byte values in each of the patterns.
+   */
+  private int[] patternAlphabetSizes;
+
+  /**
+   * Shortest period of each of the patterns.
+   *
+   * Pattern {@code p} has period {@code k} if {@code p[i] == p[i + k]} for all valid {@code i}.
+   * Aperiodic patterns have their own length as their shortest period.
+   */
+  private int[] periods;
+
+  /**
+   * Calculate the statistics for a set of patterns.
+   *
+   * @param patterns - The pattern set.
+   */
+  public PatternStatistics(ArrayList<byte[]> patterns) {
+    patternCount = patterns.size();
+    lengths = new int[patternCount];
+    patternAlphabetSizes = new int[patternCount];
+    periods = new int[patternCount];
+
+    minLength = patternCount > 0 ? Integer.MAX_VALUE : 0;
+
+    boolean[] seenBytes = new boolean[256];
+    HashMap<Integer, Boolean> seenLengths = new HashMap<>();
+
+    for (int i = 0; i < patternCount; i++) {
+      byte[] pattern = patterns.get(i);
+      boolean[] patternBytes = new boolean[256];
+
+      for (byte b : pattern) {
+        if (!patternBytes[b & 0xFF]) {
+          patternBytes[b & 0xFF] = true;
+          patternAlphabetSizes[i]++;
+        }
+
+        if (!seenBytes[b & 0xFF]) {
+          seenBytes[b & 0xFF] = true;
+          alphabetSize++;
+        }
+      }
+
+      lengths[i] = pattern.length;
+      periods[i] = shortestPeriod(pattern);
+      totalLength += pattern.length;
+      minLength = Math.min(minLength, pattern.length);
+      maxLength = Math.max(maxLength, pattern.length);
+
+      if (seenLengths.get(pattern.length) == null) {
+        seenLengths.insert(pattern.length, true);
+        distinctLengths++;
+      }
+    }
+  }
+
+  /**
+   * Calculate the shortest period of a pattern from the length of its longest
+   * proper border, using the Knuth-Morris-Pratt failure function.
+   *
+   * @param pattern - The pattern.
+   *
+   * @return The shortest period of the pattern.
+   */
+  static int shortestPeriod(byte[] pattern) {
+    if (pattern.length == 0)
+      return 0;
+
+    int[] border = new int[pattern.length];
+
+    for (int i = 1; i < pattern.length; i++) {
+      int k = border[i - 1];
+
+      while (k > 0 && pattern[i] != pattern[k])
+        k = border[k - 1];
+
+      if (pattern[i] == pattern[k])
+        k++;
+
+      border[i] = k;
+    }
+
+    return pattern.length - border[pattern.length - 1];
+  }
+
+  /**
+   * Get the number of patterns in the set.
+   */
+  public int getPatternCount() {
+    return patternCount;
+  }
+
+  /**
+   * Get the length of the shortest pattern.
+   */
+  public int getMinLength() {
+    return minLength;
+  }
+
+  /**
+   * Get the length of the longest pattern.
+   */
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /**
+   * Get the mean length of the patterns.
+   */
+  public double getMeanLength() {
+    return patternCount == 0 ? 0 : (double) totalLength / patternCount;
+  }
+
+  /**
+   * Get the sum of the lengths of the patterns.
+   */
+  public long getTotalLength() {
+    return totalLength;
+  }
+
+  /**
+   * Get the number of different pattern lengths in the set.
+   */
+  public int getDistinctLengths() {
+    return distinctLengths;
+  }
+
+  /**
+   * Get the number of different byte values occurring in the patterns.
+   */
+  public int getAlphabetSize() {
+    return alphabetSize;
+  }
+
+  /**
+   * Get the length of the pattern at index {@code i}.
+   */
+  public int getLength(int i) {
+    return lengths[i];
+  }
+
+  /**
+   * Get the number of different byte values in the pattern at index {@code i}.
+   */
+  public int getPatternAlphabetSize(int i) {
+    return patternAlphabetSizes[i];
+  }
+
+  /**
+   * Get the shortest period of the pattern at index {@code i}.
+   */
+  public int getPeriod(int i) {
+    return periods[i];
+  }
+
+  /**
+   * Get the number of patterns whose shortest period is at most half of their length.
+   */
+  public int getPeriodicPatternCount() {
+    int count = 0;
+
+    for (int i = 0; i < patternCount; i++) {
+      if (periods[i] * 2 <= lengths[i])
+        count++;
+    }
+
+    return count;
+  }
+}
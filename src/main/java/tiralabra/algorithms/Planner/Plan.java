@@ -0,0 +1,147 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms.Planner;
+
+import tiralabra.algorithms.StringMatcherBuilderFactory;
+
+/**
+ * Result of planning: the estimated cost of each of the candidate algorithms
+ * for a pattern set, and which one of them was chosen.
+ */
+public class Plan {
+  /**
+   * A search algorithm considered by the planner.
+   */
+  public static class Candidate {
+    /**
+     * Name of the algorithm, matching the command-line flag used to select it manually.
+     */
+    private String name;
+
+    /**
+     * Factory for builders of the algorithm, configured with the parameters chosen by the planner.
+     */
+    private StringMatcherBuilderFactory factory;
+
+    /**
+     * Estimated cost of searching with the algorithm in nanoseconds per input byte.
+     */
+    private double cost;
+
+    Candidate(String name, StringMatcherBuilderFactory factory, double cost) {
+      this.name = name;
+      this.factory = factory;
+      this.cost = cost;
+    }
+
+    /**
+     * Get the name of the algorithm.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Get the factory for builders of the algorithm.
+     */
+    public StringMatcherBuilderFactory getFactory() {
+      return factory;
+    }
+
+    /**
+     * Get the estimated cost of the algorithm in nanoseconds per input byte.
+     */
+    public double getCost() {
+      return cost;
+    }
+  }
+
+  /**
+   * Statistics of the planned pattern set.
+   */
+  private PatternStatistics statistics;
+
+  /**
+   * All of the considered algorithms.
+   */
+  private Candidate[] candidates;
+
+  /**
+   * The algorithm with the lowest estimated cost.
+   */
+  private Candidate selected;
+
+  /**
+   * Create a plan choosing the cheapest one of the candidates.
+   *
+   * @param statistics - Statistics of the planned pattern set.
+   * @param candidates - The considered algorithms. Must not be empty.
+   */
+  Plan(PatternStatistics statistics, Candidate[] candidates) {
+    this.statistics = statistics;
+    this.candidates = candidates;
+
+    for (Candidate candidate : candidates) {
+      if (selected == null || candidate.cost < selected.cost)
+        selected = candidate;
+    }
+  }
+
+  /**
+   * Get the statistics of the planned pattern set.
+   */
+  public PatternStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Get all of the considered algorithms.
+   */
+  public Candidate[] getCandidates() {
+    return candidates;
+  }
+
+  /**
+   * Get the chosen algorithm.
+   */
+  public Candidate getSelected() {
+    return selected;
+  }
+
+  /**
+   * Describe the pattern set, the estimated costs and the choice in a human readable form.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+
+    sb.append(String.format(
+      "Pattern set: %d patterns, lengths %d..%d (mean %.1f), %d distinct lengths, %d distinct bytes, %d periodic\n",
+      statistics.getPatternCount(),
+      statistics.getMinLength(),
+      statistics.getMaxLength(),
+      statistics.getMeanLength(),
+      statistics.getDistinctLengths(),
+      statistics.getAlphabetSize(),
+      statistics.getPeriodicPatternCount()
+    ));
+
+    sb.append("Estimated cost (ns/byte):\n");
+
+    for (Candidate candidate : candidates) {
+      sb.append(String.format(
+        "  %s %-20s %8.2f\n",
+        candidate == selected ? "*" : " ",
+        candidate.name,
+        candidate.cost
+      ));
+    }
+
+    sb.append("Selected: ").append(selected.name).append('\n');
+
+    return sb.toString();
+  }
+}
@@ -0,0 +1,270 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms.Planner;
+
+import tiralabra.algorithms.AhoCorasick.AhoCorasick;
+import tiralabra.algorithms.BoyerMoore.BoyerMoore;
+import tiralabra.algorithms.CompositeStringMatcherBuilder;
+import tiralabra.algorithms.KnuthMorrisPratt.KnuthMorrisPratt;
+import tiralabra.algorithms.RabinKarp.BitShiftHash;
+import tiralabra.algorithms.RabinKarp.RabinKarp;
+import tiralabra.utils.ArrayList;
+
+/**
+ * Chooses a search algorithm for a pattern set based on statistics of the set.
+ *
+ * The cost of each algorithm is estimated in nanoseconds per input byte. The
+ * constants of the cost model have been fitted to the execution times measured
+ * by {@link tiralabra.app.benchmark.BenchmarkRunner} for the benchmarks in the
+ * {@code benchmarks} directory, and to runs of the same measurement loop over
+ * a megabyte of random lowercase text with 1 to 100 random patterns of lengths
+ * 2, 8 and 32. Only the relative magnitudes of the estimates matter.
+ */
+public class Planner {
+  /**
+   * Cost of a single Aho-Corasick state transition.
+   */
+  static final double AHO_CORASICK_BYTE = 8.0;
+
+  /**
+   * Additional cost per child of a node, caused by the linear search of the children.
+   */
+  static final double AHO_CORASICK_FANOUT = 1.3;
+
+  /**
+   * Number of patterns per distinct byte after which the fan-out of the nodes stops growing.
+   */
+  static final double AHO_CORASICK_FANOUT_CAP = 1.5;
+
+  /**
+   * Cost of running a single Knuth-Morris-Pratt matcher.
+   */
+  static final double KNUTH_MORRIS_PRATT_PATTERN = 4.5;
+
+  /**
+   * Cost of a single Boyer-Moore matcher that does not depend on the shift length.
+   */
+  static final double BOYER_MOORE_FIXED = 2.0;
+
+  /**
+   * Cost of a single alignment of a Boyer-Moore matcher. Divided by the expected shift.
+   */
+  static final double BOYER_MOORE_ALIGNMENT = 45.0;
+
+  /**
+   * Cost of comparing a single byte of a Boyer-Moore alignment that matches the pattern.
+   */
+  static final double BOYER_MOORE_MATCH_BYTE = 3.0;
+
+  /**
+   * Cost of updating the rolling hash and looking it up.
+   */
+  static final double RABIN_KARP_BYTE = 19.0;
+
+  /**
+   * Additional cost per pattern of Rabin-Karp.
+   */
+  static final double RABIN_KARP_PATTERN = 0.1;
+
+  /**
+   * Cost of tracking and verifying a suspected Rabin-Karp match.
+   */
+  static final double RABIN_KARP_SUSPECT = 120.0;
+
+  /**
+   * Cost of merging the matches of each length class of the composite matcher.
+   */
+  static final double COMPOSITE_CLASS = 1.0;
+
+  /**
+   * Longest pattern of the short length class of the composite matcher.
+   */
+  static final int COMPOSITE_SHORT_MAX_LENGTH = 4;
+
+  /**
+   * Shortest pattern of the long length class of the composite matcher.
+   */
+  static final int COMPOSITE_LONG_MIN_LENGTH = 256;
+
+  /**
+   * Returns a builder which chooses the algorithm when the matcher is built.
+   */
+  public static PlannerBuilder getBuilder() {
+    return new PlannerBuilder();
+  }
+
+  /**
+   * Plan the search of a pattern set.
+   *
+   * @param patterns - The pattern set.
+   *
+   * @return Plan containing the chosen algorithm.
+   */
+  public static Plan plan(ArrayList<byte[]> patterns) {
+    return plan(new PatternStatistics(patterns), 0);
+  }
+
+  /**
+   * Plan the search of a pattern set for input with a known density of matches.
+   *
+   * Every match costs an algorithm at least the time it takes to report it, but
+   * Boyer-Moore also loses its ability to skip input when it has to compare whole
+   * alignments, and every match is a suspected match for Rabin-Karp.
+   *
+   * @param stats - Statistics of the pattern set.
+   * @param matchDensity - Expected number of matches per input byte.
+   *
+   * @return Plan containing the chosen algorithm.
+   */
+  public static Plan plan(PatternStatistics stats, double matchDensity) {
+    ArrayList<Plan.Candidate> candidates = new ArrayList<>(8);
+
+    candidates.add(new Plan.Candidate(
+      "aho-corasick",
+      AhoCorasick::getBuilder,
+      ahoCorasickCost(stats.getPatternCount(), stats.getAlphabetSize())
+    ));
+
+    candidates.add(new Plan.Candidate(
+      "knuth-morris-pratt",
+      KnuthMorrisPratt::getBuilder,
+      KNUTH_MORRIS_PRATT_PATTERN * stats.getPatternCount()
+    ));
+
+    double boyerMooreCost = 0;
+
+    for (int i = 0; i < stats.getPatternCount(); i++) {
+      boyerMooreCost += boyerMooreCost(stats, i);
+    }
+
+    boyerMooreCost += matchDensity * BOYER_MOORE_MATCH_BYTE * stats.getMeanLength();
+
+    candidates.add(new Plan.Candidate("boyer-moore", BoyerMoore::getBuilder, boyerMooreCost));
+
+    candidates.add(new Plan.Candidate(
+      "rabin-karp-bs",
+      () -> RabinKarp.getBuilder().setHashFunction(BitShiftHash::new),
+      rabinKarpCost(stats.getPatternCount(), stats.getMinLength(), stats.getAlphabetSize())
+        + matchDensity * RABIN_KARP_SUSPECT
+    ));
+
+    Plan.Candidate composite = compositeCandidate(stats);
+
+    if (composite != null)
+      candidates.add(composite);
+
+    Plan.Candidate[] array = new Plan.Candidate[candidates.size()];
+
+    for (int i = 0; i < array.length; i++) {
+      array[i] = candidates.get(i);
+    }
+
+    return new Plan(stats, array);
+  }
+
+  /**
+   * Estimate the cost of Aho-Corasick.
+   *
+   * The children of a node are searched linearly, so the cost grows with the
+   * number of patterns until the nodes near the root have a child for most of
+   * the bytes in the alphabet.
+   *
+   * @param patternCount - Number of patterns.
+   * @param alphabetSize - Number of different bytes in the patterns.
+   */
+  private static double ahoCorasickCost(int patternCount, int alphabetSize) {
+    return AHO_CORASICK_BYTE + AHO_CORASICK_FANOUT * Math.min(patternCount, AHO_CORASICK_FANOUT_CAP * alphabetSize);
+  }
+
+  /**
+   * Estimate the cost of a Boyer-Moore matcher for a single pattern.
+   *
+   * On average the bad character rule can shift past a pattern only if the
+   * mismatched byte does not occur in the pattern, so patterns made of few
+   * different bytes shift less than their length. Periodic patterns tend to
+   * occur in runs, where only a shift of the period is possible.
+   *
+   * @param stats - Statistics of the pattern set.
+   * @param i - Index of the pattern.
+   */
+  private static double boyerMooreCost(PatternStatistics stats, int i) {
+    int shift = Math.min(stats.getLength(i), 2 * stats.getPatternAlphabetSize(i));
+
+    if (stats.getPeriod(i) * 2 <= stats.getLength(i))
+      shift = Math.min(shift, stats.getPeriod(i));
+
+    return BOYER_MOORE_FIXED + BOYER_MOORE_ALIGNMENT / Math.max(1, shift);
+  }
+
+  /**
+   * Estimate the cost of Rabin-Karp.
+   *
+   * The hashed window is as long as the shortest pattern. A window is suspected
+   * to match a pattern with probability of about {@code alphabetSize^-minLength}
+   * per pattern, after which the rest of the pattern is verified.
+   *
+   * @param patternCount - Number of patterns.
+   * @param minLength - Length of the shortest pattern.
+   * @param alphabetSize - Number of different bytes in the patterns.
+   */
+  private static double rabinKarpCost(int patternCount, int minLength, int alphabetSize) {
+    double suspectRate = patternCount * Math.pow(Math.max(2, alphabetSize), -minLength);
+
+    return RABIN_KARP_BYTE
+      + RABIN_KARP_PATTERN * patternCount
+      + RABIN_KARP_SUSPECT * Math.min(1.0, suspectRate);
+  }
+
+  /**
+   * Estimate the cost of the composite matcher with its default algorithms,
+   * if the pattern set spans multiple length classes.
+   *
+   * @param stats - Statistics of the pattern set.
+   *
+   * @return The candidate, or {@code null} if all of the patterns belong to the same length class.
+   */
+  private static Plan.Candidate compositeCandidate(PatternStatistics stats) {
+    int shortCount = 0;
+    double mediumCost = 0;
+    int mediumCount = 0;
+    int longCount = 0;
+    int longMinLength = Integer.MAX_VALUE;
+
+    for (int i = 0; i < stats.getPatternCount(); i++) {
+      int length = stats.getLength(i);
+
+      if (length <= COMPOSITE_SHORT_MAX_LENGTH) {
+        shortCount++;
+      } else if (length < COMPOSITE_LONG_MIN_LENGTH) {
+        mediumCost += boyerMooreCost(stats, i);
+        mediumCount++;
+      } else {
+        longCount++;
+        longMinLength = Math.min(longMinLength, length);
+      }
+    }
+
+    int classes = (shortCount > 0 ? 1 : 0) + (mediumCount > 0 ? 1 : 0) + (longCount > 0 ? 1 : 0);
+
+    if (classes < 2)
+      return null;
+
+    double cost = COMPOSITE_CLASS * classes + mediumCost;
+
+    if (shortCount > 0)
+      cost += ahoCorasickCost(shortCount, stats.getAlphabetSize());
+
+    if (longCount > 0)
+      cost += rabinKarpCost(longCount, longMinLength, stats.getAlphabetSize());
+
+    return new Plan.Candidate(
+      "composite",
+      () -> new CompositeStringMatcherBuilder()
+        .setLengthClasses(COMPOSITE_SHORT_MAX_LENGTH, COMPOSITE_LONG_MIN_LENGTH),
+      cost
+    );
+  }
+}
@@ -0,0 +1,116 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms.Planner;
+
+import tiralabra.algorithms.StringMatcher;
+import tiralabra.algorithms.StringMatcherBuilder;
+import tiralabra.utils.ArrayList;
+
+/**
+ * Builder which collects the patterns and lets the {@link Planner} choose the
+ * search algorithm when the matcher is built.
+ */
+public class PlannerBuilder implements StringMatcherBuilder {
+  /**
+   * The added patterns.
+   */
+  private ArrayList<byte[]> patterns = new ArrayList<>();
+
+  /**
+   * Plan for the current set of patterns, or {@code null} if patterns have been added since planning.
+   */
+  private Plan plan = null;
+
+  /**
+   * Whether the built matchers re-plan based on measurements made during the search.
+   */
+  private boolean adaptive = false;
+
+  /**
+   * Number of input bytes after which an adaptive matcher makes its first measurement.
+   */
+  private int firstSampleBytes = 1 << 20;
+
+  /**
+   * Number of input bytes between the subsequent measurements of an adaptive matcher.
+   */
+  private int sampleIntervalBytes = 16 << 20;
+
+  /**
+   * Make the built matchers measure the performance of the chosen algorithm during
+   * the search and switch to another algorithm if it seems to be faster.
+   *
+   * @param adaptive - Whether the matchers should be adaptive.
+   *
+   * @return Reference to the builder for method chaining.
+   */
+  public PlannerBuilder setAdaptive(boolean adaptive) {
+    this.adaptive = adaptive;
+    return this;
+  }
+
+  /**
+   * Set how often adaptive matchers measure the performance of the used algorithm.
+   *
+   * @param firstSampleBytes - Number of input bytes after which the first measurement is made.
+   * @param sampleIntervalBytes - Number of input bytes between the subsequent measurements.
+   *
+   * @return Reference to the builder for method chaining.
+   */
+  public PlannerBuilder setSampleSizes(int firstSampleBytes, int sampleIntervalBytes) {
+    this.firstSampleBytes = firstSampleBytes;
+    this.sampleIntervalBytes = sampleIntervalBytes;
+    return this;
+  }
+
+  /**
+   * Plan the search of the patterns added so far.
+   *
+   * @return Plan containing the chosen algorithm.
+   */
+  public Plan getPlan() {
+    if (plan == null)
+      plan = Planner.plan(patterns);
+
+    return plan;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public StringMatcherBuilder addPattern(byte[] pattern) {
+    patterns.add(pattern);
+    plan = null;
+    return this;
+  }
+
+  /**
+   * Build a matcher using the algorithm chosen by the planner.
+   *
+   * @return A new {@link StringMatcher} instance.
+   */
+  @Override
+  public StringMatcher buildMatcher() {
+    if (adaptive) {
+      ArrayList<byte[]> copy = new ArrayList<>(Math.max(2, patterns.size()));
+
+      for (byte[] pattern : patterns) {
+        copy.add(pattern);
+      }
+
+      return new AdaptiveStringMatcher(copy, getPlan(), firstSampleBytes, sampleIntervalBytes);
+    }
+
+    StringMatcherBuilder builder = getPlan().getSelected().getFactory().createBuilder();
+
+    for (byte[] pattern : patterns) {
+      builder.addPattern(pattern);
+    }
+
+    return builder.buildMatcher();
+  }
+}
@@ -7,11 +7,14 @@ package tiralabra.algorithms.RabinKarp;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.function.Function;
 
 import tiralabra.utils.HashMap;
 import tiralabra.utils.ArrayList;
+import tiralabra.algorithms.MatchSink;
+import tiralabra.algorithms.MatcherReport;
 import tiralabra.algorithms.StringMatcher;
-import tiralabra.utils.RingBuffer;
+import tiralabra.utils.InputWindow;
 
 /**
  * Implementation of the Rabin-Karp string search algorithm.
@@ -19,30 +22,36 @@ import tiralabra.utils.RingBuffer;
 public class RabinKarp extends StringMatcher {
   /**
    * Class for keeping state about matches, that are only verified up to the
-   * current cursor position.
+   * current input position.
    */
   private class SuspectedMatch {
     /**
      * Location of the start of this match, counting from the start of the input stream.
      */
-    int offset = 0;
+    long offset = 0;
 
     /**
      * Pattern which is begin confirmed.
      */
     byte[] substring;
 
-    SuspectedMatch(byte[] substring, int offset) {
-      this.substring = substring;
+    /**
+     * Index of {@link #substring} in {@link #patterns}.
+     */
+    int patternId;
+
+    SuspectedMatch(int patternId, long offset) {
+      this.patternId = patternId;
+      this.substring = patterns[patternId];
       this.offset = offset;
     }
   }
 
   /**
-   * Map from hashes produced by {@link #hash} to a list of patterns that have a prefix
-   * with this hash.
+   * Map from hashes produced by {@link #hash} to a list of the indices of the patterns
+   * that have a prefix with this hash.
    */
-  private HashMap<Object, ArrayList<byte[]>> substringHashes = new HashMap<>();
+  private HashMap<Object, ArrayList<Integer>> substringHashes = new HashMap<>();
 
   /**
    * Factory for creating new instances of the rolling hash function.
@@ -57,7 +66,7 @@ public class RabinKarp extends StringMatcher {
   /**
    * Current offset in the input stream in bytes.
    */
-  private int inputOffset = 0;
+  private long inputOffset = 0;
 
   /**
    * Size of the window (up to the current point in the input stream) which is being hashed.
@@ -96,20 +105,20 @@ public class RabinKarp extends StringMatcher {
     // Calculate a hash for the windowSize-length prefix of each pattern
     // and store them in the `substringHashes` map.
 
-    for (byte[] substring : substrings) {
+    for (int id = 0; id < substrings.length; id++) {
       RollingHashFunction hash = hashFactory.create(windowSize);
 
       for (int i = 0; i < windowSize; i++)
-        hash.pushByte(substring[i]);
+        hash.pushByte(substrings[id][i]);
 
-      ArrayList<byte[]> hashSubstrings = substringHashes.get(hash.getHash());
+      ArrayList<Integer> hashSubstrings = substringHashes.get(hash.getHash());
 
       if (hashSubstrings == null) {
         hashSubstrings = new ArrayList<>();
         substringHashes.insert(hash.getHash(), hashSubstrings);
       }
 
-      hashSubstrings.add(substring);
+      hashSubstrings.add(id);
     }
 
     hash = hashFactory.create(windowSize);
@@ -117,6 +126,41 @@ public class RabinKarp extends StringMatcher {
     suspectedMatches = new ArrayList<>(substrings.length);
   }
 
+  /**
+   * Creates an instance at the start of a new input stream, sharing the patterns
+   * and the map of their hashes with another instance.
+   *
+   * @param compiled - The instance whose patterns and hashes are shared.
+   */
+  private RabinKarp(RabinKarp compiled) {
+    this.patterns = compiled.patterns;
+    this.hashFactory = compiled.hashFactory;
+    this.windowSize = compiled.windowSize;
+    this.substringHashes = compiled.substringHashes;
+
+    hash = hashFactory.create(windowSize);
+    suspectedMatches = new ArrayList<>(patterns.length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected StringMatcher newCursor() {
+    return new RabinKarp(this);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void reset() {
+    super.reset();
+    hash = hashFactory.create(windowSize);
+    suspectedMatches.clear();
+
+    if (inputWindow != null)
+      inputWindow.clear();
+
+    inputOffset = 0;
+  }
+
   /** {@inheritDoc} */
   public static RabinKarpBuilder getBuilder() {
     return new RabinKarpBuilder();
@@ -128,61 +172,226 @@ public class RabinKarp extends StringMatcher {
     return Arrays.stream(patterns).iterator();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public byte[] getPattern(int patternId) {
+    return patterns[patternId];
+  }
+
   /**
-   * Cursor position in the internal buffer.
+   * {@inheritDoc}
+   *
+   * Patterns sharing a hash all have to be verified whenever the hash of the
+   * window matches, so a high number of patterns per hash slows down the search.
+   */
+  @Override
+  public MatcherReport explain() {
+    MatcherReport report = super.explain().setAlgorithm("Rabin-Karp");
+
+    report.add("window size", windowSize);
+    report.add("hash function", hash.getClass().getSimpleName());
+
+    int maxPatternsPerHash = substringHashes.entries()
+      .mapToInt(entry -> entry.getValue().size())
+      .max()
+      .orElse(0);
+
+    long listBytes = substringHashes.entries()
+      .mapToLong(entry -> MatcherReport.listBytes(entry.getValue().capacity()))
+      .sum();
+
+    int distinctHashes = substringHashes.size();
+
+    report.add("hash buckets", substringHashes.capacity());
+    report.add("distinct hashes", distinctHashes);
+    report.add("bucket occupancy", (double) distinctHashes / substringHashes.capacity());
+    report.add("max patterns per hash", maxPatternsPerHash);
+
+    // Each entry holds a key, a value and a reference to the map, and the keys are boxed numbers.
+    long entryBytes = distinctHashes * (MatcherReport.objectBytes(3 * MatcherReport.REFERENCE_BYTES) + MatcherReport.objectBytes(8));
+
+    report.addMemory("hash table", MatcherReport.arrayBytes(substringHashes.capacity(), MatcherReport.REFERENCE_BYTES));
+    report.addMemory("hash table entries", entryBytes);
+    report.addMemory("pattern lists", listBytes);
+    report.addMemory("suspected matches", MatcherReport.listBytes(suspectedMatches.capacity()));
+
+    if (inputWindow != null)
+      report.addMemory("carry-over window", MatcherReport.arrayBytes(inputWindow.capacity(), 1));
+
+    return report;
+  }
+
+  /**
+   * The input pushed so far: the array being pushed and the last bytes of the previous ones.
+   * Allocated on first push, as the input of a wrapped matcher is read from a shared window instead.
    */
-  private int cursor = 0;
+  private InputWindow inputWindow;
+
+  /**
+   * The input byte being processed.
+   */
+  private byte currentByte;
+
+  /**
+   * {@link #handleSuspectedMatches} as a filter, created once instead of for every byte.
+   */
+  private Function<SuspectedMatch, Boolean> suspectedMatchFilter = this::handleSuspectedMatches;
+
+  /**
+   * Buffer for pushing single bytes.
+   */
+  private byte[] singleByte = new byte[1];
 
   /** {@inheritDoc} */
-  public void process() {
-    RingBuffer buffer = getBuffer();
+  @Override
+  public boolean pushByte(byte b) {
+    singleByte[0] = b;
+    pushBytes(singleByte, 0, 1);
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The bytes are hashed in place and all of them are accepted. Only the last
+   * {@code windowSize} bytes are copied, as the hash matches found in the next
+   * array need to be verified against them.
+   */
+  @Override
+  public int pushBytes(byte[] bytes, int offset, int size) {
+    if (inputWindow == null)
+      inputWindow = new InputWindow(requiredHistory());
+
+    inputWindow.beginSegment(bytes, offset, size);
+    pushSegment(inputWindow);
+    inputWindow.endSegment();
+
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Verifying a hash match needs the hashed window, which may begin before the pushed segment.
+   */
+  @Override
+  protected int requiredHistory() {
+    return windowSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The segment is hashed in place, and the windows which begin before the segment are verified through the window.
+   */
+  @Override
+  protected void pushSegment(InputWindow window) {
+    byte[] bytes = window.segmentArray();
+    int offset = window.segmentOffset();
+    int size = window.segmentSize();
+
+    for (int i = offset; i < offset + size; i++) {
+      currentByte = bytes[i];
+
+      // Check the byte against the suspected matches before it enters the window.
+      if (suspectedMatches.size() > 0)
+        suspectedMatches.filter(suspectedMatchFilter);
 
-    while (buffer.size() > 0) {
       inputOffset += 1;
 
-      hash.pushByte(buffer.get(cursor));
+      hash.pushByte(currentByte);
+      checkForPreliminaryMatches(window);
+    }
+  }
 
-      // Since we need to be able to verify the hash matches we encounter,
-      // we need to keep `windowSize` number of bytes in the buffer "behind"
-      // the cursor.
+  /**
+   * Searches a segment of an array by hashing the windows of the array with a new hash function instance.
+   *
+   * Suspected matches are verified against the array right away, so the matches are found in the order of their offsets.
+   *
+   * @param sink - Receiver of the matches, or {@code null} to stop at the first match.
+   *
+   * @return Index of the first match if {@code sink} is {@code null}, -1 otherwise or if there are no matches.
+   *         The index of the match in {@link #patterns} is stored in {@code firstId[0]}.
+   */
+  private int search(byte[] haystack, int from, int to, MatchSink sink, int[] firstId) {
+    RollingHashFunction windowHash = hashFactory.create(windowSize);
 
-      if (cursor >= windowSize) {
-        buffer.advance(1);
-      } else {
-        cursor++;
-      }
+    for (int i = from; i < to; i++) {
+      windowHash.pushByte(haystack[i]);
+
+      int start = i + 1 - windowSize;
+
+      if (start < from)
+        continue;
+
+      ArrayList<Integer> candidates = substringHashes.get(windowHash.getHash());
+
+      if (candidates == null)
+        continue;
 
-      checkForPreliminaryMatches();
+      for (int c = 0; c < candidates.size(); c++) {
+        int id = candidates.get(c);
+        byte[] pattern = patterns[id];
 
-      suspectedMatches.filter(this::handleSuspectedMatches);
+        if (start + pattern.length > to || !Arrays.equals(pattern, 0, pattern.length, haystack, start, start + pattern.length))
+          continue;
+
+        if (sink == null) {
+          firstId[0] = id;
+          return start;
+        }
+
+        sink.onMatch(start, id);
+      }
     }
+
+    return -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+    search(haystack, from, to, sink, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Match searchFirst(byte[] haystack, int from, int to) {
+    int[] firstId = new int[1];
+    int start = search(haystack, from, to, null, firstId);
+
+    return start == -1 ? null : new Match(start, patterns[firstId[0]]);
   }
 
   /**
    * Check if hash of the rolling window matches a known hash
    * and add an entry to {@link #suspectedMatches} for each
    * possible match associated with that hash.
+   *
+   * @param window - Window containing the hashed bytes.
    */
-  private void checkForPreliminaryMatches() {
-    RingBuffer buffer = getBuffer();
-
-    ArrayList<byte[]> matches = substringHashes.get(hash.getHash());
+  private void checkForPreliminaryMatches(InputWindow window) {
+    ArrayList<Integer> matches = substringHashes.get(hash.getHash());
 
     // Hash of the rolling window matches a known hash.
-    // If we do not have yet `windowSize` bytes in the buffer,
+    // If we do not have yet `windowSize` bytes of input,
     // we know that this match must be a false positive.
 
-    if (matches != null && cursor == windowSize) {
-      for (byte[] pattern : matches) {
+    if (matches != null && inputOffset >= windowSize) {
+      long windowStart = inputOffset - windowSize;
+
+      for (int id : matches) {
+        byte[] pattern = patterns[id];
         int i = 0;
 
-        while (i < windowSize && buffer.get(i) == pattern[i]) i++;
+        while (i < windowSize && window.get(windowStart + i) == pattern[i]) i++;
 
         if (i == windowSize) {
           if (pattern.length > windowSize) {
-            suspectedMatches.add(new SuspectedMatch(pattern, inputOffset - windowSize));
+            suspectedMatches.add(new SuspectedMatch(id, inputOffset - windowSize));
           } else {
-            addMatch(inputOffset - windowSize, pattern);
+            addMatch(inputOffset - windowSize, id);
           }
         }
       }
@@ -190,23 +399,21 @@ public class RabinKarp extends StringMatcher {
   }
 
   /**
-   * Checks a suspected match against the byte at the cursor.
+   * Checks a suspected match against the input byte being processed.
    *
    * @param match - A suspected match.
    * @return True if the match need to be checked again, False if the match has been confirmed
    *   to be correct or a false positive.
    */
   private boolean handleSuspectedMatches(SuspectedMatch match) {
-    RingBuffer buffer = getBuffer();
-
-    byte buffer_byte = buffer.get(cursor);
-    byte pattern_byte = match.substring[inputOffset - match.offset];
+    byte buffer_byte = currentByte;
+    byte pattern_byte = match.substring[(int) (inputOffset - match.offset)];
 
     boolean byte_matches = buffer_byte == pattern_byte;
     boolean whole_pattern_checked = inputOffset >= match.offset + match.substring.length - 1;
 
     if (byte_matches && whole_pattern_checked) {
-      addMatch(inputOffset - match.substring.length + 1, match.substring);
+      addMatch(inputOffset - match.substring.length + 1, match.patternId);
     }
 
     return byte_matches && !whole_pattern_checked;
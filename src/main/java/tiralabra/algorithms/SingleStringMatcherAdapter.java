@@ -6,18 +6,50 @@
 package tiralabra.algorithms;
 
 import tiralabra.utils.ArrayList;
+import tiralabra.utils.InputWindow;
+import tiralabra.utils.LongIntHeap;
+import tiralabra.utils.LongIntQueue;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Adapter which allows multi-pattern matching string matchers to be created
  * for algorithms which only provide a {@link SingleStringMatcherBuilder} implementation.
  *
  * The created {@link StringMatcher} wraps a separate instance of the underlying
- * algorithm for each of the matcher patterns.
+ * algorithm for each of the matcher patterns. The input is not copied for each of
+ * them: the wrapped matchers read the pushed arrays in place and the bytes preceding
+ * each array from a single {@link InputWindow} owned by the adapted matcher.
+ *
+ * The matches of the wrapped matchers are queued separately and merged into the order
+ * of their offsets. After each pushed array, the matches starting before the earliest
+ * offset at which any wrapped matcher could still find a match (the watermark) are
+ * reported. Matches at the same offset are reported in the order the patterns were added.
+ * This assumes that the wrapped matchers report each match as soon as its last byte
+ * has been pushed, in the order of their offsets, as all of the algorithms do.
+ *
+ * With {@link #setParallelism(int)} the wrapped matchers are split into groups which
+ * process the pushed arrays in parallel in the common {@link ForkJoinPool}. The matches
+ * are merged once all groups have processed the array, so they are reported in the same
+ * order as without parallelism.
  */
 public class SingleStringMatcherAdapter implements StringMatcherBuilder {
+  /**
+   * Maximum number of wrapped matchers whose reports are included in the report of the adapted matcher.
+   */
+  static final int MAX_EXPLAINED_MATCHERS = 8;
+
+  /**
+   * Size of the smallest pushed array which is processed in parallel. The groups
+   * process smaller arrays on the calling thread, as handing them to the pool would
+   * take longer than processing them.
+   */
+  static final int MIN_PARALLEL_SIZE = 4096;
+
   /**
    * The adapted builder.
    */
@@ -28,6 +60,11 @@ public class SingleStringMatcherAdapter implements StringMatcherBuilder {
    */
   ArrayList<byte[]> patterns = new ArrayList<>();
 
+  /**
+   * Number of groups the wrapped matchers are split into.
+   */
+  int parallelism = 1;
+
   /**
    * String matcher class whose instances are returned by the adapting builder.  
    */
@@ -37,6 +74,79 @@ public class SingleStringMatcherAdapter implements StringMatcherBuilder {
      */
     ArrayList<StringMatcher> matchers = new ArrayList<>(patterns.size());
 
+    /**
+     * Input shared by the wrapped matchers. Holds as many bytes preceding the pushed
+     * array as the most demanding of the wrapped matchers needs.
+     */
+    private InputWindow window;
+
+    /**
+     * Buffer for pushing single bytes.
+     */
+    private byte[] singleByte = new byte[1];
+
+    /**
+     * Matches of each wrapped matcher which have not been reported yet, in the order of their offsets.
+     */
+    private LongIntQueue[] pending;
+
+    /**
+     * Heads of the non-empty queues in {@link #pending} while merging. Holds the offset of the
+     * first match of a queue and the index of the queue.
+     */
+    private LongIntHeap heads;
+
+    /**
+     * Length of the longest pattern of the wrapped matchers.
+     */
+    private int longestPattern = 0;
+
+    /**
+     * Groups of the wrapped matchers processing the input in parallel,
+     * or {@code null} if the wrapped matchers are run on the calling thread.
+     */
+    private MatcherGroup[] groups = null;
+
+    /**
+     * Task running all of the groups in the pool.
+     */
+    private RecursiveAction fanOut = null;
+
+    /**
+     * A contiguous range of the wrapped matchers which is run as a single task.
+     */
+    private class MatcherGroup extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Index of the first wrapped matcher in the group.
+       */
+      private int start;
+
+      /**
+       * Index following the last wrapped matcher in the group.
+       */
+      private int end;
+
+      MatcherGroup(int start, int end) {
+        this.start = start;
+        this.end = end;
+      }
+
+      /**
+       * Push the current segment of the shared window to the group's matchers.
+       */
+      void pushSegment() {
+        for (int i = start; i < end; i++) {
+          matchers.get(i).pushSegment(window);
+        }
+      }
+
+      @Override
+      protected void compute() {
+        pushSegment();
+      }
+    }
 
     /**
      * Initialize the matcher by building the wrapped matchers from the list of patterns.
@@ -45,6 +155,175 @@ public class SingleStringMatcherAdapter implements StringMatcherBuilder {
       for (int i = 0; i < patterns.size(); i++) {
         matchers.add(builder.buildMatcher(patterns.get(i)));
       }
+
+      connectMatchers(parallelism);
+    }
+
+    /**
+     * Initialize the matcher with cursors of the wrapped matchers of another instance.
+     *
+     * @param compiled - The instance whose wrapped matchers' structures are shared.
+     */
+    private AdaptedStringMatcher(AdaptedStringMatcher compiled) {
+      for (int i = 0; i < compiled.matchers.size(); i++) {
+        matchers.add(compiled.matchers.get(i).newCursor());
+      }
+
+      connectMatchers(compiled.groups == null ? 1 : compiled.groups.length);
+    }
+
+    /**
+     * Split the wrapped matchers into groups, route their matches to the merge queues
+     * and create the shared input window.
+     *
+     * Each wrapped matcher only has a single pattern, whose identifier here is the index of the matcher.
+     *
+     * @param parallelism - Number of groups to create, if there are enough wrapped matchers.
+     */
+    private void connectMatchers(int parallelism) {
+      int groupCount = Math.min(parallelism, matchers.size());
+
+      if (groupCount > 1) {
+        groups = new MatcherGroup[groupCount];
+
+        for (int g = 0; g < groupCount; g++) {
+          groups[g] = new MatcherGroup(g * matchers.size() / groupCount, (g + 1) * matchers.size() / groupCount);
+        }
+
+        fanOut = new RecursiveAction() {
+          @Override
+          protected void compute() {
+            ForkJoinTask.invokeAll(groups);
+          }
+        };
+      }
+
+      int history = 0;
+
+      pending = new LongIntQueue[matchers.size()];
+      heads = new LongIntHeap(Math.max(1, matchers.size()));
+
+      for (int i = 0; i < matchers.size(); i++) {
+        StringMatcher matcher = matchers.get(i);
+        LongIntQueue queue = new LongIntQueue(8);
+
+        // A queue is only written by the group its matcher belongs to.
+        pending[i] = queue;
+        matcher.setMatchSink((offset, id) -> queue.push(offset, id));
+
+        history = Math.max(history, matcher.requiredHistory());
+        longestPattern = Math.max(longestPattern, matcher.getPattern(0).length);
+      }
+
+      window = new InputWindow(history);
+    }
+
+    /**
+     * Report the pending matches which start before the watermark, in the order of their offsets.
+     *
+     * Each wrapped matcher only has a single pattern, whose identifier here is the index of the matcher.
+     *
+     * @param watermark - Offset before which no more matches can be found.
+     */
+    private void forwardMatches(long watermark) {
+      heads.clear();
+
+      for (int i = 0; i < pending.length; i++) {
+        if (!pending[i].empty())
+          heads.push(pending[i].getLong(0), i);
+      }
+
+      while (!heads.empty() && heads.peekLong() < watermark) {
+        int i = heads.peekInt();
+        LongIntQueue queue = pending[i];
+
+        heads.remove();
+        addMatch(queue.getLong(0), i);
+        queue.remove();
+
+        if (!queue.empty())
+          heads.push(queue.getLong(0), i);
+      }
+    }
+
+    /**
+     * Report the pending matches which can no longer be preceded by a match found later.
+     *
+     * A wrapped matcher can only find matches which end after the input pushed so far, so
+     * no match starting before the last {@code longestPattern - 1} bytes can be found anymore.
+     */
+    private void forwardMatches() {
+      forwardMatches(window.end() - longestPattern + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Creates a cursor for each of the wrapped matchers.
+     */
+    @Override
+    protected StringMatcher newCursor() {
+      return new AdaptedStringMatcher(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Each wrapped matcher searches the whole segment in turn.
+     */
+    @Override
+    protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+      for (int i = 0; i < matchers.size(); i++) {
+        int patternId = i;
+        matchers.get(i).searchAll(haystack, from, to, (offset, id) -> sink.onMatch(offset, patternId));
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Once a match has been found, the other wrapped matchers only search the part
+     * of the segment where their pattern could start before that match.
+     */
+    @Override
+    protected Match searchFirst(byte[] haystack, int from, int to) {
+      Match first = null;
+
+      for (int i = 0; i < matchers.size(); i++) {
+        StringMatcher matcher = matchers.get(i);
+        int end = to;
+
+        if (first != null)
+          end = (int) Math.max(from, Math.min(to, first.getOffset() - 1 + matcher.getPattern(0).length));
+
+        Match match = matcher.searchFirst(haystack, from, end);
+
+        if (match != null && (first == null || match.getOffset() < first.getOffset()))
+          first = match;
+      }
+
+      return first;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+      super.reset();
+      window.clear();
+
+      for (LongIntQueue queue : pending) {
+        queue.clear();
+      }
+
+      for (int i = 0; i < matchers.size(); i++) {
+        matchers.get(i).reset();
+      }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] getPattern(int patternId) {
+      return matchers.get(patternId).getPattern(0);
     }
 
     @Override
@@ -87,74 +366,107 @@ public class SingleStringMatcherAdapter implements StringMatcherBuilder {
 
     /**
      * {@inheritDoc}
+     *
+     * The reports of the wrapped matchers are included as children if there are
+     * only a few of them. Otherwise only their combined memory usage is reported.
      */
-    public Match pollMatch() {
-      for (int i = 0; i < matchers.size(); i++) {
-        StringMatcher matcher = matchers.get(i);
-        Match match = matcher.pollMatch();
+    @Override
+    public MatcherReport explain() {
+      String algorithm = matchers.size() > 0 ? matchers.get(0).explain().getAlgorithm() : "";
+      MatcherReport report = new MatcherReport(algorithm + " (one matcher per pattern)");
 
-        if (match != null) {
-          return match;
+      report.add("patterns", matchers.size());
+      report.addMemory("matcher list", MatcherReport.listBytes(matchers.capacity()));
+      report.addMemory("shared input window", MatcherReport.arrayBytes(window.capacity(), 1));
+
+      if (groups != null)
+        report.add("parallel groups", groups.length);
+
+      if (matchers.size() <= MAX_EXPLAINED_MATCHERS) {
+        for (StringMatcher matcher : matchers) {
+          report.addChild(matcher.explain());
         }
+      } else {
+        long bytes = 0;
+
+        for (StringMatcher matcher : matchers) {
+          bytes += matcher.explain().getMemoryBytes();
+        }
+
+        report.addMemory("wrapped matchers", bytes);
       }
 
-      return null;
+      return report;
     }
 
-    /**
-     * {@inheritDoc}
-     */
+    /** {@inheritDoc} */
+    @Override
     public boolean pushByte(byte b) {
-      for (int i = 0; i < matchers.size(); i++) {
-        StringMatcher matcher = matchers.get(i);
-
-        while (!matcher.pushByte(b))
-          matcher.process();
-      }
-
+      singleByte[0] = b;
+      pushBytes(singleByte, 0, 1);
       return true;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     *
+     * Each wrapped matcher processes all of the bytes in turn, reading them from the shared window.
+     * If the matchers are split into groups, the groups process large arrays in parallel.
+     * All of the bytes are accepted.
+     */
+    @Override
     public int pushBytes(byte[] source, int offset, int size) {
-      int[] consumed = new int[matchers.size()];
-      boolean[] finished = new boolean[matchers.size()];
-      int most_consumed = 0;
-      int i = 0;
-      int finished_matchers = 0;
-
-      while (finished_matchers < matchers.size()) {
-        i = (i + 1) % matchers.size();
-        StringMatcher matcher = matchers.get(i);
-
-        int matcher_consumed = consumed[i];
-        boolean first_iteration = matcher_consumed == 0;
+      window.beginSegment(source, offset, size);
 
-        if (matcher_consumed >= most_consumed && !first_iteration) {
-          if (!finished[i]) {
-            finished_matchers++;
-            finished[i] = true;
-          }
+      if (groups != null && size >= MIN_PARALLEL_SIZE) {
+        // The tasks are reused for every array, so they are reset before running them again.
+        for (MatcherGroup group : groups) {
+          group.reinitialize();
+        }
 
-          continue;
+        fanOut.reinitialize();
+        ForkJoinPool.commonPool().invoke(fanOut);
+      } else {
+        for (int i = 0; i < matchers.size(); i++) {
+          matchers.get(i).pushSegment(window);
         }
+      }
 
-        int bytes = matcher.pushBytes(source, offset + matcher_consumed, size - matcher_consumed);
-        consumed[i] += bytes;
+      window.endSegment();
+      forwardMatches();
 
-        if (bytes == 0)
-          matcher.process();
+      return size;
+    }
 
-        if (first_iteration && bytes > most_consumed)
-            most_consumed = bytes;
+    /**
+     * {@inheritDoc}
+     *
+     * The wrapped matchers have processed all of the pushed bytes, so this is the longest of their partial matches.
+     */
+    @Override
+    protected int partialMatchLength() {
+      int length = 0;
+
+      for (int i = 0; i < matchers.size(); i++) {
+        length = Math.max(length, matchers.get(i).partialMatchLength());
       }
 
-      return most_consumed;
+      return length;
     }
 
-    /** {@inheritDoc} */
-    public int pushBytes(byte[] source) {
-      return pushBytes(source, 0, source.length);
+    /**
+     * {@inheritDoc}
+     *
+     * The matches of the wrapped matchers are all passed on, so this holds if it holds for each of them.
+     */
+    @Override
+    protected boolean reportsAllMatches() {
+      for (int i = 0; i < matchers.size(); i++) {
+        if (!matchers.get(i).reportsAllMatches())
+          return false;
+      }
+
+      return true;
     }
 
     /** {@inheritDoc} */
@@ -162,6 +474,9 @@ public class SingleStringMatcherAdapter implements StringMatcherBuilder {
       for (int i = 0; i < matchers.size(); i++) {
         matchers.get(i).finish();
       }
+
+      forwardMatches(Long.MAX_VALUE);
+      super.finish();
     }
 
     /** {@inheritDoc} */
@@ -169,6 +484,8 @@ public class SingleStringMatcherAdapter implements StringMatcherBuilder {
       for (int i = 0; i < matchers.size(); i++) {
         matchers.get(i).process();
       }
+
+      forwardMatches();
     }
   }
 
@@ -187,6 +504,21 @@ public class SingleStringMatcherAdapter implements StringMatcherBuilder {
     return this;
   }
 
+  /**
+   * Split the wrapped matchers of the built matchers into groups which process the input in parallel.
+   *
+   * Pays off with long lists of patterns, when the work of a group on each pushed array
+   * outweighs the cost of handing it to another thread.
+   *
+   * @param parallelism - Number of groups. One, the default, runs all of the wrapped matchers on the calling thread.
+   *
+   * @return Reference to the builder for method chaining.
+   */
+  public SingleStringMatcherAdapter setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+    return this;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -5,9 +5,11 @@
 
 package tiralabra.algorithms;
 
-import tiralabra.utils.ArrayList;
+import tiralabra.utils.LongIntQueue;
+import tiralabra.utils.InputWindow;
 import tiralabra.utils.RingBuffer;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -17,12 +19,14 @@ public abstract class StringMatcher {
 
   /**
    * Object containing basic information about a found match.
+   *
+   * Only created by {@link #pollMatch()}. Matches passed to a {@link MatchSink} are not boxed.
    */
-  public class Match {
+  public static class Match {
     /**
      * Location of the beginning of the match specified in bytes from the start of the input stream.
      */
-    private int offset;
+    private long offset;
 
     /**
      * The pattern which was found in the location specified by {@link #offset}.
@@ -35,7 +39,7 @@ public abstract class StringMatcher {
      * @param offset - Start of the matching substring.
      * @param substring - The pattern which was found.
      */
-    public Match(int offset, byte[] substring) {
+    public Match(long offset, byte[] substring) {
       this.offset = offset;
       this.substring = substring;
     }
@@ -45,7 +49,7 @@ public abstract class StringMatcher {
      *
      * @return Offset from the start of the input stream.
      */
-    public int getOffset() {
+    public long getOffset() {
       return offset;
     }
 
@@ -60,9 +64,15 @@ public abstract class StringMatcher {
   }
 
   /**
-   * Array for storing found matches until the user polls for them by using {@link #pollMatch()}.
+   * Queue for storing the offsets and pattern identifiers of found matches until the user
+   * polls for them by using {@link #pollMatch()} or {@link #drainMatches(long[], int[])}.
+   */
+  private LongIntQueue matches = new LongIntQueue(16);
+
+  /**
+   * Receiver of the found matches, or {@code null} if they are queued.
    */
-  private ArrayList<Match> matches = new ArrayList<>();
+  private MatchSink sink = null;
 
   /**
    * Whether end of the input stream has been reached.
@@ -77,34 +87,196 @@ public abstract class StringMatcher {
   public abstract Iterator<byte[]> getPatterns();
 
   /**
-   * Internal input buffer.
+   * Get the pattern identified by a pattern identifier reported with a match.
+   *
+   * The identifiers are the indices of the patterns in the order they were added
+   * to the builder of the matcher.
+   *
+   * @param patternId - Identifier of the pattern.
+   *
+   * @return The pattern.
+   */
+  public abstract byte[] getPattern(int patternId);
+
+  /**
+   * Create a matcher for the same patterns, which shares the data structures built
+   * for the patterns with this matcher but has its own input stream state.
    *
-   * TODO: Investigate the need for this, and if needed how it should be used.
+   * The shared structures are never modified by scanning, so the created matcher
+   * can be used on another thread than this one. Implementations should only
+   * allocate the per-stream state, so that this is cheap compared to building
+   * a new matcher. Used by {@link CompiledPatternSet#newCursor()}.
+   *
+   * @return A new matcher at the start of its input stream.
    */
-  private RingBuffer buffer = new RingBuffer();
+  protected abstract StringMatcher newCursor();
 
   /**
-   * Add a new match to the internal match queue, from which the user can poll matches.
+   * Search a segment of an array for the patterns, reporting every match to a sink.
+   *
+   * Used by {@link CompiledPatternSet#findAll(byte[], int, int, MatchSink)}. The compiled set may
+   * be searched by several threads at once, so implementations must not modify this matcher.
+   * This implementation streams the segment through a new cursor. The algorithms override it
+   * to read the array directly, without buffering.
+   *
+   * @param haystack - Array to search.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   * @param sink - Receiver of the matches. The offsets of the matches are indices in {@code haystack}.
+   */
+  protected void searchAll(byte[] haystack, int from, int to, MatchSink sink) {
+    StringMatcher cursor = newCursor();
+    cursor.setMatchSink((offset, patternId) -> sink.onMatch(from + offset, patternId));
+
+    int consumed = from;
+
+    while (consumed < to) {
+      int accepted = cursor.pushBytes(haystack, consumed, to - consumed);
+      consumed += accepted;
+
+      if (accepted == 0 || consumed < to)
+        cursor.process();
+    }
+
+    cursor.finish();
+  }
+
+  /**
+   * Search a segment of an array for the match which starts first.
+   *
+   * Used by {@link CompiledPatternSet#findFirst(byte[], int, int)}. Like {@link #searchAll},
+   * implementations must not modify this matcher. This implementation searches the whole segment.
+   * The algorithms override it to stop as soon as no match can start before the earliest one found.
+   *
+   * @param haystack - Array to search.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   *
+   * @return The match with the lowest offset, or {@code null} if there are no matches.
+   *         Of matches with the same offset, the one found first is returned.
+   */
+  protected Match searchFirst(byte[] haystack, int from, int to) {
+    long[] first = { -1 };
+    int[] firstId = { 0 };
+
+    searchAll(haystack, from, to, (offset, patternId) -> {
+      if (first[0] == -1 || offset < first[0]) {
+        first[0] = offset;
+        firstId[0] = patternId;
+      }
+    });
+
+    return first[0] == -1 ? null : new Match(first[0], getPattern(firstId[0]));
+  }
+
+  /**
+   * Return the matcher to the start of a new input stream, so that it can be reused
+   * for another input without rebuilding its data structures.
+   *
+   * Unpolled matches and buffered input are discarded. The {@link MatchSink}, if any, is kept.
+   *
+   * Implementations should reset their own per-stream state and call this method.
+   */
+  public void reset() {
+    matches.clear();
+
+    if (buffer != null)
+      buffer.advance(buffer.size());
+
+    hasFinished = false;
+  }
+
+  /**
+   * Describe the data structures this matcher has built for its patterns.
+   *
+   * Implementations should add their own figures to the report returned by this method.
+   *
+   * @return A report of the matcher's structures.
+   */
+  public MatcherReport explain() {
+    MatcherReport report = new MatcherReport(getClass().getSimpleName());
+
+    Iterator<byte[]> it = getPatterns();
+    int count = 0;
+    long patternBytes = 0;
+
+    while (it.hasNext()) {
+      count++;
+      patternBytes += MatcherReport.arrayBytes(it.next().length, 1);
+    }
+
+    report.add("patterns", count);
+    report.addMemory("pattern storage", patternBytes);
+
+    if (buffer != null)
+      report.addMemory("input buffer", MatcherReport.arrayBytes(buffer.capacity(), 1));
+
+    return report;
+  }
+
+  /**
+   * Internal input buffer. Allocated on first use, as the algorithms which scan
+   * the pushed arrays in place never need it.
+   */
+  private RingBuffer buffer = null;
+
+  /**
+   * Report a found match to the {@link MatchSink}, or add it to the internal match queue
+   * from which the user can poll matches if no sink has been set.
    *
    * Used internally by the search algorithm implementations.
    *
    * @param offset - Offset to the beginning of the found match in the input stream.
-   * @param substring - The pattern which was found.
+   * @param patternId - Identifier of the pattern which was found.
    */
-  protected void addMatch(int offset, byte[] substring) {
-    matches.add(new Match(offset, substring));
+  protected void addMatch(long offset, int patternId) {
+    if (sink != null) {
+      sink.onMatch(offset, patternId);
+    } else {
+      matches.push(offset, patternId);
+    }
+  }
+
+  /**
+   * Pass the found matches to a sink as soon as they are found instead of queueing them.
+   *
+   * Matches queued before the sink is set can still be polled.
+   *
+   * @param sink - Receiver of the matches, or {@code null} to queue the matches again.
+   */
+  public void setMatchSink(MatchSink sink) {
+    this.sink = sink;
   }
 
   /**
    * Get a new match from the internal match queue and remove it from the queue.
    *
+   * Allocates a {@link Match} object. Use {@link #setMatchSink(MatchSink)} or
+   * {@link #drainMatches(long[], int[])} for dense matches.
+   *
    * @return A {@link Match} object or {@code null} if no new matches have been found.
    */
   public Match pollMatch() {
-    if (matches.size() == 0)
+    if (matches.empty())
       return null;
 
-    return matches.remove(0);
+    Match match = new Match(matches.getLong(0), getPattern(matches.getInt(0)));
+    matches.remove();
+
+    return match;
+  }
+
+  /**
+   * Move matches from the internal match queue into caller-owned arrays.
+   *
+   * @param offsets - Array receiving the offsets of the matches.
+   * @param patternIds - Array receiving the identifiers of the found patterns.
+   *                     Must be at least as long as {@code offsets}.
+   *
+   * @return Number of matches moved, zero if no new matches have been found.
+   */
+  public int drainMatches(long[] offsets, int[] patternIds) {
+    return matches.drain(offsets, patternIds, 0, offsets.length);
   }
 
   /**
@@ -113,7 +285,7 @@ public abstract class StringMatcher {
    * @param size - Buffer size in bytes.
    */
   protected void setMinimumBufferSize(int size) {
-      if (buffer.capacity() < size) {
+      if (getBuffer().capacity() < size) {
         buffer.setCapacity(size);
       }
   }
@@ -127,7 +299,7 @@ public abstract class StringMatcher {
    * @return {@code true} if the matcher accepts the byte and {@code false} if it cannot accept more input at the moment.
    */
   public boolean pushByte(byte b) {
-    return buffer.pushByte(b);
+    return getBuffer().pushByte(b);
   }
 
   /**
@@ -153,7 +325,120 @@ public abstract class StringMatcher {
    * @return Number of bytes accepted by the matcher.
    */
   public int pushBytes(byte[] bytes, int offset, int size) {
-      return buffer.pushArray(bytes, offset, size);
+      return getBuffer().pushArray(bytes, offset, size);
+  }
+
+  /**
+   * Get the number of bytes preceding each pushed segment which {@link #pushSegment(InputWindow)}
+   * needs to be able to read from the window.
+   *
+   * @return Number of bytes. Zero for algorithms which do not read input they have already processed.
+   */
+  protected int requiredHistory() {
+    return 0;
+  }
+
+  /**
+   * Push the current segment of an input window, which may be shared with other matchers.
+   *
+   * Used by matchers which feed the same input to several wrapped matchers. The window must
+   * hold at least {@link #requiredHistory()} bytes preceding the segment, and all of the segment
+   * is processed before returning.
+   *
+   * This implementation pushes the segment using {@link #pushBytes(byte[], int, int)}, processing the
+   * input whenever it is not accepted at once. Algorithms which keep a carry-over window of their own
+   * override this to read the preceding bytes from the shared window instead.
+   *
+   * @param window - Window whose current segment is the next input of this matcher.
+   */
+  protected void pushSegment(InputWindow window) {
+    byte[] array = window.segmentArray();
+    int offset = window.segmentOffset();
+    int end = offset + window.segmentSize();
+
+    while (offset < end) {
+      offset += pushBytes(array, offset, end - offset);
+
+      if (offset < end)
+        process();
+    }
+  }
+
+  /**
+   * Get the number of the last pushed bytes which may be the beginning of a match that has not been found yet.
+   * All matches starting before them have been found, although they may not have been reported yet.
+   *
+   * Used by {@link ParallelScanner} to stop reading past the end of a chunk as soon as no match starting
+   * in the chunk can be found anymore. This implementation can not tell, so it returns {@link Integer#MAX_VALUE}.
+   * Automata override it to return the depth of their current state.
+   *
+   * @return Number of bytes.
+   */
+  protected int partialMatchLength() {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Tell whether every occurrence of every pattern is reported, including the overlapping ones.
+   *
+   * The set of reported matches then does not depend on the matches reported before them, so scanning
+   * may start anywhere in the input. {@link ParallelScanner} relies on this to search chunks separately.
+   * Matchers which suppress some of the overlapping matches override this to return {@code false}.
+   *
+   * @return Whether all matches are reported.
+   */
+  protected boolean reportsAllMatches() {
+    return true;
+  }
+
+  /**
+   * Size of the chunks in which {@link #pushBuffer(ByteBuffer)} copies buffers without a backing array.
+   */
+  private static final int TRANSFER_CHUNK_SIZE = 4096;
+
+  /**
+   * Array into which {@link #pushBuffer(ByteBuffer)} copies buffers without a backing array. Allocated on first use.
+   */
+  private byte[] transferChunk = null;
+
+  /**
+   * Push the remaining bytes of a buffer to the matcher, advancing the buffer's position by the number of accepted bytes.
+   *
+   * This implementation reads heap buffers in place using {@link #pushBytes(byte[], int, int)}, but copies
+   * direct and read-only buffers into a heap array in chunks. The algorithms override this to read
+   * all buffers in place.
+   *
+   * @param source - Buffer containing the input bytes.
+   * @return Number of bytes accepted by the matcher.
+   */
+  public int pushBuffer(ByteBuffer source) {
+    if (source.hasArray()) {
+      int accepted = pushBytes(source.array(), source.arrayOffset() + source.position(), source.remaining());
+      source.position(source.position() + accepted);
+      return accepted;
+    }
+
+    if (transferChunk == null)
+      transferChunk = new byte[TRANSFER_CHUNK_SIZE];
+
+    int total = 0;
+
+    while (source.hasRemaining()) {
+      int position = source.position();
+      int length = Math.min(transferChunk.length, source.remaining());
+
+      source.get(transferChunk, 0, length);
+
+      int accepted = pushBytes(transferChunk, 0, length);
+      total += accepted;
+
+      if (accepted < length) {
+        source.position(position + accepted);
+        break;
+      }
+    }
+
+    return total;
   }
 
   /**
@@ -171,6 +456,9 @@ public abstract class StringMatcher {
    * @return The internal input buffer.
    */
   protected RingBuffer getBuffer() {
+    if (buffer == null)
+      buffer = new RingBuffer();
+
     return buffer;
   }
 
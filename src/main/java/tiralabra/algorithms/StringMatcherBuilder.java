@@ -31,6 +31,18 @@ public interface StringMatcherBuilder extends SingleStringMatcherBuilder {
    */
   public StringMatcher buildMatcher();
 
+  /**
+   * Builds the data structures for the patterns defined with {@link #addPattern}
+   * once, for scanning any number of input streams.
+   *
+   * Patterns added to the builder afterwards do not affect the returned set.
+   *
+   * @return An immutable pattern set from which matchers can be created cheaply.
+   */
+  default CompiledPatternSet compile() {
+    return new CompiledPatternSet(buildMatcher());
+  }
+
   /**
    * Constructs a string matcher for matching a single pattern.
    *
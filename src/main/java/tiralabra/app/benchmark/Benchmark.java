@@ -25,6 +25,11 @@ public class Benchmark {
 
   private int input_multiplier;
 
+  /**
+   * Number of matches found by the matchers.
+   */
+  private long match_count = 0;
+
   /**
    * Create an {@link Benchmark} instance.
    *
@@ -35,6 +40,11 @@ public class Benchmark {
   public Benchmark(StringMatcher[] matchers, byte[][] streams) {
     this.matchers = matchers;
     this.streams = streams;
+
+    // Count the matches as they are found instead of letting them pile up in the matchers' queues.
+    for (StringMatcher matcher : matchers) {
+      matcher.setMatchSink((offset, patternId) -> match_count++);
+    }
   }
 
   /**
@@ -57,6 +67,28 @@ public class Benchmark {
     }
   }
 
+  /**
+   * Describe the structures of the benchmarked matchers.
+   *
+   * @return The reports of the matchers, one after another.
+   */
+  public String explain() {
+    StringBuilder sb = new StringBuilder();
+
+    for (StringMatcher matcher : matchers) {
+      sb.append(matcher.explain());
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Get the number of matches found by the matchers during {@link #execute()}.
+   */
+  public long getMatchCount() {
+    return match_count;
+  }
+
   public void setInputMultiplier(int input_multiplier) {
     this.input_multiplier = input_multiplier;
   }
@@ -71,6 +71,11 @@ public class BenchmarkRunner {
    */
   private int iteration_multiplier = 1;
 
+  /**
+   * Whether the structures of the matchers are printed before running each benchmark.
+   */
+  private boolean explain = false;
+
   /**
    * A formatter for outputting the benchmark results.
    */
@@ -120,6 +125,8 @@ public class BenchmarkRunner {
       }
     });
 
+    parser.addFlagHandler("e", "explain", (flag, value) -> explain = true);
+
     try {
       parser.parse(args);
     } catch (Exception e) {
@@ -196,6 +203,11 @@ public class BenchmarkRunner {
     long init_time = 0;
     long exec_time = 0;
 
+    if (explain) {
+      System.out.format("Structures of algorithm '%s' for benchmark '%s':\n", algorithm.name, benchmark.getName());
+      System.out.println(benchmark.initialize(algorithm.factory).explain());
+    }
+
     System.out.format("Running benchmark '%s' with algorithm '%s'... ", benchmark.getName(), algorithm.name);
     boolean failure = false;
 
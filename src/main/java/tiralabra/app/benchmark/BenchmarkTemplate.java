@@ -5,6 +5,7 @@
 
 package tiralabra.app.benchmark;
 
+import tiralabra.algorithms.CompiledPatternSet;
 import tiralabra.algorithms.StringMatcher;
 import tiralabra.algorithms.StringMatcherBuilder;
 import tiralabra.algorithms.StringMatcherBuilderFactory;
@@ -113,16 +114,18 @@ public class BenchmarkTemplate {
    * Create a benchmark from this template by initializing an algorithm. 
    */
   public Benchmark initialize(StringMatcherBuilderFactory factory) {
-    StringMatcher[] matchers = new StringMatcher[streams.length];
+    StringMatcherBuilder builder = factory.createBuilder();
 
-    for (int i = 0; i < streams.length; i++) {
-      StringMatcherBuilder builder = factory.createBuilder();
+    for (int j = 0; j < patterns.length; j++) {
+      builder.addPattern(patterns[j]);
+    }
 
-      for (int j = 0; j < patterns.length; j++) {
-        builder.addPattern(patterns[j]);
-      }
+    // Every stream is searched for the same patterns, so they are only compiled once.
+    CompiledPatternSet compiled = builder.compile();
+    StringMatcher[] matchers = new StringMatcher[streams.length];
 
-      matchers[i] = builder.buildMatcher();
+    for (int i = 0; i < streams.length; i++) {
+      matchers[i] = compiled.newCursor();
     }
 
     return new Benchmark(matchers, streams);
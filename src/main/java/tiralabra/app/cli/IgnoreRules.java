@@ -0,0 +1,297 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.app.cli;
+
+import tiralabra.utils.ArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Rules excluding files and directories from a recursive search, read from the {@code .gitignore}
+ * and {@code .ignore} files of the searched directories.
+ *
+ * The rules of a directory apply to everything below it. The rules of a deeper directory take
+ * precedence over the rules of its parents, and within a directory the last matching rule wins.
+ * The rules follow the glob syntax of {@code .gitignore}:
+ *
+ * <ul>
+ *   <li>{@code *} matches anything but a {@code /}, {@code ?} matches any single character but a {@code /}
+ *       and {@code [...]} matches a character of a class, negated with a leading {@code !} or {@code ^}.</li>
+ *   <li>{@code **} matches anything including {@code /}, and {@code **}{@code /} also matches no directories at all.</li>
+ *   <li>A rule containing a {@code /} other than at its end is matched against the path relative to the
+ *       directory of the ignore file. Other rules are matched against the name of the entry on any level.</li>
+ *   <li>A rule ending with a {@code /} only matches directories.</li>
+ *   <li>A rule starting with a {@code !} includes the entries excluded by the earlier rules again.</li>
+ * </ul>
+ *
+ * The entries of an excluded directory are never visited, so they can not be included again.
+ */
+class IgnoreRules {
+  /**
+   * Names of the files the rules are read from, in the order of increasing precedence.
+   */
+  static final String[] IGNORE_FILES = { ".gitignore", ".ignore" };
+
+  /**
+   * A single line of an ignore file.
+   */
+  private static class Rule {
+    /**
+     * The glob, without the leading {@code !} or {@code /} and the trailing {@code /}.
+     */
+    String glob;
+
+    /**
+     * Whether the rule includes the matching entries again.
+     */
+    boolean negated;
+
+    /**
+     * Whether the rule only matches directories.
+     */
+    boolean directoryOnly;
+
+    /**
+     * Whether the rule is matched against the relative path instead of the name of the entry.
+     */
+    boolean anchored;
+  }
+
+  /**
+   * Rules of the enclosing directories, or {@code null} for the root of the search.
+   */
+  private IgnoreRules parent;
+
+  /**
+   * Directory the rules are relative to.
+   */
+  private Path base;
+
+  /**
+   * The rules of the directory in the order they were read.
+   */
+  private ArrayList<Rule> rules = new ArrayList<>();
+
+  private IgnoreRules(IgnoreRules parent, Path base) {
+    this.parent = parent;
+    this.base = base;
+  }
+
+  /**
+   * Rules for the root of a search, which exclude nothing but the {@code .git} directories.
+   */
+  static IgnoreRules root() {
+    IgnoreRules root = new IgnoreRules(null, null);
+    root.addRule(".git/");
+    return root;
+  }
+
+  /**
+   * Get the rules applying inside a directory, reading the ignore files of the directory.
+   *
+   * @param directory - The directory.
+   *
+   * @return New rules, or these rules if the directory has no ignore files.
+   */
+  IgnoreRules enter(Path directory) {
+    IgnoreRules entered = null;
+
+    for (String name : IGNORE_FILES) {
+      Path file = directory.resolve(name);
+
+      if (!Files.isRegularFile(file))
+        continue;
+
+      if (entered == null)
+        entered = new IgnoreRules(this, directory);
+
+      try {
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+          entered.addRule(line);
+        }
+      } catch (IOException ioe) {
+        System.err.println("Could not read ignore file: " + file);
+      }
+    }
+
+    return entered == null ? this : entered;
+  }
+
+  /**
+   * Parse a line of an ignore file and add it to the rules.
+   *
+   * @param line - The line.
+   */
+  void addRule(String line) {
+    int end = line.length();
+
+    // Trailing spaces are ignored unless escaped.
+    while (end > 0 && line.charAt(end - 1) == ' ' && !(end > 1 && line.charAt(end - 2) == '\\'))
+      end--;
+
+    if (end == 0 || line.charAt(0) == '#')
+      return;
+
+    Rule rule = new Rule();
+    int start = 0;
+
+    if (line.charAt(0) == '!') {
+      rule.negated = true;
+      start++;
+    } else if (line.charAt(0) == '\\' && end > 1 && (line.charAt(1) == '!' || line.charAt(1) == '#')) {
+      start++;
+    }
+
+    if (end > start && line.charAt(end - 1) == '/') {
+      rule.directoryOnly = true;
+      end--;
+    }
+
+    String glob = line.substring(start, end);
+
+    if (glob.indexOf('/') != -1) {
+      rule.anchored = true;
+
+      if (glob.startsWith("/"))
+        glob = glob.substring(1);
+    }
+
+    if (glob.isEmpty())
+      return;
+
+    rule.glob = glob;
+    rules.add(rule);
+  }
+
+  /**
+   * Check whether an entry of a directory is excluded from the search.
+   *
+   * @param entry - Path of the entry, beginning with the path of the directory these rules were entered from.
+   * @param directory - Whether the entry is a directory.
+   *
+   * @return Whether the entry is excluded.
+   */
+  boolean ignores(Path entry, boolean directory) {
+    String name = entry.getFileName().toString();
+
+    for (IgnoreRules level = this; level != null; level = level.parent) {
+      String relative = null;
+
+      for (int i = level.rules.size() - 1; i >= 0; i--) {
+        Rule rule = level.rules.get(i);
+
+        if (rule.directoryOnly && !directory)
+          continue;
+
+        if (rule.anchored && relative == null) {
+          // The root rules have no directory of their own, and are only matched against the names.
+          if (level.base == null)
+            continue;
+
+          relative = level.base.relativize(entry).toString().replace(File.separatorChar, '/');
+        }
+
+        if (matches(rule.glob, 0, rule.anchored ? relative : name, 0))
+          return !rule.negated;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Match a glob against a path.
+   *
+   * @param glob - The glob.
+   * @param g - Index of the next character of the glob.
+   * @param path - The path, with {@code /} as the separator.
+   * @param p - Index of the next character of the path.
+   *
+   * @return Whether the rest of the glob matches the rest of the path.
+   */
+  static boolean matches(String glob, int g, String path, int p) {
+    while (g < glob.length()) {
+      char c = glob.charAt(g);
+
+      if (c == '*' && g + 1 < glob.length() && glob.charAt(g + 1) == '*') {
+        int next = g + 2;
+
+        // A "**/" may also match no directories at all.
+        if (next < glob.length() && glob.charAt(next) == '/' && matches(glob, next + 1, path, p))
+          return true;
+
+        for (int i = p; i <= path.length(); i++) {
+          if (matches(glob, next, path, i))
+            return true;
+        }
+
+        return false;
+      }
+
+      if (c == '*') {
+        for (int i = p; i <= path.length(); i++) {
+          if (matches(glob, g + 1, path, i))
+            return true;
+
+          if (i < path.length() && path.charAt(i) == '/')
+            return false;
+        }
+
+        return false;
+      }
+
+      if (p == path.length())
+        return false;
+
+      char pc = path.charAt(p);
+
+      if (c == '?') {
+        if (pc == '/')
+          return false;
+
+        g++;
+      } else if (c == '[' && glob.indexOf(']', g + 2) != -1) {
+        int close = glob.indexOf(']', g + 2);
+        int i = g + 1;
+        boolean negated = glob.charAt(i) == '!' || glob.charAt(i) == '^';
+        boolean found = false;
+
+        if (negated)
+          i++;
+
+        for (; i < close; i++) {
+          if (i + 2 < close && glob.charAt(i + 1) == '-') {
+            found |= glob.charAt(i) <= pc && pc <= glob.charAt(i + 2);
+            i += 2;
+          } else {
+            found |= glob.charAt(i) == pc;
+          }
+        }
+
+        if (found == negated || pc == '/')
+          return false;
+
+        g = close + 1;
+      } else {
+        if (c == '\\' && g + 1 < glob.length())
+          c = glob.charAt(++g);
+
+        if (c != pc)
+          return false;
+
+        g++;
+      }
+
+      p++;
+    }
+
+    return p == path.length();
+  }
+}
@@ -10,14 +10,32 @@ import java.io.InputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 import tiralabra.algorithms.AhoCorasick.AhoCorasick;
 import tiralabra.algorithms.BoyerMoore.BoyerMoore;
 import tiralabra.algorithms.KnuthMorrisPratt.KnuthMorrisPratt;
 import tiralabra.algorithms.NaiveSearch.NaiveSearch;
+import tiralabra.algorithms.Planner.Planner;
+import tiralabra.algorithms.Planner.PlannerBuilder;
 import tiralabra.algorithms.RabinKarp.BitShiftHash;
 import tiralabra.algorithms.RabinKarp.RabinKarp;
 import tiralabra.algorithms.StringMatcherBuilderFactory;
@@ -26,348 +44,1336 @@ import tiralabra.utils.ArrayList;
 
 import tiralabra.algorithms.StringMatcherBuilder;
 import tiralabra.algorithms.SingleStringMatcherAdapter;
+import tiralabra.algorithms.CompiledPatternSet;
 import tiralabra.algorithms.StringMatcher;
-import tiralabra.algorithms.StringMatcher.Match;
+import tiralabra.algorithms.MatchSink;
+import tiralabra.algorithms.ParallelScanner;
 import tiralabra.algorithms.RabinKarp.RabinKarpBuilder;
 import tiralabra.algorithms.KnuthMorrisPratt.KnuthMorrisPrattBuilder;
-import tiralabra.utils.Queue;
+import tiralabra.utils.LongIntHeap;
+import tiralabra.utils.LongIntQueue;
+import tiralabra.utils.NewlineIndex;
 import tiralabra.utils.RingBuffer;
+import tiralabra.utils.SpscRingBuffer;
 
 /**
- * Information about a match and it's location in an input stream.
+ * Task which contains multiple string matcher instances and runs them against a single input stream.
+ *
+ * A file is only opened when the task is run, and closed when the search ends.
+ *
+ * The input is read in blocks, each of which is pushed to the matchers as a whole. The bytes of the lines
+ * which may still contain matches are kept in a buffer, so that the lines of the matches can be printed.
+ *
+ * Inputs longer than a couple of blocks can be read ahead of the search on a thread of their own,
+ * which reads the next block while the previous one is searched.
+ *
+ * Files can instead be mapped into memory, in which case the blocks are taken from the mapping
+ * without read system calls, and the lines of the matches are read from the mapping when they are printed.
+ *
+ * A file searched for a single set of patterns can also be split into chunks which are searched on several
+ * threads by a {@link ParallelScanner}. The matches are then received in order, and the lines containing
+ * them are located using a {@link NewlineIndex} of the file, which is built in parallel before the search.
  */
-class MatchContext {
+class InputSource implements Runnable {
   /**
-   * Contents of the line which contains the match (or the matches start position).
+   * Size of the blocks in which the input is read, unless set with {@link #setBlockSize(int)}.
    */
-  byte[] line;
+  static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
 
   /**
-   * Number of the line on which the match is.
+   * Size of the smallest file which is mapped into memory in {@link MmapMode#AUTO} mode.
+   * Mapping smaller files costs more than reading them.
    */
-  int lineNumber;
+  static final long MMAP_THRESHOLD = 16 * 1024 * 1024;
 
   /**
-   * Number of characters from the start of the line to the start of the match.
+   * Size of the largest region of a file mapped at once. A {@link ByteBuffer} can not be larger than 2 GiB.
    */
-  int column;
+  static final int MMAP_REGION_SIZE = 1 << 30;
 
   /**
-   * Name of the input source.
+   * Suffix added to the name of a file to get the name of the file its newline index is saved in.
    */
-  String source;
+  static final String LINE_INDEX_SUFFIX = ".lineidx";
 
   /**
-   * Name of search algorithm which was used to find this match.
+   * Number of blocks the reader thread may read ahead of the search, counting the block being searched.
    */
-  String algorithm;
+  static final int READ_AHEAD_BLOCKS = 2;
 
   /**
-   * The actual match object.
+   * Whether files are mapped into memory instead of reading them.
    */
-  Match match;
+  enum MmapMode {
+    /**
+     * Map files at least {@link #MMAP_THRESHOLD} bytes in size.
+     */
+    AUTO,
+
+    /**
+     * Map all files.
+     */
+    ALWAYS,
+
+    /**
+     * Read all files.
+     */
+    NEVER,
+  }
+
+  /**
+   * The input source against which the string matchers are executed.
+   */
+  private InputStream stream;
+
+  /**
+   * The file opened as the {@link #stream} when the search starts, or {@code null} if the stream was given.
+   */
+  private File file = null;
+
+  /**
+   * Name of this input source.
+   */
+  private String name;
+
+  /**
+   * List of {@link StringMatcher StringMatchers} which are executed against this input stream.
+   */
+  private ArrayList<StringMatcher> matchers = new ArrayList<>();
+
+  /**
+   * Callback which is called whenever we have found a match and have collected enough context for it.
+   */
+  private Consumer<MatchContext> matchCallback;
+
+  /**
+   * Size of the blocks in which the input is read.
+   */
+  private int block_size = DEFAULT_BLOCK_SIZE;
+
+  /**
+   * Whether the input is mapped into memory if it is a file.
+   */
+  private MmapMode mmap_mode = MmapMode.AUTO;
+
+  /**
+   * Patterns searched with a {@link ParallelScanner} if the input is a file, or {@code null}.
+   */
+  private CompiledPatternSet parallel_patterns = null;
+
+  /**
+   * Number of chunks of the file searched at once by the {@link ParallelScanner}.
+   */
+  private int threads = 1;
+
+  /**
+   * Buffer for holding onto input bytes after they have been fed to the string matchers.
+   * Starts at the beginning of a line and grows to fit the lines which are still needed.
+   * Not used if the input is mapped into memory.
+   */
+  private RingBuffer buffer = new RingBuffer(1024);
+
+  /**
+   * The file, if the input is mapped into memory.
+   */
+  private FileChannel channel = null;
+
+  /**
+   * The currently mapped region of the file, or {@code null} if the input is not mapped into memory.
+   */
+  private ByteBuffer region = null;
+
+  /**
+   * Offset of the start of {@link #region} in the file.
+   */
+  private long region_offset = 0;
+
+  /**
+   * Current position in the input stream, counting bytes from the beginning.
+   */
+  private long input_offset;
+
+  /**
+   * Offset of start of the {@link #buffer} from the beginning of the input stream.
+   */
+  private long buffer_start_offset;
+
+  /**
+   * Length of the longest searched pattern.
+   */
+  private int longest_pattern_length = 0;
+
+  /**
+   * Number of the first line in the buffer. (1-based)
+   */
+  private long line_counter = 1;
+
+  /**
+   * Offsets of the starts of the lines following the newlines in the buffer, in increasing order.
+   */
+  private long[] line_starts = new long[64];
+
+  /**
+   * Number of offsets in {@link #line_starts}.
+   */
+  private int line_start_count = 0;
+
+  /**
+   * Offset following the newline which ends the line of the previous match, or the size of the file if the line
+   * is not ended by a newline. Only used when searching with a {@link ParallelScanner}.
+   */
+  private long line_end = -1;
+
+  /**
+   * Contents of the line of the previous match, shared by the matches on the same line.
+   * Only used when searching with a {@link ParallelScanner}.
+   */
+  private byte[] line_bytes = null;
+
+  /**
+   * Number of newlines preceding each block of the file, used for finding the lines of the matches
+   * when searching with a {@link ParallelScanner}.
+   */
+  private NewlineIndex newline_index = null;
+
+  /**
+   * Whether the {@link #newline_index} is saved next to the file and reused by later searches.
+   */
+  private boolean save_line_index = false;
+
+  /**
+   * Executor running the reader threads of the inputs read ahead of the search, or {@code null} if they are not.
+   */
+  private Executor read_ahead = null;
+
+  /**
+   * A block read ahead of the search.
+   */
+  private static class ReadBlock {
+    byte[] data;
+
+    /**
+     * Number of bytes read into the block, or -1 at the end of the input.
+     */
+    int length;
+
+    ReadBlock(int size) {
+      this.data = new byte[size];
+    }
+  }
+
+  /**
+   * Block of the file in which the newlines are looked for when searching with a {@link ParallelScanner}.
+   */
+  private ByteBuffer line_block = null;
+
+  /**
+   * Offset of the start of {@link #line_block} in the file.
+   */
+  private long line_block_offset = 0;
+
+  /**
+   * Receives the matches of a single matcher and keeps them until their lines are complete.
+   */
+  private class MatcherSink implements MatchSink {
+    /**
+     * The matcher whose matches this sink receives.
+     */
+    private StringMatcher matcher;
+
+    /**
+     * Offsets and pattern identifiers of the matches we do not yet have enough context for.
+     */
+    private LongIntQueue pending = new LongIntQueue(8);
+
+    MatcherSink(StringMatcher matcher) {
+      this.matcher = matcher;
+    }
+
+    @Override
+    public void onMatch(long offset, int patternId) {
+      pending.push(offset, patternId);
+    }
+
+    /**
+     * Move the pending matches which start before an offset to the matches ready to be published,
+     * keeping the rest in order.
+     *
+     * @param end - Offset before which the lines are complete.
+     */
+    void collectReady(long end) {
+      int count = pending.size();
+
+      for (int i = 0; i < count; i++) {
+        long offset = pending.getLong(0);
+        int patternId = pending.getInt(0);
+        pending.remove();
+
+        if (offset < end) {
+          addReadyMatch(offset, matcher.getPattern(patternId));
+        } else {
+          pending.push(offset, patternId);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sinks of the matchers in {@link #matchers}, in the same order.
+   */
+  private ArrayList<MatcherSink> sinks = new ArrayList<>();
+
+  /**
+   * Matches whose lines are complete, ordered by their offsets and then by the order they were collected in.
+   * Holds the offset of a match and its index in {@link #ready_patterns}.
+   */
+  private LongIntHeap ready = new LongIntHeap(64);
+
+  /**
+   * Patterns of the matches in {@link #ready}.
+   */
+  private ArrayList<byte[]> ready_patterns = new ArrayList<>();
+
+  /**
+   * Create a new input source task.
+   *
+   * @param stream - The input stream.
+   * @param name - Human readable name of this input source.
+   * @param matchCallback - Callback called whenever a match is found.
+   */
+  InputSource(InputStream stream, String name, Consumer<MatchContext> matchCallback) {
+    this.stream = stream;
+    this.name = name;
+    this.matchCallback = matchCallback;
+  }
+
+  /**
+   * Create a new input source task for a file, which is opened when the task is run.
+   *
+   * @param file - The file.
+   * @param matchCallback - Callback called whenever a match is found.
+   */
+  InputSource(File file, Consumer<MatchContext> matchCallback) {
+    this(null, file.getPath(), matchCallback);
+    this.file = file;
+  }
+
+  /**
+   * Set the size of the blocks in which the input is read.
+   *
+   * @param block_size - Block size in bytes.
+   */
+  public void setBlockSize(int block_size) {
+    this.block_size = block_size;
+  }
+
+  /**
+   * Set whether the input is mapped into memory if it is a file.
+   *
+   * @param mmap_mode - The mode.
+   */
+  public void setMmapMode(MmapMode mmap_mode) {
+    this.mmap_mode = mmap_mode;
+  }
+
+  /**
+   * Search the input on several threads if it is a file. The matchers added with
+   * {@link #addMatcher(StringMatcher)} are only used if it is not.
+   *
+   * @param patterns - The patterns to search for. Must be the only patterns searched.
+   * @param threads - Number of chunks of the file searched at once.
+   */
+  public void setParallelSearch(CompiledPatternSet patterns, int threads) {
+    this.parallel_patterns = patterns;
+    this.threads = threads;
+  }
+
+  /**
+   * Set whether the newline index built when searching on several threads is saved next to the file
+   * and reused by later searches of the same file.
+   *
+   * @param save_line_index - Whether the index is saved.
+   */
+  public void setSaveLineIndex(boolean save_line_index) {
+    this.save_line_index = save_line_index;
+  }
+
+  /**
+   * Read the input ahead of the search on a thread of its own, if it is read rather than mapped and
+   * is longer than a couple of blocks.
+   *
+   * @param read_ahead - Executor running the reader thread.
+   */
+  public void setReadAhead(Executor read_ahead) {
+    this.read_ahead = read_ahead;
+  }
+
+  /**
+   * Add a matcher instance to the list of matchers executed against this input source.
+   */
+  public void addMatcher(StringMatcher matcher) {
+    MatcherSink sink = new MatcherSink(matcher);
+    matcher.setMatchSink(sink);
+
+    matchers.add(matcher);
+    sinks.add(sink);
+
+    Iterator<byte[]> it = matcher.getPatterns();
+
+    while (it.hasNext()) {
+      byte[] pattern = it.next();
+
+      if (pattern.length > longest_pattern_length) {
+        longest_pattern_length = pattern.length;
+      }
+    }
+  }
+
+  /**
+   * Record the start of a line.
+   *
+   * @param offset - Offset of the first byte of the line.
+   */
+  private void addLineStart(long offset) {
+    if (line_start_count == line_starts.length) {
+      long[] grown = new long[2 * line_starts.length];
+      System.arraycopy(line_starts, 0, grown, 0, line_start_count);
+      line_starts = grown;
+    }
+
+    line_starts[line_start_count++] = offset;
+  }
+
+  /**
+   * Add a match to the matches ready to be published.
+   *
+   * @param offset - Offset of the start of the match.
+   * @param pattern - The pattern which was found.
+   */
+  private void addReadyMatch(long offset, byte[] pattern) {
+    ready.push(offset, ready_patterns.size());
+    ready_patterns.add(pattern);
+  }
+
+  /**
+   * Publish the matches of all matchers whose lines are complete, in the order of their offsets.
+   *
+   * @param end - Offset before which the lines are complete.
+   */
+  private void publishMatches(long end) {
+    for (MatcherSink sink : sinks) {
+      sink.collectReady(end);
+    }
+
+    while (!ready.empty()) {
+      publishMatch(ready.peekLong(), ready_patterns.get(ready.peekInt()));
+      ready.remove();
+    }
+
+    ready_patterns.clear();
+  }
+
+  /**
+   * Called for each block read from the input stream.
+   *
+   * @param block - Array containing the block.
+   * @param length - Length of the block.
+   */
+  private void handleInputBlock(byte[] block, int length) {
+    // The lines of a mapped file are read from the mapping instead.
+    if (region == null) {
+      if (buffer.capacity() - buffer.size() < length) {
+        buffer.setCapacity(Math.max(2 * buffer.capacity(), buffer.size() + length));
+      }
+
+      buffer.pushArray(block, 0, length);
+    }
+
+    for (int i = NewlineIndex.indexOf(block, 0, length); i != -1; i = NewlineIndex.indexOf(block, i + 1, length)) {
+      addLineStart(input_offset + i + 1);
+    }
+
+    input_offset += length;
+
+    // Push the block to the string matchers, which report the matches to the sinks.
+
+    for (StringMatcher matcher : matchers) {
+      int pushed = 0;
+
+      while (pushed < length) {
+        pushed += matcher.pushBytes(block, pushed, length - pushed);
+
+        if (pushed < length)
+          matcher.process();
+      }
+
+      matcher.process();
+    }
+
+    finishBlock();
+  }
+
+  /**
+   * Publish the matches whose lines are complete after a block has been pushed
+   * to the matchers, and forget the lines which are no longer needed.
+   */
+  private void finishBlock() {
+    if (line_start_count == 0)
+      return;
+
+    // The lines before the last newline are complete, so the matches starting on them can be published.
+
+    long last_line_start = line_starts[line_start_count - 1];
+    publishMatches(last_line_start);
+
+    // Drop the lines which can no longer contain matches: the pending matches are all on the last line,
+    // and the matches found later start at most `longest_pattern_length - 1` bytes before the end of the input.
+
+    long keep_from = Math.min(last_line_start, input_offset - longest_pattern_length + 1);
+    int dropped_lines = 0;
+
+    while (dropped_lines < line_start_count && line_starts[dropped_lines] <= keep_from) {
+      dropped_lines++;
+    }
+
+    if (dropped_lines > 0) {
+      long new_start_offset = line_starts[dropped_lines - 1];
+
+      // The buffered lines are never longer than the buffer.
+      if (region == null)
+        buffer.advance((int) (new_start_offset - buffer_start_offset));
+
+      buffer_start_offset = new_start_offset;
+      line_counter += dropped_lines;
+
+      line_start_count -= dropped_lines;
+      System.arraycopy(line_starts, dropped_lines, line_starts, 0, line_start_count);
+    }
+  }
+
+  /**
+   * Call the {@link #matchCallback} for a match.
+   *
+   * @param offset - Offset of the start of the match.
+   * @param pattern - The pattern which was found.
+   */
+  private void publishMatch(long offset, byte[] pattern) {
+    MatchContext ctx = new MatchContext(offset, pattern);
+
+    ctx.source = this.name;
+
+    calculateLineDetails(ctx);
+    matchCallback.accept(ctx);
+  }
+
+  /**
+   * Calculate the start and end offsets of the line containing a match's start offset,
+   * and populate the {@link MatchContext#line}, {@link MatchContext#lineNumber}
+   * and {@link MatchContext#column} fields.
+   *
+   * The line must be complete and in the buffer.
+   *
+   * @param ctx - Context object of the match, which should be populated with the context information.
+   */
+  private void calculateLineDetails(MatchContext ctx) {
+    long match_offset = ctx.offset;
+
+    // Binary search for the first line starting after the match.
+    int low = 0;
+    int high = line_start_count;
+
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+
+      if (line_starts[middle] > match_offset) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+
+    long prev_newline_offset = low == 0 ? buffer_start_offset : line_starts[low - 1];
+    long next_newline_offset = line_starts[low];
+
+    // The line is held in the buffer, so its length fits in an int.
+    byte[] line = new byte[(int) (next_newline_offset - prev_newline_offset - 1)];
+    readInput(prev_newline_offset, line);
+
+    ctx.lineNumber = line_counter + low;
+    ctx.line = line;
+    ctx.column = (int) (match_offset - prev_newline_offset);
+  }
+
+  /**
+   * Read bytes of the input which have already been pushed to the matchers.
+   *
+   * The bytes are read from the buffer or the mapped region. Lines which begin before the
+   * mapped region are read from the file.
+   *
+   * @param offset - Offset of the first byte in the input.
+   * @param target - Array to fill with the bytes.
+   */
+  private void readInput(long offset, byte[] target) {
+    if (region == null) {
+      int start = (int) (offset - buffer_start_offset);
+
+      for (int i = 0; i < target.length; i++) {
+        target[i] = buffer.get(start + i);
+      }
+    } else if (offset >= region_offset && offset + target.length <= region_offset + region.capacity()) {
+      int start = (int) (offset - region_offset);
+
+      for (int i = 0; i < target.length; i++) {
+        target[i] = region.get(start + i);
+      }
+    } else {
+      readFile(offset, target);
+    }
+  }
+
+  /**
+   * Read bytes of the file with positional reads.
+   *
+   * @param offset - Offset of the first byte in the file.
+   * @param target - Array to fill with the bytes.
+   */
+  private void readFile(long offset, byte[] target) {
+    ByteBuffer destination = ByteBuffer.wrap(target);
+
+    try {
+      while (destination.hasRemaining() && channel.read(destination, offset + destination.position()) != -1);
+    } catch (IOException ioe) {
+      // The line is printed as far as it could be read.
+    }
+  }
+
+  /**
+   * Read the block of the file starting at an offset into {@link #line_block}.
+   *
+   * @param offset - Offset of the first byte of the block.
+   *
+   * @return Length of the block, zero at the end of the file.
+   */
+  private int loadLineBlock(long offset) {
+    line_block.clear();
+    line_block_offset = offset;
+
+    try {
+      while (line_block.hasRemaining() && channel.read(line_block, offset + line_block.position()) != -1);
+    } catch (IOException ioe) {
+      // The lines end where the file could be read up to.
+    }
+
+    line_block.flip();
+
+    return line_block.limit();
+  }
+
+  /**
+   * Find the first newline at or after an offset of the file, reading the file in blocks.
+   *
+   * @param offset - Offset in the file to start looking from.
+   *
+   * @return Offset of the newline, or the offset of the end of the file if there is none.
+   */
+  private long findNewline(long offset) {
+    while (true) {
+      if (offset < line_block_offset || offset >= line_block_offset + line_block.limit()) {
+        if (loadLineBlock(offset) == 0)
+          return offset;
+      }
+
+      int end = line_block.limit();
+      int newline = NewlineIndex.indexOf(line_block.array(), (int) (offset - line_block_offset), end);
+
+      if (newline != -1)
+        return line_block_offset + newline;
+
+      offset = line_block_offset + end;
+    }
+  }
+
+  /**
+   * Find the last newline before an offset of the file, reading the file in blocks backwards.
+   *
+   * @param offset - Offset in the file to look back from.
+   *
+   * @return Offset of the newline, or -1 if there is none.
+   */
+  private long findNewlineBefore(long offset) {
+    while (offset > 0) {
+      if (offset <= line_block_offset || offset > line_block_offset + line_block.limit()) {
+        if (loadLineBlock(Math.max(0, offset - line_block.capacity())) == 0)
+          return -1;
+      }
+
+      int newline = NewlineIndex.lastIndexOf(line_block.array(), 0, (int) (offset - line_block_offset));
+
+      if (newline != -1)
+        return line_block_offset + newline;
+
+      offset = line_block_offset;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Move to the line containing an offset of the file, which must not precede the line of the previous match.
+   *
+   * The newlines between the line of the previous match and the offset are counted, unless the offset is
+   * in a later block of the {@link #newline_index}. Then the count of the block is taken from the index
+   * and only the newlines between the start of the block and the offset are counted.
+   *
+   * @param offset - Offset in the file.
+   */
+  private void locateLine(long offset) {
+    if (offset <= line_end)
+      return;
+
+    // The line following the line of the previous match.
+    long position = line_end + 1;
+    long line_number = line_end == -1 ? 1 : line_counter + 1;
+    long line_start = position;
+
+    if (offset - position > newline_index.blockSize()) {
+      int block = (int) (offset / newline_index.blockSize());
+
+      position = (long) block * newline_index.blockSize();
+      line_number = newline_index.newlinesBefore(block) + 1;
+
+      // The line may start before the block.
+      line_start = -1;
+    }
+
+    while (position < offset) {
+      if (position < line_block_offset || position >= line_block_offset + line_block.limit()) {
+        if (loadLineBlock(position) == 0)
+          break;
+      }
+
+      byte[] block = line_block.array();
+      int from = (int) (position - line_block_offset);
+      int to = (int) Math.min(line_block.limit(), offset - line_block_offset);
+      int newlines = NewlineIndex.count(block, from, to);
+
+      if (newlines > 0) {
+        line_number += newlines;
+        line_start = line_block_offset + NewlineIndex.lastIndexOf(block, from, to) + 1;
+      }
+
+      position = line_block_offset + to;
+    }
+
+    if (line_start == -1)
+      line_start = findNewlineBefore(offset) + 1;
+
+    buffer_start_offset = line_start;
+    line_counter = line_number;
+    line_end = findNewline(offset);
+    line_bytes = null;
+  }
+
+  /**
+   * Called for each match found by the {@link ParallelScanner}, in the order of their offsets.
+   * Moves forward to the line containing the match and publishes it.
+   *
+   * @param offset - Offset of the start of the match.
+   * @param patternId - Identifier of the pattern which was found.
+   */
+  private void handleParallelMatch(long offset, int patternId) {
+    locateLine(offset);
+
+    if (line_bytes == null) {
+      line_bytes = new byte[(int) (line_end - buffer_start_offset)];
+      readFile(buffer_start_offset, line_bytes);
+    }
+
+    MatchContext ctx = new MatchContext(offset, parallel_patterns.getPattern(patternId));
+    ctx.source = this.name;
+
+    ctx.lineNumber = line_counter;
+    ctx.line = line_bytes;
+    ctx.column = (int) (offset - buffer_start_offset);
+
+    matchCallback.accept(ctx);
+  }
+
+  /**
+   * Get the newline index of the file, loading it from {@link #LINE_INDEX_SUFFIX sidecar file} if it has been saved
+   * and is up to date, and building it otherwise.
+   *
+   * @return The index.
+   *
+   * @throws IOException if reading the file fails.
+   */
+  private NewlineIndex newlineIndex() throws IOException {
+    File file = new File(name);
+    File sidecar = new File(name + LINE_INDEX_SUFFIX);
+    long size = channel.size();
+    long modified = file.lastModified();
+
+    if (save_line_index && sidecar.isFile()) {
+      try {
+        NewlineIndex index = NewlineIndex.load(sidecar, size, modified);
+
+        if (index != null)
+          return index;
+      } catch (IOException ioe) {
+        // A damaged index is replaced.
+      }
+    }
+
+    NewlineIndex index = NewlineIndex.build(channel, NewlineIndex.DEFAULT_BLOCK_SIZE, threads);
+
+    if (save_line_index) {
+      try {
+        index.save(sidecar, modified);
+      } catch (IOException ioe) {
+        // The index is only a cache, so the search goes on without saving it.
+      }
+    }
+
+    return index;
+  }
+
+  /**
+   * Search the file with a {@link ParallelScanner}.
+   *
+   * @return {@code false} if the input is not a file which can be searched in chunks.
+   */
+  private boolean runParallel() {
+    if (!(stream instanceof FileInputStream))
+      return false;
+
+    channel = ((FileInputStream) stream).getChannel();
+
+    try {
+      // Pipes and other special files report a size of zero and are read instead.
+      if (channel.size() == 0)
+        return false;
+
+      line_block = ByteBuffer.allocate(block_size);
+      line_block.limit(0);
+
+      newline_index = newlineIndex();
+
+      ParallelScanner scanner = new ParallelScanner(parallel_patterns, threads);
+      input_offset = scanner.search(channel, this::handleParallelMatch);
+    } catch (IOException ioe) {
+      // The matches found before the error have already been printed.
+    }
+
+    return true;
+  }
+
+  /**
+   * Decide whether the input is mapped into memory.
+   *
+   * @return The file, or {@code null} if the input should be read.
+   */
+  private FileChannel mappableChannel() {
+    if (mmap_mode == MmapMode.NEVER || !(stream instanceof FileInputStream))
+      return null;
+
+    FileChannel file = ((FileInputStream) stream).getChannel();
+
+    try {
+      // Pipes and other special files report a size of zero and can not be mapped.
+      long size = file.size();
+
+      if (size == 0 || (mmap_mode == MmapMode.AUTO && size < MMAP_THRESHOLD))
+        return null;
+    } catch (IOException ioe) {
+      return null;
+    }
+
+    return file;
+  }
+
+  /**
+   * Map the file into memory region by region and pass the blocks of each region to the
+   * {@link #handleInputBlock(byte[], int)} method.
+   *
+   * Each block is copied from the mapping into an array with a single bulk copy before it is searched,
+   * as the algorithms and the newline scan read arrays several times faster than they read
+   * a mapped buffer byte by byte.
+   *
+   * @return {@code false} if the file could not be mapped before anything was searched.
+   */
+  private boolean runMapped() {
+    byte[] block = new byte[block_size];
+
+    try {
+      long size = channel.size();
 
+      for (long offset = 0; offset < size; offset += MMAP_REGION_SIZE) {
+        region = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MMAP_REGION_SIZE, size - offset));
+        region_offset = offset;
+
+        ByteBuffer blocks = region.duplicate();
+
+        while (blocks.hasRemaining()) {
+          int length = Math.min(block.length, blocks.remaining());
+
+          blocks.get(block, 0, length);
+          handleInputBlock(block, length);
+        }
+      }
+    } catch (IOException ioe) {
+      // Fall back to reading the file if mapping it fails right away.
+      if (region == null)
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Read the input stream in blocks and pass them to the {@link #handleInputBlock(byte[], int)} method.
+   */
+  private void runStream() {
+    byte[] block = new byte[block_size];
+
+    while (true) {
+      int length;
+
+      try {
+        length = stream.read(block, 0, block.length);
+      } catch (IOException ioe) {
+        break;
+      }
+
+      if (length == -1) {
+        break;
+      }
+
+      handleInputBlock(block, length);
+    }
+  }
 
   /**
-   * Create a match context object from a match object.
+   * Read the input stream on a reader thread and pass the blocks to the {@link #handleInputBlock(byte[], int)}
+   * method on this thread.
    *
-   * You need to populate the other fields manually.
+   * The blocks go around between the two threads through a pair of {@link SpscRingBuffer} queues: the reader
+   * takes an empty block, reads into it and hands it over, and this thread searches the block and hands it
+   * back. The next block is thus read while the previous one is searched.
+   */
+  private void runReadAhead() {
+    SpscRingBuffer<ReadBlock> filled = new SpscRingBuffer<>(READ_AHEAD_BLOCKS);
+    SpscRingBuffer<ReadBlock> empty = new SpscRingBuffer<>(READ_AHEAD_BLOCKS);
+
+    for (int i = 0; i < READ_AHEAD_BLOCKS; i++) {
+      empty.offer(new ReadBlock(block_size));
+    }
+
+    read_ahead.execute(() -> {
+      while (true) {
+        ReadBlock block = empty.take();
+
+        try {
+          block.length = stream.read(block.data, 0, block.data.length);
+        } catch (IOException ioe) {
+          block.length = -1;
+        }
+
+        filled.put(block);
+
+        if (block.length == -1)
+          return;
+      }
+    });
+
+    while (true) {
+      ReadBlock block = filled.take();
+
+      if (block.length == -1)
+        break;
+
+      handleInputBlock(block.data, block.length);
+      empty.put(block);
+    }
+  }
+
+  /**
+   * Decide whether the input is read ahead of the search.
+   */
+  private boolean readsAhead() {
+    return read_ahead != null && (file == null || file.length() > 2L * block_size);
+  }
+
+  /**
+   * This method is the entry point of this task. It opens the file, if the input is one, and closes it
+   * once the input has been searched.
+   */
+  @Override
+  public void run() {
+    if (file != null) {
+      try {
+        stream = new FileInputStream(file);
+      } catch (FileNotFoundException fnfe) {
+        System.err.println("Could not open input: " + name);
+        return;
+      }
+    }
+
+    try {
+      search();
+    } finally {
+      if (file != null) {
+        try {
+          stream.close();
+        } catch (IOException ioe) {
+          // The input has already been searched.
+        }
+      }
+    }
+  }
+
+  /**
+   * Search the input either on several threads, by mapping it into memory or by reading it in blocks.
    *
-   * @param match - Match object received from a {@link StringMatcher}.
+   * When the end of the input stream is reached, this method makes sure that all matches still pending for
+   * context are "published".
    */
-  MatchContext(Match match) {
-    this.match = match;
+  private void search() {
+    if (parallel_patterns != null && threads > 1 && runParallel())
+      return;
+
+    channel = mappableChannel();
+
+    if (channel == null || !runMapped()) {
+      region = null;
+
+      if (readsAhead()) {
+        runReadAhead();
+      } else {
+        runStream();
+      }
+    }
+
+    // The end of the input ends the last line, as if it was followed by a newline.
+    if (line_start_count == 0 || line_starts[line_start_count - 1] != input_offset) {
+      addLineStart(input_offset + 1);
+    }
+
+    for (StringMatcher matcher : matchers) {
+      matcher.finish();
+    }
+
+    publishMatches(Long.MAX_VALUE);
   }
 }
 
 /**
- * Thread which contains multiple string matcher instances and runs them against a single input stream.
+ * A {@code grep}-like command-line utility for searching through files.
  */
-class InputSource extends Thread {
+public class Main {
   /**
-   * The input source against which the string matchers are executed.
+   * Size of the largest file batched with other small files into a single task.
    */
-  private InputStream stream;
+  static final long SMALL_FILE_SIZE = 64 * 1024;
+
+  /**
+   * Total size of the files of a batch, after which the next small file starts a new batch.
+   */
+  static final long BATCH_SIZE = 1024 * 1024;
+
+  /**
+   * Largest number of files in a batch.
+   */
+  static final int MAX_BATCH_FILES = 64;
+
+  /**
+   * Size of the smallest file which is split into chunks searched by all of the jobs.
+   */
+  static final long LARGE_FILE_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Map from algorithm names to factories, which produce builders for the algorithms.
+   */
+  private HashMap<String, StringMatcherBuilderFactory> matcherBuilderFactories = new HashMap<>();
+
+  /**
+   * Builder factory for the currently selected search algorithm.
+   */
+  private StringMatcherBuilderFactory selectedFactory = Planner::getBuilder;
+
+  /**
+   * Builder for the currently selected search algorithm.
+   */
+  private StringMatcherBuilder matcherBuilder = null;
+
+  /**
+   * List of all configured builders.
+   *
+   * Contains a builder for each search pattern after all arguments have been parsed.
+   */
+  private ArrayList<StringMatcherBuilder> matcherBuilders = new ArrayList<>();
+
+  /**
+   * Names of the input files, or {@code -} for the standard input.
+   */
+  private ArrayList<String> inputs = new ArrayList<>();
+
+  /**
+   * Whether the algorithm choices of the planner should be printed before searching.
+   */
+  private boolean explain = false;
+
+  /**
+   * Size of the blocks in which the inputs are read.
+   */
+  private int blockSize = InputSource.DEFAULT_BLOCK_SIZE;
+
+  /**
+   * Whether the input files are mapped into memory.
+   */
+  private InputSource.MmapMode mmapMode = InputSource.MmapMode.AUTO;
+
+  /**
+   * Number of threads searching each input file.
+   */
+  private int threads = 1;
+
+  /**
+   * Whether the newline indexes of the input files are saved and reused.
+   */
+  private boolean saveLineIndex = false;
 
   /**
-   * Name of this input source.
+   * Number of inputs searched at once, which is also the number of input files open at once.
    */
-  private String name;
+  private int jobs = Runtime.getRuntime().availableProcessors();
 
   /**
-   * List of {@link StringMatcher StringMatchers} which are executed against this input stream.
+   * Whether the matches are printed in the order of the inputs instead of as they are found.
    */
-  private ArrayList<StringMatcher> matchers = new ArrayList<>();
+  private boolean ordered = false;
 
   /**
-   * Callback which is called whenever we have found a match and have collected enough context for it.
+   * Reorder buffer of the output if {@link #ordered} is set.
    */
-  private Consumer<MatchContext> matchCallback;
+  private OrderedOutput orderedOutput = null;
 
   /**
-   * Buffer for holding onto input bytes after they have been fed to the string matchers.
+   * Whether the time taken by each task is printed to the standard error.
    */
-  private RingBuffer buffer = new RingBuffer(1024);
+  private boolean timings = false;
 
   /**
-   * Current position in the input stream, counting bytes from the beginning.
+   * The compiled matchers, shared by all of the inputs.
    */
-  private int input_offset;
+  private CompiledPatternSet[] compiled;
 
   /**
-   * Offset of start of the {@link #buffer} from the beginning of the input stream.
+   * Whether the inputs are read ahead of the search and the matches are printed on a thread of their own.
    */
-  private int buffer_start_offset;
+  private boolean pipeline = true;
 
   /**
-   * Length of the longest searched pattern.
+   * Executor running the reader threads of the inputs if {@link #pipeline} is set.
    */
-  private int longest_pattern_length = 0;
+  private ExecutorService readers = null;
 
   /**
-   * Number of the current line. (1-based)
+   * Stage printing the matches if {@link #pipeline} is set.
    */
-  private int line_counter = 1;
+  private OutputStage outputStage = null;
 
   /**
-   * List of offsets of newlines in the buffer.
+   * Whether directories given as inputs are searched recursively.
    */
-  private Queue<Integer> newline_offsets = new Queue<>(8);
+  private boolean recursive = false;
 
   /**
-   * List of matches we have received from the matchers, but do not yet have enough context for.
+   * Pool of the worker threads searching the inputs and walking the directories.
    */
-  private ArrayList<Match> pending_matches = new ArrayList<>(8);
+  private ForkJoinPool workers;
 
   /**
-   * Create a new input source thread.
-   *
-   * @param stream - The input stream.
-   * @param name - Human readable name of this input source.
-   * @param matchCallback - Callback called whenever a match is found.
+   * Number of tasks scheduled so far.
    */
-  InputSource(InputStream stream, String name, Consumer<MatchContext> matchCallback) {
-    this.stream = stream;
-    this.name = name;
-    this.matchCallback = matchCallback;
-  }
+  private int taskCount = 0;
 
   /**
-   * Add a matcher instance to the list of matchers executed against this input source.
+   * Number of inputs scheduled so far, which is the index of the next input.
    */
-  public void addMatcher(StringMatcher matcher) {
-    matchers.add(matcher);
-
-    Iterator<byte[]> it = matcher.getPatterns();
-
-    while (it.hasNext()) {
-      byte[] pattern = it.next();
-
-      if (pattern.length > longest_pattern_length) {
-        longest_pattern_length = pattern.length;
-      }
-    }
-  }
+  private int inputCount = 0;
 
   /**
-   * Called for each byte received from the input stream.
-   *
-   * @param b - Byte received from the input stream.
+   * Task of the scheduler, searching consecutive inputs one after another on a worker thread.
    */
-  private void handleInputByte(byte b) {
-    input_offset++;
-    buffer.pushByte(b);
-
-    // Push the byte to the string matchers and handle any found matches.
-
-    for (StringMatcher matcher : matchers) {
-      while (!matcher.pushByte(b)) {
-        matcher.process();
-      }
-
-      if (b == (byte) '\n')
-        matcher.process();
-
-      handleMatches(matcher);
+  private class SearchTask implements Runnable {
+    /**
+     * Number of the task, in the order the tasks were scheduled.
+     */
+    private int number;
+
+    /**
+     * Index of the first input of the task.
+     */
+    private int first;
+
+    /**
+     * Names of the inputs.
+     */
+    private String[] names;
+
+    /**
+     * Total size of the inputs, or -1 if it is not known.
+     */
+    private long size;
+
+    /**
+     * Number of chunks of a file searched at once.
+     */
+    private int fileThreads;
+
+    SearchTask(int number, int first, String[] names, long size, int fileThreads) {
+      this.number = number;
+      this.first = first;
+      this.names = names;
+      this.size = size;
+      this.fileThreads = fileThreads;
     }
 
-    // If the byte is a line feed character, we know that by this point we must
-    // have all necessary information in the buffer for any pending matches.
+    @Override
+    public void run() {
+      long started = System.nanoTime();
 
-    if (b == (byte) '\n') {
-      newline_offsets.push(input_offset);
-
-      for (Match match : pending_matches) {
-        MatchContext ctx = new MatchContext(match);
-        ctx.source = this.name;
-        calculateLineDetails(match, ctx);
-        matchCallback.accept(ctx);
+      for (int i = 0; i < names.length; i++) {
+        searchInput(first + i, names[i], fileThreads);
       }
 
-      pending_matches.clear();
-    }
-
-    // Move the beginning of the buffer forward, single line at a time, until
-    // we reach a line which may have yet-to-be-found matches.
-
-    while (true) {
-      Integer next_newline_offset = newline_offsets.peek();
-
-      if (next_newline_offset == null)
-        break;
-
-      int advance_len = next_newline_offset - buffer_start_offset;
+      if (timings) {
+        String kind = names.length > 1 ? "batch" : fileThreads > 1 ? "chunked" : "single";
 
-      if (buffer.size() - advance_len > longest_pattern_length) {
-        newline_offsets.remove();
-        buffer.advance(advance_len);
-        buffer_start_offset += advance_len;
-        line_counter++;
-      } else {
-        break;
+        System.err.format(
+          "Task %d (%s): %d input(s) from '%s', %d bytes, %.3f ms\n",
+          number, kind, names.length, names[0], size, (System.nanoTime() - started) / 1e6
+        );
       }
     }
   }
 
   /**
-   * Check if a matcher has found any new matches.
-   *
-   * Check if we have received the full line for the match, and if so, call the {@link #matchCallback}.
-   * If not, put the match to the {@link #pending_matches} list.
-   *
-   * @param matcher - String matcher to check for new matches.
+   * Groups consecutive small files into batches, scheduling each batch as a single task once it is full.
+   * Each thread producing inputs has a batch of its own.
    */
-  private void handleMatches(StringMatcher matcher) {
-    Match match;
-
-    while ((match = matcher.pollMatch()) != null) {
-      MatchContext ctx = new MatchContext(match);
-
-      ctx.source = this.name;
-
-      if (!calculateLineDetails(match, ctx)) {
-        pending_matches.add(match);
-      } else {
-        matchCallback.accept(ctx);
+  private class Batch {
+    /**
+     * Names of the files in the batch.
+     */
+    private ArrayList<String> names = new ArrayList<>();
+
+    /**
+     * Total size of the files in the batch.
+     */
+    private long size = 0;
+
+    /**
+     * Schedule an input. Small files are added to the batch and the other inputs are scheduled
+     * in tasks of their own, after the files added before them.
+     *
+     * @param name - Name of the input.
+     * @param inputSize - Size of the input, or -1 if it is not known.
+     */
+    void add(String name, long inputSize) {
+      // Inputs are only started a bounded distance ahead of the first unfinished one.
+      if (orderedOutput != null) {
+        try {
+          orderedOutput.begin();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
       }
-    }
-  }
-
-  /**
-   * Determine if we have the full line containing a matches start offset in our buffer.
-   * If not, return {@code false}. If we do have it, calculate the start and end offsets
-   * of that line, and populate the {@link MatchContext#line}, {@link MatchContext#lineNumber}
-   * and {@link MatchContext#column} fields.
-   *
-   * @param match - Match object received from the string matcher.
-   * @param ctx - Context object which should be populated with the context information.
-   *
-   * @return {@code true} if line detauls could be calculated, {@code false} if more information is needed.
-   */
-  private boolean calculateLineDetails(Match match, MatchContext ctx) {
-    int match_offset = match.getOffset();
-    int line_number = line_counter;
 
-    int prev_newline_offset = buffer_start_offset;
-    int next_newline_offset = -1;
+      boolean small = inputSize >= 0 && inputSize <= SMALL_FILE_SIZE;
 
-    for (int newline_offset : newline_offsets) {
-      if (newline_offset > match_offset) {
-        next_newline_offset = newline_offset;
-        break;
+      if (!small || names.size() == MAX_BATCH_FILES || size + inputSize > BATCH_SIZE) {
+        flush();
       }
 
-      line_number++;
-      prev_newline_offset = newline_offset;
-    }
-
-    if (next_newline_offset == -1) {
-      return false;
-    }
+      if (small) {
+        names.add(name);
+        size += inputSize;
+        return;
+      }
 
-    byte[] line = new byte[next_newline_offset - prev_newline_offset - 1];
+      int fileThreads = inputSize >= LARGE_FILE_SIZE ? Math.max(threads, jobs) : threads;
 
-    for (int i = prev_newline_offset; i < next_newline_offset - 1; i++) {
-      line[i - prev_newline_offset] = buffer.get(i - buffer_start_offset);
+      schedule(new String[] { name }, inputSize, fileThreads);
     }
 
-    ctx.lineNumber = line_number;
-    ctx.line = line;
-    ctx.column = match_offset - prev_newline_offset;
-
-    return true;
-  }
-
-  /**
-   * This method is the entry point of this thread. It continuously reads bytes from the input stream
-   * and passes them to the {@link #handleInputByte(byte)} method.
-   *
-   * When the end of the input stream is reached, this method makes sure that all matches still pending for
-   * context are "published".
-   */
-  @Override
-  public void run() {
-    while (true) {
-      int inputByte;
+    /**
+     * Schedule the files in the batch.
+     */
+    void flush() {
+      if (names.size() == 0)
+        return;
 
-      try {
-        inputByte = stream.read();
-      } catch (IOException ioe) {
-        break;
-      }
+      String[] batch = new String[names.size()];
 
-      if (inputByte == -1) {
-        break;
+      for (int i = 0; i < batch.length; i++) {
+        batch[i] = names.get(i);
       }
 
-      handleInputByte((byte) inputByte);
-    }
-
-    newline_offsets.push(input_offset);
-
-    for (StringMatcher matcher : matchers) {
-      matcher.finish();
-      handleMatches(matcher);
+      schedule(batch, size, threads);
+      names.clear();
+      size = 0;
     }
   }
-}
 
-/**
- * A {@code grep}-like command-line utility for searching through files.
- */
-public class Main {
   /**
-   * Map from algorithm names to factories, which produce builders for the algorithms.
+   * Walks a directory of a recursive search, handing its files to the worker pool as they are found and
+   * forking a task of its own for each of its subdirectories, so that the traversal proceeds in parallel
+   * with the search.
    */
-  private HashMap<String, StringMatcherBuilderFactory> matcherBuilderFactories = new HashMap<>();
+  private class DirectoryTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The directory.
+     */
+    private Path directory;
+
+    /**
+     * Ignore rules of the enclosing directories.
+     */
+    private IgnoreRules rules;
+
+    DirectoryTask(Path directory, IgnoreRules rules) {
+      this.directory = directory;
+      this.rules = rules;
+    }
 
-  /**
-   * Builder factory for the currently selected search algorithm.
-   */
-  private StringMatcherBuilderFactory selectedFactory = RabinKarp::getBuilder;
+    @Override
+    protected void compute() {
+      Batch batch = new Batch();
+      ArrayList<Path> subdirectories = new ArrayList<>();
+      IgnoreRules entered = readDirectory(directory, rules, batch, subdirectories);
+      batch.flush();
 
-  /**
-   * Builder for the currently selected search algorithm.
-   */
-  private StringMatcherBuilder matcherBuilder = null;
+      DirectoryTask[] tasks = new DirectoryTask[subdirectories.size()];
 
-  /**
-   * List of all configured builders.
-   *
-   * Contains a builder for each search pattern after all arguments have been parsed.
-   */
-  private ArrayList<StringMatcherBuilder> matcherBuilders = new ArrayList<>();
+      for (int i = 0; i < tasks.length; i++) {
+        tasks[i] = new DirectoryTask(subdirectories.get(i), entered);
+      }
 
-  /**
-   * List of input sources.
-   */
-  private ArrayList<InputSource> inputs = new ArrayList<>();
+      invokeAll(tasks);
+    }
+  }
 
   Main () {
+    matcherBuilderFactories.insert("auto", Planner::getBuilder);
+    matcherBuilderFactories.insert("adaptive", () -> Planner.getBuilder().setAdaptive(true));
     matcherBuilderFactories.insert("rabin-karp", RabinKarp::getBuilder);
     matcherBuilderFactories.insert("rabin-karp-bs", () -> RabinKarp.getBuilder().setHashFunction(BitShiftHash::new));
     matcherBuilderFactories.insert("knuth-morris-pratt", KnuthMorrisPratt::getBuilder);
-    matcherBuilderFactories.insert("boyer-moore", () -> BoyerMoore.getBuilder().adapt());
+    matcherBuilderFactories.insert("boyer-moore", BoyerMoore::getBuilder);
     matcherBuilderFactories.insert("aho-corasick", AhoCorasick::getBuilder);
     matcherBuilderFactories.insert("naive", NaiveSearch::getBuilder);
   }
@@ -390,6 +1396,19 @@ public class Main {
     parser.addFlagHandler("boyer-moore", this::handleAlgorithmFlag);
     parser.addFlagHandler("aho-corasick", this::handleAlgorithmFlag);
     parser.addFlagHandler("naive", this::handleAlgorithmFlag);
+    parser.addFlagHandler("auto", this::handleAlgorithmFlag);
+    parser.addFlagHandler("adaptive", this::handleAlgorithmFlag);
+    parser.addFlagHandler("explain", (flag, value) -> explain = true);
+    parser.addFlagHandlerValue("block-size", (flag, value) -> setBlockSize(value));
+    parser.addFlagHandler("mmap", (flag, value) -> mmapMode = InputSource.MmapMode.ALWAYS);
+    parser.addFlagHandler("no-mmap", (flag, value) -> mmapMode = InputSource.MmapMode.NEVER);
+    parser.addFlagHandlerValue("threads", (flag, value) -> setThreads(value));
+    parser.addFlagHandler("line-index", (flag, value) -> saveLineIndex = true);
+    parser.addFlagHandlerValue("jobs", (flag, value) -> jobs = parsePositive(value, "number of jobs"));
+    parser.addFlagHandler("ordered", (flag, value) -> ordered = true);
+    parser.addFlagHandler("timings", (flag, value) -> timings = true);
+    parser.addFlagHandler("r", "recursive", (flag, value) -> recursive = true);
+    parser.addFlagHandler("no-pipeline", (flag, value) -> pipeline = false);
 
     parser.addPositionalArgumentHandler(this::handlePositionalArgument);
 
@@ -421,6 +1440,78 @@ public class Main {
     }
   }
 
+  /**
+   * Handler for the {@code --block-size} flag.
+   *
+   * The size is given in bytes, optionally followed by the suffix {@code K} or {@code M}
+   * for kibibytes and mebibytes.
+   *
+   * @param value - Value of the flag.
+   */
+  private void setBlockSize(String value) {
+    String digits = value;
+    int unit = 1;
+
+    if (value.endsWith("K") || value.endsWith("k")) {
+      unit = 1024;
+    } else if (value.endsWith("M") || value.endsWith("m")) {
+      unit = 1024 * 1024;
+    }
+
+    if (unit != 1) {
+      digits = value.substring(0, value.length() - 1);
+    }
+
+    long size;
+
+    try {
+      size = Long.parseLong(digits) * unit;
+    } catch (NumberFormatException nfe) {
+      size = -1;
+    }
+
+    if (size <= 0 || size > Integer.MAX_VALUE) {
+      System.err.println("Invalid block size: " + value);
+      System.exit(1);
+    }
+
+    blockSize = (int) size;
+  }
+
+  /**
+   * Handler for the {@code --threads} flag.
+   *
+   * @param value - Value of the flag.
+   */
+  private void setThreads(String value) {
+    threads = parsePositive(value, "number of threads");
+  }
+
+  /**
+   * Parse the value of a flag taking a positive integer, exiting if it is not one.
+   *
+   * @param value - Value of the flag.
+   * @param description - Description of the value for the error message.
+   *
+   * @return The integer.
+   */
+  private int parsePositive(String value, String description) {
+    int number;
+
+    try {
+      number = Integer.parseInt(value);
+    } catch (NumberFormatException nfe) {
+      number = -1;
+    }
+
+    if (number <= 0) {
+      System.err.println("Invalid " + description + ": " + value);
+      System.exit(1);
+    }
+
+    return number;
+  }
+
   /**
    * Handler which is called for each positional command-line argument.
    *
@@ -447,7 +1538,11 @@ public class Main {
   private void printUsage() {
     System.err.println("Usage: java -jar tiralabra.jar [--rabin-karp] [--rabin-karp-bs]");
     System.err.println("                               [--knuth-morris-pratt] [--boyer-moore]");
-    System.err.println("                               [--aho-corasick] [--naive]");
+    System.err.println("                               [--aho-corasick] [--naive] [--auto] [--adaptive]");
+    System.err.println("                               [--explain] [--block-size=<BYTES>]");
+    System.err.println("                               [--mmap | --no-mmap] [--threads=<N>] [--line-index]");
+    System.err.println("                               [--jobs=<N>] [--ordered] [--timings] [-r]");
+    System.err.println("                               [--no-pipeline]");
     System.err.println("                               [--pattern=<PATTERN>...] [--input=<FILE>...]");
     System.err.println("                               [<PATTERN>] [<FILE>...]");
     System.err.println();
@@ -458,6 +1553,29 @@ public class Main {
     System.err.println("         --boyer-moore | Use the Boyer-Moore algorithm for the subsequent patterns");
     System.err.println("          --rabin-karp | Use the Rabin-Karp algorithm for the subsequent patterns");
     System.err.println("               --naive | Use the naive baseline algorithm for the subsequent patterns");
+    System.err.println("                --auto | Choose the algorithm for the subsequent patterns automatically (default)");
+    System.err.println("            --adaptive | Like --auto, but switch the algorithm during the search if the");
+    System.err.println("                       | input turns out to suit another algorithm better");
+    System.err.println("             --explain | Print the automatically chosen algorithms, their estimated costs");
+    System.err.println("                       | and the sizes of the data structures built for the patterns");
+    System.err.println("  --block-size=<BYTES> | Size of the blocks in which the inputs are read, for example");
+    System.err.println("                       | 256K or 1M (default 64K)");
+    System.err.println("                --mmap | Map input files into memory instead of reading them");
+    System.err.println("                       | (default for files of 16 MiB or more)");
+    System.err.println("             --no-mmap | Always read input files");
+    System.err.println("         --threads=<N> | Search each input file in chunks on N threads, if all of the");
+    System.err.println("                       | patterns are searched by a single matcher (default 1)");
+    System.err.println("          --line-index | With --threads, save the newline index of each file as");
+    System.err.println("                       | <FILE>.lineidx and reuse it while the file is unchanged");
+    System.err.println("            --jobs=<N> | Number of inputs searched and open at once");
+    System.err.println("                       | (default: number of processors)");
+    System.err.println("             --ordered | Print the matches in the order of the inputs instead of");
+    System.err.println("                       | as they are found");
+    System.err.println("             --timings | Print the time taken by each search task");
+    System.err.println("       -r, --recursive | Search the files in the directories given as inputs, skipping");
+    System.err.println("                       | the entries excluded by .gitignore and .ignore files");
+    System.err.println("         --no-pipeline | Read, search and print on the same thread instead of reading");
+    System.err.println("                       | ahead and printing the matches on a thread of their own");
     System.err.println(" -i, --input=<PATTERN> | Substring to be searched from the input streams");
     System.err.println("  -p, --pattern=<FILE> | Path to a file or - for standard input.");
   }
@@ -479,22 +1597,17 @@ public class Main {
    * Adds an input source to the list of input sources.
    *
    * Input source {@code -} is a special case and means the standard input.
-   * All other values are interpreted as file paths.
+   * All other values are interpreted as file paths. The files are only opened when they are searched.
    *
    * @param input The string {@code -} or a file path.
    */
   private void addInput(String input) {
-    if (input.equals("-")) {
-      inputs.add(new InputSource(System.in, "stdin", this::handleMatch));
-    } else {
-      try {
-        FileInputStream stream = new FileInputStream(new File(input));
-        inputs.add(new InputSource(stream, input, this::handleMatch));
-      } catch (FileNotFoundException fnfe) {
-        System.err.println("File not found: " + input);
-        System.exit(1);
-      }
+    if (!input.equals("-") && !new File(input).exists()) {
+      System.err.println("File not found: " + input);
+      System.exit(1);
     }
+
+    inputs.add(input);
   }
 
   /**
@@ -503,60 +1616,289 @@ public class Main {
   private void finishMatcher() {
     if (matcherBuilder != null) {
       matcherBuilders.add(matcherBuilder);
+      matcherBuilder = null;
     }
   }
 
   /**
-   * Initializes the matchers for each of the input sources.
-   * Launches an thread for each input source and waits for them to finish.
+   * Compiles the matchers and searches the inputs on a work-stealing pool of {@link #jobs} worker threads,
+   * waiting for all of them to finish.
+   *
+   * The sizes of the inputs are looked up before scheduling them. Consecutive small files are batched into
+   * a single task, so that the cost of a task is not paid for each of them. Large files are split into chunks,
+   * which the task of the file forks into the pool for the idle workers to steal, so that a single large
+   * file does not keep one worker busy after the others have run out of work.
+   *
+   * With {@code -r}, the directories given as inputs are walked by tasks on the same pool, which schedule
+   * the files as they find them. With {@code --ordered}, the directories are walked on this thread instead,
+   * in the order of the paths.
+   *
+   * If {@code --explain} was given, the structures of the matchers are printed to the standard error.
    */
   private void runMatchers() {
+    // The patterns are compiled once and shared by the inputs, each of which only gets its own cursor.
+    compiled = new CompiledPatternSet[matcherBuilders.size()];
+
+    for (int j = 0; j < compiled.length; j++) {
+      compiled[j] = matcherBuilders.get(j).compile();
+
+      if (explain) {
+        System.err.format("Matcher %d structures:\n%s\n", j + 1, compiled[j].explain());
+      }
+    }
+
+    workers = new ForkJoinPool(jobs);
+
+    if (ordered) {
+      // The window must fit a whole batch.
+      orderedOutput = new OrderedOutput(System.out, Math.max(4 * jobs, 2 * MAX_BATCH_FILES));
+    }
+
+    Thread output = null;
+
+    if (pipeline) {
+      readers = Executors.newCachedThreadPool(runnable -> {
+        Thread reader = new Thread(runnable, "reader");
+        reader.setDaemon(true);
+        return reader;
+      });
+
+      IntConsumer finishInput = orderedOutput != null ? orderedOutput::finish : index -> {};
+
+      outputStage = new OutputStage(this::handleMatch, finishInput);
+      output = new Thread(outputStage, "output");
+      output.start();
+    }
+
+    Batch batch = new Batch();
+
     for (int i = 0; i < inputs.size(); i++) {
-      InputSource input = inputs.get(i);
+      String name = inputs.get(i);
 
-      for (int j = 0; j < matcherBuilders.size(); j++) {
-        StringMatcher matcher = matcherBuilders.get(j).buildMatcher();
-        input.addMatcher(matcher);
+      if (name.equals("-")) {
+        batch.add(name, -1);
+        continue;
       }
 
-      input.start();
+      File file = new File(name);
+
+      if (!file.isDirectory()) {
+        batch.add(name, file.length());
+      } else if (!recursive) {
+        System.err.println("Skipping directory (search it with -r): " + name);
+      } else if (ordered) {
+        // The entries are visited in order on this thread, so that the order of the inputs is known.
+        walkDirectory(file.toPath(), IgnoreRules.root(), batch);
+      } else {
+        batch.flush();
+        workers.invoke(new DirectoryTask(file.toPath(), IgnoreRules.root()));
+      }
     }
 
+    batch.flush();
+    workers.shutdown();
+
     try {
-      for (InputSource input : inputs) {
-        input.join();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+      if (output != null) {
+        outputStage.close();
+        output.join();
+        readers.shutdown();
       }
     } catch (InterruptedException ie) {
-      return;
+      workers.shutdownNow();
     }
   }
 
   /**
-   * Lock preventing multiple {@link InputSource} threads from printing their matches at the same time.
+   * Schedule a task searching consecutive inputs on the worker pool.
+   *
+   * @param names - Names of the inputs.
+   * @param size - Total size of the inputs, or -1 if it is not known.
+   * @param fileThreads - Number of chunks of a file searched at once.
    */
-  private ReentrantLock handleMatchMutex = new ReentrantLock();
+  private void schedule(String[] names, long size, int fileThreads) {
+    int number;
+    int first;
+
+    synchronized (this) {
+      number = ++taskCount;
+      first = inputCount;
+      inputCount += names.length;
+    }
+
+    workers.execute(new SearchTask(number, first, names, size, fileThreads));
+  }
+
+  /**
+   * Read the entries of a directory of a recursive search. The files are added to a batch and the
+   * subdirectories are collected for the caller to descend into. Entries excluded by the ignore rules
+   * are skipped, so that excluded directories are never read. Symbolic links are not followed.
+   *
+   * @param directory - The directory.
+   * @param rules - Ignore rules of the enclosing directories.
+   * @param batch - Batch the files are added to.
+   * @param subdirectories - List the subdirectories are added to.
+   *
+   * @return Ignore rules applying inside the directory.
+   */
+  private IgnoreRules readDirectory(Path directory, IgnoreRules rules, Batch batch, ArrayList<Path> subdirectories) {
+    IgnoreRules entered = rules.enter(directory);
+    ArrayList<Path> entries = new ArrayList<>();
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path entry : stream) {
+        entries.add(entry);
+      }
+    } catch (IOException | DirectoryIteratorException e) {
+      System.err.println("Could not read directory: " + directory);
+    }
+
+    Object[] sorted = entries.toArray();
+
+    if (ordered) {
+      Arrays.sort(sorted);
+    }
+
+    for (Object object : sorted) {
+      Path entry = (Path) object;
+      BasicFileAttributes attributes;
+
+      try {
+        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      } catch (IOException ioe) {
+        continue;
+      }
+
+      if (!attributes.isDirectory() && !attributes.isRegularFile())
+        continue;
+
+      if (entered.ignores(entry, attributes.isDirectory()))
+        continue;
+
+      if (attributes.isDirectory()) {
+        subdirectories.add(entry);
+      } else {
+        batch.add(entry.toString(), attributes.size());
+      }
+    }
+
+    return entered;
+  }
+
+  /**
+   * Walk a directory of a recursive search on the calling thread, adding the files to a batch in
+   * the order of their paths, the files of each directory before its subdirectories.
+   *
+   * @param directory - The directory.
+   * @param rules - Ignore rules of the enclosing directories.
+   * @param batch - Batch the files are added to.
+   */
+  private void walkDirectory(Path directory, IgnoreRules rules, Batch batch) {
+    ArrayList<Path> subdirectories = new ArrayList<>();
+    IgnoreRules entered = readDirectory(directory, rules, batch, subdirectories);
+
+    for (Path subdirectory : subdirectories) {
+      walkDirectory(subdirectory, entered, batch);
+    }
+  }
 
   /**
-   * Callback executed by the {@link InputSource} threads whenever they find a match.
+   * Search an input on the current worker thread. The input source and the cursors of the matchers
+   * are only created here, so that the inputs waiting in the queue take no memory.
    *
-   * @param ctx
+   * @param index - Index of the input, in the order the inputs were scheduled.
+   * @param name - Name of the input.
+   * @param fileThreads - Number of chunks of the input searched at once if it is a file.
    */
-  private void handleMatch(MatchContext ctx) {
+  private void searchInput(int index, String name, int fileThreads) {
+    Consumer<MatchContext> callback = outputStage != null
+      ? ctx -> outputStage.submit(index, ctx)
+      : ctx -> handleMatch(index, ctx);
+
+    InputSource input = name.equals("-")
+      ? new InputSource(System.in, "stdin", callback)
+      : new InputSource(new File(name), callback);
+
+    input.setBlockSize(blockSize);
+    input.setMmapMode(mmapMode);
+    input.setSaveLineIndex(saveLineIndex);
+
+    if (readers != null) {
+      input.setReadAhead(readers);
+    }
+
+    for (int j = 0; j < compiled.length; j++) {
+      input.addMatcher(compiled[j].newCursor());
+    }
+
+    // Splitting a file into chunks only pays off when a single matcher reads it, and is only exact if all matches are reported.
+    if (compiled.length == 1 && compiled[0].reportsAllMatches()) {
+      input.setParallelSearch(compiled[0], fileThreads);
+    }
+
     try {
-      handleMatchMutex.lock();
+      input.run();
+    } finally {
+      // The end of the input follows its matches through the output stage.
+      if (orderedOutput != null && outputStage != null) {
+        outputStage.finish(index);
+      } else if (orderedOutput != null) {
+        orderedOutput.finish(index);
+      }
+    }
+  }
+
+  /**
+   * Prints the plan of each automatically planned matcher to the standard error.
+   */
+  private void explainMatchers() {
+    for (int i = 0; i < matcherBuilders.size(); i++) {
+      StringMatcherBuilder builder = matcherBuilders.get(i);
+
+      if (builder instanceof PlannerBuilder) {
+        System.err.format("Matcher %d:\n%s\n", i + 1, ((PlannerBuilder) builder).getPlan());
+      }
+    }
+  }
 
-      System.out.format(
-        "Match on line %d column %d of input '%s':\n    %s\n",
-        ctx.lineNumber, ctx.column, ctx.source, new String(ctx.line)
-      );
+  /**
+   * Lock preventing multiple {@link InputSource} threads from printing their matches at the same time,
+   * when they print them without the {@link OutputStage}.
+   */
+  private ReentrantLock handleMatchMutex = new ReentrantLock();
+
+  /**
+   * Callback executed for each match, by the {@link OutputStage} or by the {@link InputSource} task which found it.
+   *
+   * @param index - Index of the input, in the order the inputs were scheduled.
+   * @param ctx - The match.
+   */
+  private void handleMatch(int index, MatchContext ctx) {
+    StringBuilder text = new StringBuilder();
+
+    text.append(String.format(
+      "Match on line %d column %d of input '%s':\n    %s\n",
+      ctx.lineNumber, ctx.column, ctx.source, new String(ctx.line)
+    ));
 
-      for (int i = 0; i < ctx.column + 4; i++)
-        System.out.print(' ');
+    for (int i = 0; i < ctx.column + 4; i++)
+      text.append(' ');
 
-      for (int i = 0; i < ctx.match.getSubstring().length; i++)
-        System.out.print('^');
+    for (int i = 0; i < ctx.pattern.length; i++)
+      text.append('^');
 
-      System.out.print("\n\n");
+    text.append("\n\n");
+
+    if (orderedOutput != null) {
+      orderedOutput.print(index, text.toString());
+      return;
+    }
+
+    try {
+      handleMatchMutex.lock();
+      System.out.print(text);
     } finally {
       handleMatchMutex.unlock();
     }
@@ -575,6 +1917,10 @@ public class Main {
       addInput("-");
     }
 
+    if (explain) {
+      explainMatchers();
+    }
+
     runMatchers();
   }
 
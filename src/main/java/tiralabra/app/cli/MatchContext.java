@@ -0,0 +1,61 @@
+/**
+ * @author : dogamak
+ * @created : 2021-01-30
+**/
+
+package tiralabra.app.cli;
+
+import tiralabra.algorithms.StringMatcher;
+
+/**
+ * Information about a match and it's location in an input stream.
+ */
+class MatchContext {
+  /**
+   * Contents of the line which contains the match (or the matches start position).
+   */
+  byte[] line;
+
+  /**
+   * Number of the line on which the match is.
+   */
+  long lineNumber;
+
+  /**
+   * Number of characters from the start of the line to the start of the match.
+   */
+  int column;
+
+  /**
+   * Name of the input source.
+   */
+  String source;
+
+  /**
+   * Name of search algorithm which was used to find this match.
+   */
+  String algorithm;
+
+  /**
+   * Offset of the start of the match in the input stream.
+   */
+  long offset;
+
+  /**
+   * The pattern which was found.
+   */
+  byte[] pattern;
+
+  /**
+   * Create a match context object from a match reported by a {@link StringMatcher}.
+   *
+   * You need to populate the other fields manually.
+   *
+   * @param offset - Offset of the start of the match.
+   * @param pattern - The pattern which was found.
+   */
+  MatchContext(long offset, byte[] pattern) {
+    this.offset = offset;
+    this.pattern = pattern;
+  }
+}
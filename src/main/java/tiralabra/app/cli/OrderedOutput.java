@@ -0,0 +1,108 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.app.cli;
+
+import java.io.PrintStream;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reorder buffer which prints the output of inputs searched in parallel in the order of the inputs.
+ *
+ * The output of the first unfinished input is printed as soon as it is produced. The output of the
+ * inputs following it is held back until all of the inputs before them have finished. Only a fixed
+ * number of inputs may be started ahead of the first unfinished one, which bounds the number of
+ * inputs whose output is held back.
+ */
+class OrderedOutput {
+  /**
+   * Stream the output is printed to.
+   */
+  private PrintStream out;
+
+  /**
+   * Index of the first unfinished input, whose output is printed directly.
+   */
+  private int next = 0;
+
+  /**
+   * Output held back for each of the inputs in the window, indexed by the index of the input modulo the window size.
+   */
+  private StringBuilder[] held;
+
+  /**
+   * Whether each of the inputs in the window has finished, indexed like {@link #held}.
+   */
+  private boolean[] finished;
+
+  /**
+   * Permits to start an input, released as the first unfinished input moves forward.
+   */
+  private Semaphore window;
+
+  /**
+   * Create a reorder buffer.
+   *
+   * @param out - Stream the output is printed to.
+   * @param size - Number of inputs which may be started ahead of the first unfinished one, including it.
+   */
+  OrderedOutput(PrintStream out, int size) {
+    this.out = out;
+    this.held = new StringBuilder[size];
+    this.finished = new boolean[size];
+    this.window = new Semaphore(size);
+
+    for (int i = 0; i < size; i++) {
+      held[i] = new StringBuilder();
+    }
+  }
+
+  /**
+   * Wait until an input may be started. Must be called for each of the inputs in order.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  void begin() throws InterruptedException {
+    window.acquire();
+  }
+
+  /**
+   * Print output of an input, or hold it back if an input before it has not finished yet.
+   *
+   * @param index - Index of the input.
+   * @param text - The output.
+   */
+  synchronized void print(int index, String text) {
+    if (index == next) {
+      out.print(text);
+    } else {
+      held[index % held.length].append(text);
+    }
+  }
+
+  /**
+   * Record that an input has finished, printing the held back output of the inputs following it
+   * up to the next unfinished input.
+   *
+   * @param index - Index of the input.
+   */
+  synchronized void finish(int index) {
+    finished[index % finished.length] = true;
+
+    while (finished[next % finished.length]) {
+      finished[next % finished.length] = false;
+      next++;
+      window.release();
+
+      StringBuilder output = held[next % held.length];
+
+      // The buffer is replaced rather than cleared, so that a large output does not keep its memory.
+      if (output.length() > 0) {
+        out.print(output);
+        held[next % held.length] = new StringBuilder();
+      }
+    }
+  }
+}
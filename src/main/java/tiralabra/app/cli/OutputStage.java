@@ -0,0 +1,155 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.app.cli;
+
+import tiralabra.utils.SpscRingBuffer;
+
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Last stage of the search pipeline, which formats and prints the matches on a thread of its own.
+ *
+ * Each thread searching inputs hands its matches over through a {@link SpscRingBuffer} of its own,
+ * so the searching threads never wait for each other or for the output, unless their queue fills up.
+ * The stage takes the matches from the queues in turn. The matches of an input all come from the thread
+ * searching it, so they are printed in the order they were found, followed by the end of the input.
+ */
+class OutputStage implements Runnable {
+  /**
+   * Number of matches each searching thread may hand over before waiting for the stage.
+   */
+  static final int QUEUE_SIZE = 1024;
+
+  /**
+   * A match, or the end of an input if {@link #match} is {@code null}.
+   */
+  private static class Record {
+    int index;
+    MatchContext match;
+
+    Record(int index, MatchContext match) {
+      this.index = index;
+      this.match = match;
+    }
+  }
+
+  /**
+   * Called with the index of the input and the match for each match.
+   */
+  private BiConsumer<Integer, MatchContext> printMatch;
+
+  /**
+   * Called with the index of the input for the end of each input.
+   */
+  private IntConsumer finishInput;
+
+  /**
+   * Queues of the searching threads, replaced with a longer copy when a thread submits its first record.
+   */
+  private volatile SpscRingBuffer<Record>[] queues = newQueues(0);
+
+  /**
+   * Queue of the current thread.
+   */
+  private ThreadLocal<SpscRingBuffer<Record>> queue = ThreadLocal.withInitial(this::addQueue);
+
+  /**
+   * Whether all of the records have been submitted.
+   */
+  private volatile boolean closed = false;
+
+  /**
+   * Create an output stage.
+   *
+   * @param printMatch - Called with the index of the input and the match for each match, on the thread of the stage.
+   * @param finishInput - Called with the index of the input for the end of each input, on the thread of the stage.
+   */
+  OutputStage(BiConsumer<Integer, MatchContext> printMatch, IntConsumer finishInput) {
+    this.printMatch = printMatch;
+    this.finishInput = finishInput;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static SpscRingBuffer<Record>[] newQueues(int length) {
+    return (SpscRingBuffer<Record>[]) new SpscRingBuffer[length];
+  }
+
+  /**
+   * Register a queue for the current thread.
+   */
+  private synchronized SpscRingBuffer<Record> addQueue() {
+    SpscRingBuffer<Record> added = new SpscRingBuffer<>(QUEUE_SIZE);
+    SpscRingBuffer<Record>[] grown = newQueues(queues.length + 1);
+
+    System.arraycopy(queues, 0, grown, 0, queues.length);
+    grown[queues.length] = added;
+    queues = grown;
+
+    return added;
+  }
+
+  /**
+   * Hand a match over to the stage.
+   *
+   * @param index - Index of the input.
+   * @param match - The match.
+   */
+  void submit(int index, MatchContext match) {
+    queue.get().put(new Record(index, match));
+  }
+
+  /**
+   * Hand the end of an input over to the stage. Must be called on the thread which submitted its matches.
+   *
+   * @param index - Index of the input.
+   */
+  void finish(int index) {
+    queue.get().put(new Record(index, null));
+  }
+
+  /**
+   * Let the stage return once it has printed the records submitted so far.
+   * No records may be submitted after this.
+   */
+  void close() {
+    closed = true;
+  }
+
+  @Override
+  public void run() {
+    int attempt = 0;
+
+    while (true) {
+      // The flag is read before the queues, so that the records submitted before closing are all seen.
+      boolean last = closed;
+      boolean found = false;
+
+      for (SpscRingBuffer<Record> source : queues) {
+        Record record;
+
+        // A queue is only drained up to its size at a time, so that a busy thread does not hold up the others.
+        for (int i = 0; i < QUEUE_SIZE && (record = source.poll()) != null; i++) {
+          found = true;
+
+          if (record.match != null) {
+            printMatch.accept(record.index, record.match);
+          } else {
+            finishInput.accept(record.index);
+          }
+        }
+      }
+
+      if (found) {
+        attempt = 0;
+      } else if (last) {
+        return;
+      } else {
+        SpscRingBuffer.backOff(attempt++);
+      }
+    }
+  }
+}
@@ -182,7 +182,7 @@ public class ArrayList<T> implements Iterable<T> {
     int i = 0;
 
     while (i < size) {
-      if (!predicate.apply(get(0))) {
+      if (!predicate.apply(get(i))) {
         swapRemove(i);
       } else {
         i++;
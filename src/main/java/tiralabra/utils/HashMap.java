@@ -80,33 +80,49 @@ public class HashMap<K, V> {
   }
 
   public Entry entry(K key) {
-    int i = hash(key) % table.length;
-
-    while (table[i] != null && ((Entry) table[i]).key.equals(key)) i++;
+    int i = find(key);
 
     if (table[i] == null) {
       table[i] = new Entry(key, null);
+      occupied += 1;
+
+      if (occupied > table.length * 0.75) {
+        grow();
+        i = find(key);
+      }
     }
 
     return (Entry) table[i];
   }
 
-  private int hash(Object key) {
-    int code = key.hashCode();
+  /**
+   * Finds the index of the entry associated with a key, or the index
+   * of the unoccupied entry where the key would be inserted.
+   */
+  private int find(Object key) {
+    int i = hash(key) % table.length;
+
+    while (table[i] != null && !((Entry) table[i]).key.equals(key))
+      i = (i + 1) % table.length;
 
-    if (code < 0)
-      code = -code;
+    return i;
+  }
 
-    return code;
+  private int hash(Object key) {
+    // Clear the sign bit, since negating Integer.MIN_VALUE would leave it negative.
+    return key.hashCode() & Integer.MAX_VALUE;
   }
 
   /**
    * Inserts or replaces the value associated with the provided key.
    */
   public void insert(K key, V value) {
-    int i = hash(key) % table.length;
+    int i = find(key);
 
-    while (table[i] != null && ((Entry) table[i]).key.equals(key)) i++;
+    if (table[i] != null) {
+      ((Entry) table[i]).value = value;
+      return;
+    }
 
     table[i] = new Entry(key, value);
     occupied += 1;
@@ -140,14 +156,7 @@ public class HashMap<K, V> {
    * If no value is associated with the key, a null is returned.
    */
   public V get(K key) {
-    int i = hash(key) % table.length;
-
-    Entry entry;
-
-    do {
-      entry = (Entry) table[i];
-      i++;
-    } while (entry != null && !entry.key.equals(key));
+    Entry entry = (Entry) table[find(key)];
 
     if (entry == null) {
       return null;
@@ -156,6 +165,20 @@ public class HashMap<K, V> {
     return entry.value;
   }
 
+  /**
+   * Gets the number of entries in the map.
+   */
+  public int size() {
+    return occupied;
+  }
+
+  /**
+   * Gets the size of the internal table, i.e. the number of buckets.
+   */
+  public int capacity() {
+    return table.length;
+  }
+
   public Stream<Entry> entries() {
     return Arrays.stream(table)
       .filter(entry -> entry != null)
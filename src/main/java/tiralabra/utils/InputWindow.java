@@ -0,0 +1,185 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+/**
+ * View of an input stream consisting of the segment which is currently being
+ * processed and a fixed number of bytes preceding it.
+ *
+ * The segment is read in place from the caller's array. Only when the processing
+ * of the segment ends are its last bytes copied into a carry-over array, from which
+ * they are read while processing the next segment. The size of the carry-over
+ * array is a power of two and a byte is stored at its offset in the stream masked
+ * to the size of the array, so carrying bytes over never moves the bytes already
+ * in the array.
+ *
+ * Bytes are addressed by their offset from the start of the stream.
+ */
+public class InputWindow {
+  /**
+   * The bytes carried over from the previous segments.
+   */
+  private byte[] carry;
+
+  /**
+   * Mask giving the index in {@link #carry} of an offset in the stream.
+   */
+  private int mask;
+
+  /**
+   * Number of bytes preceding the segment which can be read.
+   */
+  private int history;
+
+  /**
+   * Array containing the current segment, or {@code null} between segments.
+   */
+  private byte[] segment = null;
+
+  /**
+   * Index of the first byte of the current segment in {@link #segment}.
+   */
+  private int segmentOffset = 0;
+
+  /**
+   * Length of the current segment.
+   */
+  private int segmentSize = 0;
+
+  /**
+   * Offset in the stream of the first byte of the current segment.
+   */
+  private long segmentStart = 0;
+
+  /**
+   * Create a window.
+   *
+   * @param history - Number of bytes preceding each segment which need to be readable.
+   */
+  public InputWindow(int history) {
+    int capacity = 1;
+
+    while (capacity < history) {
+      capacity <<= 1;
+    }
+
+    this.history = history;
+    this.carry = new byte[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Get the number of bytes preceding each segment which can be read.
+   */
+  public int history() {
+    return history;
+  }
+
+  /**
+   * Get the size of the carry-over array in bytes.
+   */
+  public int capacity() {
+    return carry.length;
+  }
+
+  /**
+   * Start processing the next segment of the stream.
+   *
+   * The array must not be modified until {@link #endSegment()} is called.
+   *
+   * @param array - Array containing the segment.
+   * @param offset - Index of the first byte of the segment in {@code array}.
+   * @param size - Length of the segment.
+   */
+  public void beginSegment(byte[] array, int offset, int size) {
+    segment = array;
+    segmentOffset = offset;
+    segmentSize = size;
+  }
+
+  /**
+   * Get the array containing the current segment.
+   */
+  public byte[] segmentArray() {
+    return segment;
+  }
+
+  /**
+   * Get the index of the first byte of the current segment in {@link #segmentArray()}.
+   */
+  public int segmentOffset() {
+    return segmentOffset;
+  }
+
+  /**
+   * Get the length of the current segment.
+   */
+  public int segmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * Get the offset in the stream of the first byte of the current segment.
+   */
+  public long segmentStart() {
+    return segmentStart;
+  }
+
+  /**
+   * Get the offset in the stream following the last byte of the current segment.
+   */
+  public long end() {
+    return segmentStart + segmentSize;
+  }
+
+  /**
+   * Read a byte of the stream.
+   *
+   * The offset is not checked. It must be within the current segment
+   * or at most {@link #history()} bytes before it.
+   *
+   * @param position - Offset of the byte in the stream.
+   *
+   * @return The byte.
+   */
+  public byte get(long position) {
+    if (position >= segmentStart)
+      return segment[segmentOffset + (int) (position - segmentStart)];
+
+    return carry[(int) position & mask];
+  }
+
+  /**
+   * Finish processing the current segment, carrying its last bytes over to the next segment.
+   */
+  public void endSegment() {
+    if (segmentSize == 0) {
+      segment = null;
+      return;
+    }
+
+    int count = Math.min(segmentSize, carry.length);
+    long start = segmentStart + segmentSize - count;
+    int index = (int) start & mask;
+    int first = Math.min(count, carry.length - index);
+
+    System.arraycopy(segment, segmentOffset + segmentSize - count, carry, index, first);
+    System.arraycopy(segment, segmentOffset + segmentSize - count + first, carry, 0, count - first);
+
+    segmentStart += segmentSize;
+    segment = null;
+    segmentSize = 0;
+  }
+
+  /**
+   * Return to the start of a new stream.
+   */
+  public void clear() {
+    segment = null;
+    segmentSize = 0;
+    segmentStart = 0;
+  }
+}
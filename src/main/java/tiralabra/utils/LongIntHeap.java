@@ -0,0 +1,165 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+/**
+ * A binary min-heap of {@code (long, int)} pairs, ordered by the first half of
+ * the pairs and then by the second half.
+ *
+ * Like {@link LongIntQueue}, the pairs are stored in two primitive arrays, so pushing
+ * and removing pairs never allocates once the heap has grown large enough.
+ */
+public class LongIntHeap {
+  /**
+   * First halves of the pairs, in heap order.
+   */
+  private long[] longs;
+
+  /**
+   * Second halves of the pairs, in heap order.
+   */
+  private int[] ints;
+
+  /**
+   * Number of pairs in the heap.
+   */
+  private int size = 0;
+
+  /**
+   * Create a heap with the specified initial capacity.
+   *
+   * @param capacity - Initial capacity of the heap. Must be positive.
+   */
+  public LongIntHeap(int capacity) {
+    longs = new long[capacity];
+    ints = new int[capacity];
+  }
+
+  /**
+   * Get the number of pairs in the heap.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether the heap is empty.
+   */
+  public boolean empty() {
+    return size == 0;
+  }
+
+  /**
+   * Add a pair to the heap.
+   *
+   * @param l - First half of the pair.
+   * @param i - Second half of the pair.
+   */
+  public void push(long l, int i) {
+    if (size == longs.length)
+      resize(longs.length * 2);
+
+    int index = size++;
+
+    // Move the parents of the new pair down until its place is found.
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+
+      if (!less(l, i, longs[parent], ints[parent]))
+        break;
+
+      longs[index] = longs[parent];
+      ints[index] = ints[parent];
+      index = parent;
+    }
+
+    longs[index] = l;
+    ints[index] = i;
+  }
+
+  /**
+   * Get the first half of the smallest pair.
+   */
+  public long peekLong() {
+    checkNotEmpty();
+    return longs[0];
+  }
+
+  /**
+   * Get the second half of the smallest pair.
+   */
+  public int peekInt() {
+    checkNotEmpty();
+    return ints[0];
+  }
+
+  /**
+   * Remove the smallest pair from the heap.
+   *
+   * @return {@code false} if the heap was empty.
+   */
+  public boolean remove() {
+    if (size == 0)
+      return false;
+
+    size--;
+
+    long l = longs[size];
+    int i = ints[size];
+    int index = 0;
+
+    // Move the smaller children of the last pair's place up until its place is found.
+    while (true) {
+      int child = 2 * index + 1;
+
+      if (child >= size)
+        break;
+
+      if (child + 1 < size && less(longs[child + 1], ints[child + 1], longs[child], ints[child]))
+        child++;
+
+      if (!less(longs[child], ints[child], l, i))
+        break;
+
+      longs[index] = longs[child];
+      ints[index] = ints[child];
+      index = child;
+    }
+
+    longs[index] = l;
+    ints[index] = i;
+
+    return true;
+  }
+
+  /**
+   * Remove all pairs from the heap.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  private static boolean less(long l1, int i1, long l2, int i2) {
+    return l1 < l2 || (l1 == l2 && i1 < i2);
+  }
+
+  private void checkNotEmpty() {
+    if (size == 0) {
+      throw new ArrayIndexOutOfBoundsException("LongIntHeap is empty");
+    }
+  }
+
+  private void resize(int capacity) {
+    long[] newLongs = new long[capacity];
+    int[] newInts = new int[capacity];
+
+    System.arraycopy(longs, 0, newLongs, 0, size);
+    System.arraycopy(ints, 0, newInts, 0, size);
+
+    longs = newLongs;
+    ints = newInts;
+  }
+}
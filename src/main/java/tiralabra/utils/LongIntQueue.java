@@ -0,0 +1,166 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+/**
+ * A FIFO queue of {@code (long, int)} pairs implemented using a growable ring buffer.
+ *
+ * Unlike {@link Queue}, the pairs are stored in two primitive arrays, so pushing
+ * and removing pairs never allocates once the queue has grown large enough.
+ */
+public class LongIntQueue {
+  /**
+   * First halves of the pairs.
+   */
+  private long[] longs;
+
+  /**
+   * Second halves of the pairs.
+   */
+  private int[] ints;
+
+  /**
+   * Index of the oldest pair in the arrays.
+   */
+  private int tail = 0;
+
+  /**
+   * Number of pairs in the queue.
+   */
+  private int size = 0;
+
+  /**
+   * Create a queue with the specified initial capacity.
+   *
+   * @param capacity - Initial capacity of the queue. Must be positive.
+   */
+  public LongIntQueue(int capacity) {
+    longs = new long[capacity];
+    ints = new int[capacity];
+  }
+
+  /**
+   * Get the number of pairs in the queue.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether the queue is empty.
+   */
+  public boolean empty() {
+    return size == 0;
+  }
+
+  /**
+   * Add a pair to the end of the queue.
+   *
+   * @param l - First half of the pair.
+   * @param i - Second half of the pair.
+   */
+  public void push(long l, int i) {
+    if (size == longs.length)
+      resize(longs.length * 2);
+
+    int index = (tail + size) % longs.length;
+    longs[index] = l;
+    ints[index] = i;
+    size++;
+  }
+
+  /**
+   * Get the first half of a pair.
+   *
+   * @param index - Index of the pair, counting from the oldest pair.
+   */
+  public long getLong(int index) {
+    checkIndex(index);
+    return longs[(tail + index) % longs.length];
+  }
+
+  /**
+   * Get the second half of a pair.
+   *
+   * @param index - Index of the pair, counting from the oldest pair.
+   */
+  public int getInt(int index) {
+    checkIndex(index);
+    return ints[(tail + index) % ints.length];
+  }
+
+  /**
+   * Remove the oldest pair from the queue.
+   *
+   * @return {@code false} if the queue was empty.
+   */
+  public boolean remove() {
+    if (size == 0)
+      return false;
+
+    tail = (tail + 1) % longs.length;
+    size--;
+
+    return true;
+  }
+
+  /**
+   * Remove all pairs from the queue.
+   */
+  public void clear() {
+    tail = 0;
+    size = 0;
+  }
+
+  /**
+   * Move the oldest pairs from the queue into arrays.
+   *
+   * @param longTarget - Array receiving the first halves of the pairs.
+   * @param intTarget - Array receiving the second halves of the pairs.
+   * @param offset - Index of the targets' first element to write.
+   * @param count - Maximum number of pairs to move.
+   *
+   * @return Number of pairs moved.
+   */
+  public int drain(long[] longTarget, int[] intTarget, int offset, int count) {
+    int moved = Math.min(count, size);
+    int first = Math.min(moved, longs.length - tail);
+
+    System.arraycopy(longs, tail, longTarget, offset, first);
+    System.arraycopy(ints, tail, intTarget, offset, first);
+    System.arraycopy(longs, 0, longTarget, offset + first, moved - first);
+    System.arraycopy(ints, 0, intTarget, offset + first, moved - first);
+
+    tail = (tail + moved) % longs.length;
+    size -= moved;
+
+    return moved;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new ArrayIndexOutOfBoundsException(
+        String.format("Index %d is out of bounds (LongIntQueue size %d)", index, size)
+      );
+    }
+  }
+
+  private void resize(int capacity) {
+    long[] newLongs = new long[capacity];
+    int[] newInts = new int[capacity];
+
+    int first = Math.min(size, longs.length - tail);
+
+    System.arraycopy(longs, tail, newLongs, 0, first);
+    System.arraycopy(ints, tail, newInts, 0, first);
+    System.arraycopy(longs, 0, newLongs, first, size - first);
+    System.arraycopy(ints, 0, newInts, first, size - first);
+
+    longs = newLongs;
+    ints = newInts;
+    tail = 0;
+  }
+}
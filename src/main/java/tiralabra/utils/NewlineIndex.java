@@ -0,0 +1,344 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Number of newlines preceding each block of a file, from which the line number of any offset
+ * can be found by counting the newlines between the start of its block and the offset.
+ *
+ * The newlines of the blocks are counted in parallel. The index can be saved next to the file
+ * and loaded by later searches, as long as the file has not been modified.
+ *
+ * The static methods find newlines in arrays eight bytes at a time: the bytes are read as a
+ * {@code long} and the bytes equal to a newline are found with a few arithmetic operations on it.
+ */
+public class NewlineIndex {
+  /**
+   * Size of the blocks used unless given to {@link #build(FileChannel, int, int)}.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * Identifies a saved index.
+   */
+  private static final int MAGIC = 0x4e4c4958;
+
+  /**
+   * Version of the format of a saved index.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Reads eight bytes of an array as a little-endian {@code long}, so that the first byte is the lowest.
+   */
+  private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final long NEWLINES = 0x0a0a0a0a0a0a0a0aL;
+
+  private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  /**
+   * Size of the blocks in bytes.
+   */
+  private int blockSize;
+
+  /**
+   * Size of the indexed file in bytes.
+   */
+  private long size;
+
+  /**
+   * Number of newlines before the start of each block, followed by the number of newlines in the whole file.
+   */
+  private long[] newlinesBefore;
+
+  private NewlineIndex(int blockSize, long size, long[] newlinesBefore) {
+    this.blockSize = blockSize;
+    this.size = size;
+    this.newlinesBefore = newlinesBefore;
+  }
+
+  /**
+   * Find the newlines in eight bytes.
+   *
+   * The bytes equal to a newline become zero in {@code y}. Adding {@code 0x7f} to the low seven bits of a byte
+   * carries into its high bit unless they are all zero, so the high bit of a byte ends up clear only if the
+   * whole byte of {@code y} is zero. No carries cross the bytes, so there are no false positives.
+   *
+   * @param word - The bytes, the first one lowest.
+   *
+   * @return Mask with the high bit of each newline byte set.
+   */
+  private static long newlineMask(long word) {
+    long y = word ^ NEWLINES;
+    return ~(((y & LOW_BITS) + LOW_BITS) | y) & HIGH_BITS;
+  }
+
+  /**
+   * Count the newlines in a segment of an array.
+   *
+   * @param array - The array.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   *
+   * @return Number of newlines.
+   */
+  public static int count(byte[] array, int from, int to) {
+    int count = 0;
+    int i = from;
+
+    for (; i + 8 <= to; i += 8) {
+      count += Long.bitCount(newlineMask((long) LONGS.get(array, i)));
+    }
+
+    for (; i < to; i++) {
+      if (array[i] == (byte) '\n')
+        count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Find the first newline in a segment of an array.
+   *
+   * @param array - The array.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   *
+   * @return Index of the newline, or -1 if there is none.
+   */
+  public static int indexOf(byte[] array, int from, int to) {
+    int i = from;
+
+    for (; i + 8 <= to; i += 8) {
+      long mask = newlineMask((long) LONGS.get(array, i));
+
+      if (mask != 0)
+        return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+    }
+
+    for (; i < to; i++) {
+      if (array[i] == (byte) '\n')
+        return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Find the last newline in a segment of an array.
+   *
+   * @param array - The array.
+   * @param from - Index of the first byte of the segment.
+   * @param to - Index following the last byte of the segment.
+   *
+   * @return Index of the newline, or -1 if there is none.
+   */
+  public static int lastIndexOf(byte[] array, int from, int to) {
+    int i = to;
+
+    for (; i - 8 >= from; i -= 8) {
+      long mask = newlineMask((long) LONGS.get(array, i - 8));
+
+      if (mask != 0)
+        return i - 1 - (Long.numberOfLeadingZeros(mask) >>> 3);
+    }
+
+    for (i--; i >= from; i--) {
+      if (array[i] == (byte) '\n')
+        return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Count the newlines of a range of the blocks of a file.
+   */
+  private static class CountTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private FileChannel channel;
+    private int blockSize;
+    private long size;
+    private long[] counts;
+    private int firstBlock;
+    private int endBlock;
+
+    CountTask(FileChannel channel, int blockSize, long size, long[] counts, int firstBlock, int endBlock) {
+      this.channel = channel;
+      this.blockSize = blockSize;
+      this.size = size;
+      this.counts = counts;
+      this.firstBlock = firstBlock;
+      this.endBlock = endBlock;
+    }
+
+    @Override
+    protected void compute() {
+      ByteBuffer block = ByteBuffer.allocate(blockSize);
+
+      try {
+        for (int b = firstBlock; b < endBlock; b++) {
+          long position = (long) b * blockSize;
+
+          block.clear();
+          block.limit((int) Math.min(blockSize, size - position));
+
+          while (block.hasRemaining() && channel.read(block, position + block.position()) != -1);
+
+          // The count of a block goes after it, where the prefix sums are formed.
+          counts[b + 1] = count(block.array(), 0, block.position());
+        }
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
+    }
+  }
+
+  /**
+   * Build the index of a file, counting the newlines of its blocks in parallel in the {@link ForkJoinPool}
+   * of the calling thread, or in the common pool if the caller is not a worker of a pool.
+   *
+   * The file is read with positional reads, so the position of the channel is not changed.
+   *
+   * @param channel - The file.
+   * @param blockSize - Size of the blocks in bytes.
+   * @param parallelism - Number of tasks the blocks are split into.
+   *
+   * @return The index.
+   *
+   * @throws IOException if reading the file fails.
+   */
+  public static NewlineIndex build(FileChannel channel, int blockSize, int parallelism) throws IOException {
+    long size = channel.size();
+    int blocks = (int) ((size + blockSize - 1) / blockSize);
+    long[] newlinesBefore = new long[blocks + 1];
+
+    int tasks = Math.max(1, Math.min(parallelism, blocks));
+    CountTask[] counts = new CountTask[tasks];
+
+    for (int i = 0; i < tasks; i++) {
+      counts[i] = new CountTask(channel, blockSize, size, newlinesBefore, (int) ((long) i * blocks / tasks), (int) ((long) (i + 1) * blocks / tasks));
+    }
+
+    try {
+      ForkJoinTask.invokeAll(counts);
+    } catch (UncheckedIOException uioe) {
+      throw uioe.getCause();
+    }
+
+    for (int b = 0; b < blocks; b++) {
+      newlinesBefore[b + 1] += newlinesBefore[b];
+    }
+
+    return new NewlineIndex(blockSize, size, newlinesBefore);
+  }
+
+  /**
+   * Get the size of the blocks in bytes.
+   */
+  public int blockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Get the size of the indexed file in bytes.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Get the number of newlines preceding a block.
+   *
+   * @param block - Index of the block. The block following the last one gives the number of newlines in the file.
+   *
+   * @return Number of newlines.
+   */
+  public long newlinesBefore(int block) {
+    return newlinesBefore[block];
+  }
+
+  /**
+   * Save the index into a file.
+   *
+   * @param file - The file to write.
+   * @param modified - Modification time of the indexed file, which is checked when loading the index.
+   *
+   * @throws IOException if writing the file fails.
+   */
+  public void save(File file, long modified) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(size);
+      out.writeLong(modified);
+      out.writeInt(blockSize);
+      out.writeInt(newlinesBefore.length);
+
+      for (long count : newlinesBefore) {
+        out.writeLong(count);
+      }
+    }
+  }
+
+  /**
+   * Load an index saved with {@link #save(File, long)}.
+   *
+   * @param file - The file to read.
+   * @param size - Current size of the indexed file.
+   * @param modified - Current modification time of the indexed file.
+   *
+   * @return The index, or {@code null} if the file is not an index or the indexed file has changed since it was saved.
+   *
+   * @throws IOException if reading the file fails.
+   */
+  public static NewlineIndex load(File file, long size, long modified) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        return null;
+
+      if (in.readLong() != size || in.readLong() != modified)
+        return null;
+
+      int blockSize = in.readInt();
+      int length = in.readInt();
+
+      if (blockSize <= 0 || length != (size + blockSize - 1) / blockSize + 1)
+        return null;
+
+      long[] newlinesBefore = new long[length];
+
+      for (int i = 0; i < length; i++) {
+        newlinesBefore[i] = in.readLong();
+      }
+
+      return new NewlineIndex(blockSize, size, newlinesBefore);
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package tiralabra.utils;
 
+import java.nio.ByteBuffer;
+
 public class RingBuffer {
     /**
      * Maximum capacity of the buffer.
@@ -51,15 +53,14 @@ public class RingBuffer {
         if (bytes > size)
             bytes = size;
 
-        int seg1_length = head + size;
-
-        if (seg1_length > bytes)
-            seg1_length = bytes - head;
+        // The oldest byte of the buffer is `size` bytes behind the head.
+        int tail = (buffer.length + head - size) % buffer.length;
 
-        System.arraycopy(buffer, head, target, 0, seg1_length);
+        int seg1_length = Math.min(bytes, buffer.length - tail);
+        System.arraycopy(buffer, tail, target, 0, seg1_length);
 
-        if (head + size > bytes) {
-            int seg2_length = head + size - bytes;
+        if (seg1_length < bytes) {
+            int seg2_length = bytes - seg1_length;
             System.arraycopy(buffer, 0, target, seg1_length, seg2_length);
         }
 
@@ -73,9 +74,9 @@ public class RingBuffer {
      */
     public void setCapacity(int new_capacity) {
         byte[] new_buffer = new byte[new_capacity];
-        copySequential(new_buffer);
+        size = copySequential(new_buffer);
         buffer = new_buffer;
-        head = 0;
+        head = size % new_capacity;
         capacity = new_capacity;
     }
 
@@ -85,7 +86,7 @@ public class RingBuffer {
      * @return A new array containing the buffer's contents.
      */
     public byte[] toArray() {
-        byte[] new_array = new byte[capacity];
+        byte[] new_array = new byte[size];
         copySequential(new_array);
         return new_array;
     }
@@ -115,10 +116,10 @@ public class RingBuffer {
         System.arraycopy(source, source_offset, buffer, head, seg1_length);
         head = (head + seg1_length) % buffer.length;
 
-        if (seg1_length < source_size) {
+        if (seg1_length < copy_length) {
             int seg2_length = copy_length - seg1_length;
             System.arraycopy(source, source_offset + seg1_length, buffer, head, seg2_length);
-            head = (head + seg1_length) % buffer.length;
+            head = (head + seg2_length) % buffer.length;
         }
 
         head %= buffer.length;
@@ -127,6 +128,30 @@ public class RingBuffer {
         return copy_length;
     }
 
+    /**
+     * Append the remaining bytes of a {@link ByteBuffer} to the queue, advancing its position.
+     *
+     * @param source - Buffer from which bytes are copied.
+     * @return Number of appended bytes.
+     */
+    public int pushBuffer(ByteBuffer source) {
+        int copy_length = Math.min(capacity - size, source.remaining());
+        int seg1_length = Math.min(buffer.length - head, copy_length);
+
+        source.get(buffer, head, seg1_length);
+        head = (head + seg1_length) % buffer.length;
+
+        if (seg1_length < copy_length) {
+            int seg2_length = copy_length - seg1_length;
+            source.get(buffer, head, seg2_length);
+            head = (head + seg2_length) % buffer.length;
+        }
+
+        size += copy_length;
+
+        return copy_length;
+    }
+
     /**
      * Append a single byte to the queue if the queue is not full.
      *
@@ -0,0 +1,206 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded FIFO queue connecting a single producer thread to a single consumer thread without locks.
+ *
+ * The producer only writes {@link #tail} and the consumer only writes {@link #head}. An element is written
+ * into its slot before the tail is moved past it with a release store, so the consumer which sees the new
+ * tail with an acquire load also sees the element. The slot is likewise cleared before the head is moved,
+ * so the producer never overwrites an element which is still being read. Both sides keep a copy of the
+ * index of the other side, and only read the shared index again when the copy says the queue is full or empty.
+ *
+ * At most one thread may call the producer methods {@link #offer(Object)} and {@link #put(Object)},
+ * and at most one thread may call the consumer methods {@link #poll()} and {@link #take()}, at a time.
+ */
+public class SpscRingBuffer<T> {
+  private static final VarHandle HEAD;
+  private static final VarHandle TAIL;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      HEAD = lookup.findVarHandle(SpscRingBuffer.class, "head", long.class);
+      TAIL = lookup.findVarHandle(SpscRingBuffer.class, "tail", long.class);
+    } catch (ReflectiveOperationException roe) {
+      throw new ExceptionInInitializerError(roe);
+    }
+  }
+
+  /**
+   * Longest time in nanoseconds {@link #backOff(int)} parks the thread for.
+   */
+  private static final long MAX_PARK_NANOS = 1000 * 1000;
+
+  /**
+   * The slots, whose number is a power of two.
+   */
+  private Object[] slots;
+
+  /**
+   * Mask giving the slot of an index.
+   */
+  private int mask;
+
+  /**
+   * Number of elements taken by the consumer so far. The next element is taken from its slot.
+   */
+  private long head = 0;
+
+  /**
+   * Number of elements added by the producer so far. The next element is added to its slot.
+   */
+  private long tail = 0;
+
+  /**
+   * Value of {@link #head} last read by the producer.
+   */
+  private long producerHead = 0;
+
+  /**
+   * Value of {@link #tail} last read by the consumer.
+   */
+  private long consumerTail = 0;
+
+  /**
+   * Create a queue.
+   *
+   * @param capacity - Maximum number of elements in the queue, rounded up to a power of two. Must be positive.
+   */
+  public SpscRingBuffer(int capacity) {
+    if (capacity <= 0 || capacity > (1 << 30))
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+
+    int size = Integer.highestOneBit(capacity);
+
+    if (size < capacity)
+      size <<= 1;
+
+    slots = new Object[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Get the maximum number of elements in the queue.
+   */
+  public int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * Get the number of elements in the queue. The value may be out of date by the time it is returned
+   * if called by neither of the threads using the queue.
+   */
+  public int size() {
+    return (int) ((long) TAIL.getAcquire(this) - (long) HEAD.getAcquire(this));
+  }
+
+  /**
+   * Returns true if there are no elements in the queue.
+   */
+  public boolean empty() {
+    return size() == 0;
+  }
+
+  /**
+   * Add an element to the queue if there is space for it. May only be called by the producer.
+   *
+   * @param value - The element. Must not be {@code null}.
+   *
+   * @return Whether the element was added.
+   */
+  public boolean offer(T value) {
+    long index = tail;
+
+    if (index - producerHead == slots.length) {
+      producerHead = (long) HEAD.getAcquire(this);
+
+      if (index - producerHead == slots.length)
+        return false;
+    }
+
+    slots[(int) index & mask] = value;
+    TAIL.setRelease(this, index + 1);
+
+    return true;
+  }
+
+  /**
+   * Remove the oldest element of the queue. May only be called by the consumer.
+   *
+   * @return The element, or {@code null} if the queue is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public T poll() {
+    long index = head;
+
+    if (index == consumerTail) {
+      consumerTail = (long) TAIL.getAcquire(this);
+
+      if (index == consumerTail)
+        return null;
+    }
+
+    int slot = (int) index & mask;
+    T value = (T) slots[slot];
+
+    slots[slot] = null;
+    HEAD.setRelease(this, index + 1);
+
+    return value;
+  }
+
+  /**
+   * Add an element to the queue, waiting with {@link #backOff(int)} until there is space for it.
+   * May only be called by the producer.
+   *
+   * @param value - The element. Must not be {@code null}.
+   */
+  public void put(T value) {
+    for (int attempt = 0; !offer(value); attempt++) {
+      backOff(attempt);
+    }
+  }
+
+  /**
+   * Remove the oldest element of the queue, waiting with {@link #backOff(int)} until there is one.
+   * May only be called by the consumer.
+   *
+   * @return The element.
+   */
+  public T take() {
+    T value;
+
+    for (int attempt = 0; (value = poll()) == null; attempt++) {
+      backOff(attempt);
+    }
+
+    return value;
+  }
+
+  /**
+   * Wait before retrying an operation which found a queue full or empty. The first attempts spin,
+   * the next ones yield the processor to other threads, and the rest park the thread for times
+   * which double up to a millisecond, so that a thread waiting for a long time does not keep
+   * a processor busy.
+   *
+   * @param attempt - Number of the failed attempts before this one.
+   */
+  public static void backOff(int attempt) {
+    if (attempt < 64) {
+      Thread.onSpinWait();
+    } else if (attempt < 72) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(attempt - 72, 10)));
+    }
+  }
+}
@@ -0,0 +1,292 @@
+package tiralabra.algorithms.AhoCorasick;
+
+import tiralabra.algorithms.CompiledPatternSet;
+import tiralabra.algorithms.MatcherReport;
+import tiralabra.algorithms.StringMatcher;
+import tiralabra.algorithms.StringMatcher.Match;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AhoCorasickTest {
+  @Test
+  void nestedPatterns() {
+    StringMatcher matcher = AhoCorasick.getBuilder()
+      .addPattern("abc")
+      .addPattern("ab")
+      .addPattern("b")
+      .buildMatcher();
+
+    matcher.pushString("xabcx");
+    matcher.finish();
+
+    Match m1 = matcher.pollMatch();
+    Match m2 = matcher.pollMatch();
+    Match m3 = matcher.pollMatch();
+
+    assertNotNull(m1);
+    assertEquals(1, m1.getOffset());
+    assertArrayEquals("ab".getBytes(), m1.getSubstring());
+
+    assertNotNull(m2);
+    assertEquals(2, m2.getOffset());
+    assertArrayEquals("b".getBytes(), m2.getSubstring());
+
+    assertNotNull(m3);
+    assertEquals(1, m3.getOffset());
+    assertArrayEquals("abc".getBytes(), m3.getSubstring());
+
+    assertNull(matcher.pollMatch());
+  }
+
+  @Test
+  void parallelConstructionMatchesSequential() {
+    Random random = new Random(1234);
+
+    AhoCorasickBuilder sequential = AhoCorasick.getBuilder().setConstructionPool(null);
+    AhoCorasickBuilder parallel = AhoCorasick.getBuilder().setConstructionPool(new ForkJoinPool(4));
+
+    for (int i = 0; i < AhoCorasick.PARALLEL_INSERT_THRESHOLD * 2; i++) {
+      byte[] pattern = new byte[1 + random.nextInt(8)];
+
+      for (int j = 0; j < pattern.length; j++)
+        pattern[j] = (byte) ('a' + random.nextInt(4));
+
+      sequential.addPattern(pattern);
+      parallel.addPattern(pattern);
+    }
+
+    byte[] input = new byte[4096];
+
+    for (int i = 0; i < input.length; i++)
+      input[i] = (byte) ('a' + random.nextInt(5));
+
+    StringMatcher expected = sequential.buildMatcher();
+    StringMatcher actual = parallel.buildMatcher();
+
+    expected.pushBytes(input);
+    expected.finish();
+    actual.pushBytes(input);
+    actual.finish();
+
+    Match expectedMatch;
+    int count = 0;
+
+    while ((expectedMatch = expected.pollMatch()) != null) {
+      Match actualMatch = actual.pollMatch();
+
+      assertNotNull(actualMatch);
+      assertEquals(expectedMatch.getOffset(), actualMatch.getOffset());
+      assertArrayEquals(expectedMatch.getSubstring(), actualMatch.getSubstring());
+      count++;
+    }
+
+    assertNull(actual.pollMatch());
+    assertTrue(count > 0);
+  }
+
+  @Test
+  void incrementalUpdatesMatchRebuild() {
+    Random random = new Random(4321);
+
+    byte[][] patterns = new byte[200][];
+
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = new byte[1 + random.nextInt(6)];
+
+      for (int j = 0; j < patterns[i].length; j++)
+        patterns[i][j] = (byte) ('a' + random.nextInt(3));
+    }
+
+    AhoCorasickBuilder builder = AhoCorasick.getBuilder();
+
+    for (int i = 0; i < patterns.length / 2; i++)
+      builder.addPattern(patterns[i]);
+
+    AhoCorasick incremental = (AhoCorasick) builder.buildMatcher();
+
+    // Remove every third of the initial patterns and add the rest of the patterns.
+
+    for (int i = 0; i < patterns.length / 2; i += 3)
+      incremental.removePattern(patterns[i]);
+
+    for (int i = patterns.length / 2; i < patterns.length; i++)
+      incremental.addPattern(patterns[i]);
+
+    AhoCorasickBuilder rebuilt = AhoCorasick.getBuilder();
+    java.util.Iterator<byte[]> it = incremental.getPatterns();
+
+    while (it.hasNext())
+      rebuilt.addPattern(it.next());
+
+    StringMatcher expected = rebuilt.buildMatcher();
+
+    byte[] input = new byte[2048];
+
+    for (int i = 0; i < input.length; i++)
+      input[i] = (byte) ('a' + random.nextInt(4));
+
+    expected.pushBytes(input);
+    expected.finish();
+    incremental.pushBytes(input);
+    incremental.finish();
+
+    assertEquals(collectMatches(expected), collectMatches(incremental));
+  }
+
+  @Test
+  void removingCurrentState() {
+    AhoCorasick matcher = (AhoCorasick) AhoCorasick.getBuilder()
+      .addPattern("bcd")
+      .addPattern("abcde")
+      .buildMatcher();
+
+    matcher.pushString("xabc");
+    assertTrue(matcher.removePattern("abcde".getBytes()));
+    assertFalse(matcher.removePattern("abcde".getBytes()));
+    matcher.pushString("d");
+    matcher.finish();
+
+    Match match = matcher.pollMatch();
+    assertNotNull(match);
+    assertEquals(2, match.getOffset());
+    assertArrayEquals("bcd".getBytes(), match.getSubstring());
+
+    assertNull(matcher.pollMatch());
+  }
+
+  @Test
+  void cursorsCopyTrieOnWrite() {
+    CompiledPatternSet compiled = AhoCorasick.getBuilder()
+      .addPattern("bcd")
+      .addPattern("abcde")
+      .compile();
+
+    AhoCorasick modified = (AhoCorasick) compiled.newCursor();
+    AhoCorasick untouched = (AhoCorasick) compiled.newCursor();
+
+    // The state of the modified cursor has to be carried over to the copied trie.
+    modified.pushString("xab");
+    assertTrue(modified.removePattern("abcde".getBytes()));
+    assertTrue(modified.addPattern("xa".getBytes()));
+    modified.pushString("cde");
+    modified.finish();
+
+    Match match = modified.pollMatch();
+    assertArrayEquals("bcd".getBytes(), match.getSubstring());
+    assertEquals(2, match.getOffset());
+    assertEquals(2, modified.getPattern(2).length);
+    assertNull(modified.pollMatch());
+
+    untouched.pushString("xabcde xa");
+    untouched.finish();
+
+    assertEquals(2, untouched.pollMatch().getOffset());
+    assertEquals(1, untouched.pollMatch().getOffset());
+    assertNull(untouched.pollMatch());
+
+    assertEquals("2", compiled.explain().get("patterns"));
+  }
+
+  @Test
+  void matchSemantics() {
+    assertEquals("0:Sam 0:Samwise", findAll(MatchSemantics.ALL_OVERLAPPING, "Samwise", "Sam", "Samwise"));
+    assertEquals("0:Sam", findAll(MatchSemantics.NON_OVERLAPPING, "Samwise", "Sam", "Samwise"));
+    assertEquals("0:Sam", findAll(MatchSemantics.LEFTMOST_FIRST, "Samwise", "Sam", "Samwise"));
+    assertEquals("0:Samwise", findAll(MatchSemantics.LEFTMOST_FIRST, "Samwise", "Samwise", "Sam"));
+    assertEquals("0:Samwise", findAll(MatchSemantics.LEFTMOST_LONGEST, "Samwise", "Sam", "Samwise"));
+
+    assertEquals("1:bc 0:abcd 2:cde", findAll(MatchSemantics.ALL_OVERLAPPING, "abcde", "abcd", "bc", "cde"));
+    assertEquals("1:bc", findAll(MatchSemantics.NON_OVERLAPPING, "abcde", "abcd", "bc", "cde"));
+    assertEquals("0:abcd", findAll(MatchSemantics.LEFTMOST_LONGEST, "abcde", "abcd", "bc", "cde"));
+  }
+
+  @Test
+  void leftmostMatchesAfterAbandonedCandidate() {
+    // "abcdef" is a candidate until the input diverges, after which the bytes following
+    // the match "b" need to be searched again for "cd".
+    assertEquals("1:b 2:cd", findAll(MatchSemantics.LEFTMOST_LONGEST, "abcdx", "abcdef", "b", "cd"));
+    assertEquals("1:b 2:cd", findAll(MatchSemantics.LEFTMOST_FIRST, "abcd", "abcdef", "b", "cd"));
+  }
+
+  static String findAll(MatchSemantics semantics, String input, String... patterns) {
+    AhoCorasickBuilder builder = AhoCorasick.getBuilder().setMatchSemantics(semantics);
+
+    for (String pattern : patterns)
+      builder.addPattern(pattern);
+
+    StringMatcher matcher = builder.buildMatcher();
+    matcher.pushString(input);
+    matcher.finish();
+
+    StringBuilder matches = new StringBuilder();
+    Match match;
+
+    while ((match = matcher.pollMatch()) != null) {
+      if (matches.length() > 0)
+        matches.append(' ');
+
+      matches.append(match.getOffset()).append(':').append(new String(match.getSubstring()));
+    }
+
+    return matches.toString();
+  }
+
+  static java.util.Set<String> collectMatches(StringMatcher matcher) {
+    java.util.Set<String> matches = new java.util.TreeSet<>();
+    Match match;
+
+    while ((match = matcher.pollMatch()) != null)
+      matches.add(match.getOffset() + ":" + new String(match.getSubstring()));
+
+    return matches;
+  }
+
+  @Test
+  void partialMatchIsDepthOfState() {
+    AhoCorasick matcher = (AhoCorasick) AhoCorasick.getBuilder()
+      .addPattern("abcd")
+      .addPattern("bcx")
+      .buildMatcher();
+
+    matcher.pushString("xab");
+    assertEquals(2, matcher.partialMatchLength());
+
+    matcher.pushString("c");
+    assertEquals(3, matcher.partialMatchLength());
+
+    // The state of the found "bcx" still counts until the input leaves the trie.
+    matcher.pushString("x");
+    assertEquals(3, matcher.partialMatchLength());
+
+    matcher.pushString("y");
+    assertEquals(0, matcher.partialMatchLength());
+
+    AhoCorasick leftmost = (AhoCorasick) AhoCorasick.getBuilder()
+      .setMatchSemantics(MatchSemantics.LEFTMOST_FIRST)
+      .addPattern("abcd")
+      .buildMatcher();
+
+    assertEquals(Integer.MAX_VALUE, leftmost.partialMatchLength());
+  }
+
+  @Test
+  void explainCountsStates() {
+    StringMatcher matcher = AhoCorasick.getBuilder()
+      .addPattern("ab")
+      .addPattern("ac")
+      .buildMatcher();
+
+    MatcherReport report = matcher.explain();
+
+    assertEquals("Aho-Corasick", report.getAlgorithm());
+    assertEquals("4", report.get("states"));
+    assertEquals("3", report.get("transitions"));
+    assertEquals("2", report.get("accepting states"));
+    assertEquals("2", report.get("depth"));
+    assertEquals("1", report.get("root fan-out"));
+  }
+}
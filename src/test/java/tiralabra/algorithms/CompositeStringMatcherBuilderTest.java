@@ -0,0 +1,86 @@
+package tiralabra.algorithms;
+
+import tiralabra.algorithms.StringMatcher.Match;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompositeStringMatcherBuilderTest {
+  @Test
+  void mergesMatchesFromAllLengthClasses() {
+    byte[] longPattern = new byte[300];
+    Arrays.fill(longPattern, (byte) 'x');
+    longPattern[0] = 'y';
+
+    StringMatcher matcher = new CompositeStringMatcherBuilder()
+      .setLengthClasses(2, 256)
+      .addPattern("ab")
+      .addPattern("soup")
+      .addPattern(longPattern)
+      .buildMatcher();
+
+    byte[] input = new byte[1000];
+    Arrays.fill(input, (byte) '.');
+    System.arraycopy("ab soup".getBytes(), 0, input, 10, 7);
+    System.arraycopy(longPattern, 0, input, 500, longPattern.length);
+    System.arraycopy("soup ab".getBytes(), 0, input, 900, 7);
+
+    int consumed = 0;
+
+    while (consumed < input.length) {
+      consumed += matcher.pushBytes(input, consumed, input.length - consumed);
+      matcher.process();
+    }
+
+    matcher.finish();
+
+    int[] expectedOffsets = new int[] { 10, 13, 500, 900, 905 };
+    int[] expectedLengths = new int[] { 2, 4, 300, 4, 2 };
+
+    for (int i = 0; i < expectedOffsets.length; i++) {
+      Match match = matcher.pollMatch();
+
+      assertNotNull(match);
+      assertEquals(expectedOffsets[i], match.getOffset());
+      assertEquals(expectedLengths[i], match.getSubstring().length);
+    }
+
+    assertNull(matcher.pollMatch());
+  }
+
+  @Test
+  void reportsMatchesOfOneLengthClassInOrderOfOffsets() {
+    byte[] longPattern = new byte[40];
+    Arrays.fill(longPattern, (byte) 'z');
+
+    StringMatcherBuilder builder = new CompositeStringMatcherBuilder()
+      .setLengthClasses(4, 32)
+      .addPattern("abcd")
+      .addPattern("bc")
+      .addPattern("c")
+      .addPattern(longPattern);
+
+    byte[] input = "xxabcdxx".getBytes();
+    long[] expectedOffsets = new long[] { 2, 3, 4 };
+
+    StringBuilder found = new StringBuilder();
+    builder.compile().findAll(input, 0, input.length, (offset, patternId) -> found.append(offset).append(' '));
+    assertEquals("2 3 4 ", found.toString());
+
+    StringMatcher matcher = builder.buildMatcher();
+    matcher.pushBytes(input, 0, input.length);
+    matcher.process();
+    matcher.finish();
+
+    for (long offset : expectedOffsets) {
+      Match match = matcher.pollMatch();
+
+      assertNotNull(match);
+      assertEquals(offset, match.getOffset());
+    }
+
+    assertNull(matcher.pollMatch());
+  }
+}
@@ -32,4 +32,19 @@ public class KnuthMorrisPrattTest {
 
     assertNull(m3);
   }
+
+  @Test
+  void partialMatchLength() {
+    KnuthMorrisPratt kmp = new KnuthMorrisPratt("ABCAB".getBytes());
+
+    kmp.pushString("XABCA");
+    assertEquals(4, kmp.partialMatchLength());
+
+    // After a full match the border "AB" may begin the next match.
+    kmp.pushString("B");
+    assertEquals(2, kmp.partialMatchLength());
+
+    kmp.pushString("X");
+    assertEquals(0, kmp.partialMatchLength());
+  }
 }
@@ -0,0 +1,170 @@
+package tiralabra.algorithms.Planner;
+
+import tiralabra.algorithms.StringMatcher;
+import tiralabra.algorithms.StringMatcher.Match;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveStringMatcherTest {
+  private static byte[] randomBytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+
+    for (int i = 0; i < length; i++)
+      bytes[i] = (byte) ('a' + random.nextInt(3));
+
+    return bytes;
+  }
+
+  private static ArrayList<String> bruteForce(byte[][] patterns, byte[] input) {
+    ArrayList<String> matches = new ArrayList<>();
+
+    for (byte[] pattern : patterns) {
+      for (int i = 0; i + pattern.length <= input.length; i++) {
+        int j = 0;
+
+        while (j < pattern.length && input[i + j] == pattern[j])
+          j++;
+
+        if (j == pattern.length)
+          matches.add(i + ":" + new String(pattern));
+      }
+    }
+
+    Collections.sort(matches);
+    return matches;
+  }
+
+  private static void collect(StringMatcher matcher, ArrayList<String> matches) {
+    Match match;
+
+    while ((match = matcher.pollMatch()) != null)
+      matches.add(match.getOffset() + ":" + new String(match.getSubstring()));
+  }
+
+  private static byte[][] randomPatterns(Random random) {
+    byte[][] patterns = new byte[2 + random.nextInt(4)][];
+
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = randomBytes(random, 1 + random.nextInt(6));
+
+      // Aho-Corasick reports duplicate patterns only once.
+      for (int j = 0; j < i; j++) {
+        if (Arrays.equals(patterns[i], patterns[j])) {
+          i--;
+          break;
+        }
+      }
+    }
+
+    return patterns;
+  }
+
+  @Test
+  void switchingEnginesDoesNotLoseOrDuplicateMatches() {
+    Random random = new Random(42);
+
+    for (int round = 0; round < 50; round++) {
+      byte[][] patterns = randomPatterns(random);
+      byte[] input = randomBytes(random, 2000);
+
+      PlannerBuilder builder = Planner.getBuilder().setAdaptive(true);
+
+      for (byte[] pattern : patterns)
+        builder.addPattern(pattern);
+
+      AdaptiveStringMatcher matcher = (AdaptiveStringMatcher) builder.buildMatcher();
+      Plan.Candidate[] candidates = builder.getPlan().getCandidates();
+      ArrayList<String> matches = new ArrayList<>();
+
+      int offset = 0;
+      int switches = 0;
+
+      while (offset < input.length) {
+        int size = Math.min(input.length - offset, 1 + random.nextInt(100));
+        matcher.pushBytes(input, offset, size);
+        offset += size;
+
+        matcher.switchEngine(candidates[switches++ % candidates.length]);
+        collect(matcher, matches);
+      }
+
+      matcher.finish();
+      collect(matcher, matches);
+
+      Collections.sort(matches);
+      assertEquals(bruteForce(patterns, input), matches);
+      assertEquals(switches, matcher.getSwitchCount());
+    }
+  }
+
+  @Test
+  void replanningKeepsMatches() {
+    Random random = new Random(7);
+    byte[][] patterns = randomPatterns(random);
+    byte[] input = randomBytes(random, 20000);
+
+    PlannerBuilder builder = Planner.getBuilder().setAdaptive(true).setSampleSizes(64, 256);
+
+    for (byte[] pattern : patterns)
+      builder.addPattern(pattern);
+
+    StringMatcher matcher = builder.buildMatcher();
+    ArrayList<String> matches = new ArrayList<>();
+
+    for (int offset = 0; offset < input.length; offset += 100) {
+      matcher.pushBytes(input, offset, Math.min(100, input.length - offset));
+      collect(matcher, matches);
+    }
+
+    matcher.finish();
+    collect(matcher, matches);
+
+    Collections.sort(matches);
+    assertEquals(bruteForce(patterns, input), matches);
+  }
+
+  @Test
+  void denseMatchesSwitchAwayFromBoyerMoore() {
+    String pattern = "abcdefghijklmnopqrstuvwxyzABCDEF";
+    PlannerBuilder builder = Planner.getBuilder().setAdaptive(true).setSampleSizes(64, 256);
+    builder.addPattern(pattern);
+
+    AdaptiveStringMatcher sparse = (AdaptiveStringMatcher) builder.buildMatcher();
+    AdaptiveStringMatcher dense = (AdaptiveStringMatcher) builder.buildMatcher();
+    assertEquals("boyer-moore", dense.getCandidate().getName());
+
+    byte[] noMatches = new byte[4096];
+    Arrays.fill(noMatches, (byte) '.');
+
+    byte[] allMatches = new byte[4096];
+
+    for (int i = 0; i < allMatches.length; i++)
+      allMatches[i] = (byte) pattern.charAt(i % pattern.length());
+
+    ArrayList<String> matches = new ArrayList<>();
+
+    for (int offset = 0; offset < allMatches.length; offset += 128) {
+      sparse.pushBytes(noMatches, offset, 128);
+      dense.pushBytes(allMatches, offset, 128);
+      collect(dense, matches);
+    }
+
+    sparse.finish();
+    dense.finish();
+    collect(dense, matches);
+
+    assertEquals("boyer-moore", sparse.getCandidate().getName());
+    assertEquals(0, sparse.getSwitchCount());
+    assertEquals("knuth-morris-pratt", dense.getCandidate().getName());
+    assertEquals(1, dense.getSwitchCount());
+
+    Collections.sort(matches);
+    assertEquals(bruteForce(new byte[][] { pattern.getBytes() }, allMatches), matches);
+  }
+}
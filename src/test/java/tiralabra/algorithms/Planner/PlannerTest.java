@@ -0,0 +1,52 @@
+package tiralabra.algorithms.Planner;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlannerTest {
+  @Test
+  void shortestPeriod() {
+    assertEquals(3, PatternStatistics.shortestPeriod("abcabcab".getBytes()));
+    assertEquals(1, PatternStatistics.shortestPeriod("aaaa".getBytes()));
+    assertEquals(5, PatternStatistics.shortestPeriod("abcde".getBytes()));
+  }
+
+  @Test
+  void longPatternUsesBoyerMoore() {
+    PlannerBuilder builder = Planner.getBuilder();
+    builder.addPattern("qgLZsafRDuuNzwBzGQrnEwWJHSzjnrTWBwxFeUkhiDbBhUXZbzHikVzyrwQvtghQTZSClAnbDAovwmtoWLRRYdAnnaFXyLsCplew");
+
+    assertEquals("boyer-moore", builder.getPlan().getSelected().getName());
+  }
+
+  @Test
+  void singleBytePatternUsesKnuthMorrisPratt() {
+    PlannerBuilder builder = Planner.getBuilder();
+    builder.addPattern("x");
+
+    assertEquals("knuth-morris-pratt", builder.getPlan().getSelected().getName());
+  }
+
+  @Test
+  void manyShortPatternsUseAhoCorasick() {
+    PlannerBuilder builder = Planner.getBuilder();
+
+    for (int i = 0; i < 100; i++) {
+      builder.addPattern("p" + i);
+    }
+
+    assertEquals("aho-corasick", builder.getPlan().getSelected().getName());
+  }
+
+  @Test
+  void planIsRefreshedAfterAddingPatterns() {
+    PlannerBuilder builder = Planner.getBuilder();
+    builder.addPattern("x");
+    Plan first = builder.getPlan();
+
+    builder.addPattern("y");
+
+    assertNotSame(first, builder.getPlan());
+    assertEquals(2, builder.getPlan().getStatistics().getPatternCount());
+  }
+}
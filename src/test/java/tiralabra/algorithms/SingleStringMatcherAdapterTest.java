@@ -0,0 +1,102 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.algorithms;
+
+import tiralabra.algorithms.BoyerMoore.BoyerMoore;
+import tiralabra.algorithms.StringMatcher.Match;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleStringMatcherAdapterTest {
+  private static StringMatcher build(String[] patterns, int parallelism) {
+    SingleStringMatcherAdapter builder = (SingleStringMatcherAdapter) BoyerMoore.getBuilder();
+    builder.setParallelism(parallelism);
+
+    for (String pattern : patterns) {
+      builder.addPattern(pattern);
+    }
+
+    return builder.compile().newCursor();
+  }
+
+  @Test
+  void parallelGroupsReportMatchesInSequentialOrder() {
+    String[] patterns = { "ab", "ba", "aab", "bab", "abba", "b", "aaaa" };
+    Random random = new Random(7);
+
+    byte[] input = new byte[3 * SingleStringMatcherAdapter.MIN_PARALLEL_SIZE];
+
+    for (int i = 0; i < input.length; i++) {
+      input[i] = (byte) (random.nextBoolean() ? 'a' : 'b');
+    }
+
+    StringMatcher sequential = build(patterns, 1);
+    StringMatcher parallel = build(patterns, 3);
+
+    // Both large arrays, which the groups process in parallel, and small ones.
+    int[] sizes = { SingleStringMatcherAdapter.MIN_PARALLEL_SIZE + 5, 1, 17, SingleStringMatcherAdapter.MIN_PARALLEL_SIZE * 2 };
+    int offset = 0;
+
+    for (int i = 0; offset < input.length; i++) {
+      int size = Math.min(sizes[i % sizes.length], input.length - offset);
+
+      assertEquals(size, sequential.pushBytes(input, offset, size));
+      assertEquals(size, parallel.pushBytes(input, offset, size));
+
+      offset += size;
+    }
+
+    sequential.finish();
+    parallel.finish();
+
+    int count = 0;
+    Match expected;
+
+    while ((expected = sequential.pollMatch()) != null) {
+      Match actual = parallel.pollMatch();
+
+      assertNotNull(actual);
+      assertEquals(expected.getOffset(), actual.getOffset());
+      assertArrayEquals(expected.getSubstring(), actual.getSubstring());
+      count++;
+    }
+
+    assertNull(parallel.pollMatch());
+    assertTrue(count > 0);
+  }
+
+  @Test
+  void matchesAreReportedInOffsetOrder() {
+    String[] patterns = { "abba", "b", "ab", "bab" };
+    StringMatcher matcher = build(patterns, 1);
+
+    byte[] input = "abbabab".getBytes();
+
+    // Push the input a byte at a time, so the matches are merged over many pushes.
+    for (byte b : input) {
+      matcher.pushByte(b);
+    }
+
+    matcher.finish();
+
+    // Matches at the same offset are in the order the patterns were added.
+    long[] expectedOffsets = { 0, 0, 1, 2, 2, 3, 4, 4, 5, 6 };
+    String[] expectedPatterns = { "abba", "ab", "b", "b", "bab", "ab", "b", "bab", "ab", "b" };
+
+    for (int i = 0; i < expectedOffsets.length; i++) {
+      Match match = matcher.pollMatch();
+
+      assertNotNull(match);
+      assertEquals(expectedOffsets[i], match.getOffset());
+      assertEquals(expectedPatterns[i], new String(match.getSubstring()));
+    }
+
+    assertNull(matcher.pollMatch());
+  }
+}
@@ -6,13 +6,27 @@
 package tiralabra.algorithms;
 
 import tiralabra.algorithms.AhoCorasick.AhoCorasick;
+import tiralabra.algorithms.AhoCorasick.MatchSemantics;
 import tiralabra.algorithms.NaiveSearch.NaiveSearch;
 import tiralabra.algorithms.RabinKarp.RabinKarp;
 import tiralabra.algorithms.KnuthMorrisPratt.KnuthMorrisPratt;
 import tiralabra.algorithms.BoyerMoore.BoyerMoore;
+import tiralabra.algorithms.Planner.Planner;
 
 import tiralabra.algorithms.StringMatcher.Match;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import static org.junit.jupiter.api.Assertions.*;
@@ -154,6 +168,302 @@ public class StringMatcherTest {
     assertNull(matcher.pollMatch());
   }
 
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testExplain(StringMatcherBuilder builder) {
+    StringMatcher matcher = builder
+      .addPattern("pattern")
+      .addPattern("soup")
+      .buildMatcher();
+
+    MatcherReport report = matcher.explain();
+
+    assertNotNull(report.getAlgorithm());
+    assertEquals("2", report.get("patterns"));
+    assertTrue(report.getMemoryBytes() > 0);
+    assertTrue(report.toString().contains("total memory"));
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testMatchSink(StringMatcherBuilder builder) {
+    StringMatcher matcher = builder.addPattern("aa").buildMatcher();
+
+    long[] offsets = new long[8];
+    int[] count = new int[1];
+
+    matcher.setMatchSink((offset, patternId) -> {
+      assertEquals(0, patternId);
+      offsets[count[0]++] = offset;
+    });
+
+    matcher.pushString("aaaa");
+    matcher.finish();
+
+    assertEquals(3, count[0]);
+    assertEquals(0, offsets[0]);
+    assertEquals(1, offsets[1]);
+    assertEquals(2, offsets[2]);
+    assertNull(matcher.pollMatch());
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testDrainMatches(StringMatcherBuilder builder) {
+    StringMatcher matcher = builder.addPattern("ab").buildMatcher();
+
+    matcher.pushString("ab ab ab");
+    matcher.finish();
+
+    long[] offsets = new long[2];
+    int[] patternIds = new int[2];
+
+    assertEquals(2, matcher.drainMatches(offsets, patternIds));
+    assertEquals(0, offsets[0]);
+    assertEquals(3, offsets[1]);
+    assertArrayEquals("ab".getBytes(), matcher.getPattern(patternIds[0]));
+    assertArrayEquals("ab".getBytes(), matcher.getPattern(patternIds[1]));
+
+    assertEquals(1, matcher.drainMatches(offsets, patternIds));
+    assertEquals(6, offsets[0]);
+
+    assertEquals(0, matcher.drainMatches(offsets, patternIds));
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testCompiledCursors(StringMatcherBuilder builder) {
+    CompiledPatternSet compiled = builder.addPattern("ab").addPattern("bcd").compile();
+
+    StringMatcher first = compiled.newCursor();
+    StringMatcher second = compiled.newCursor();
+
+    // Interleave the inputs to make sure the cursors do not share any stream state.
+    first.pushString("xxab");
+    second.pushString("bc");
+    first.pushString("cd");
+    second.pushString("d");
+    first.finish();
+    second.finish();
+
+    assertEquals(2, first.pollMatch().getOffset());
+    assertEquals(3, first.pollMatch().getOffset());
+    assertNull(first.pollMatch());
+
+    Match match = second.pollMatch();
+    assertArrayEquals("bcd".getBytes(), match.getSubstring());
+    assertEquals(0, match.getOffset());
+    assertNull(second.pollMatch());
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testReset(StringMatcherBuilder builder) {
+    StringMatcher matcher = builder.addPattern("abc").compile().newCursor();
+
+    // Leave a partial match and an unpolled match behind.
+    matcher.pushString("abc ab");
+    matcher.process();
+    matcher.reset();
+
+    assertFalse(matcher.hasFinished());
+
+    matcher.pushString("c abc");
+    matcher.finish();
+
+    Match match = matcher.pollMatch();
+    assertNotNull(match);
+    assertEquals(2, match.getOffset());
+    assertNull(matcher.pollMatch());
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testPushBuffer(StringMatcherBuilder builder) {
+    StringMatcher matcher = builder.addPattern("pattern").buildMatcher();
+
+    byte[] input = "there is a pattern in my soup".getBytes();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(input.length);
+    buffer.put(input).flip();
+
+    while (buffer.hasRemaining()) {
+      if (matcher.pushBuffer(buffer) == 0)
+        matcher.process();
+    }
+
+    matcher.finish();
+
+    Match match = matcher.pollMatch();
+    assertNotNull(match);
+    assertEquals(11, match.getOffset());
+    assertNull(matcher.pollMatch());
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testChannelScanner(StringMatcherBuilder builder) throws IOException {
+    StringMatcher matcher = builder.addPattern("pattern").buildMatcher();
+
+    byte[] input = "there is multiple patterns in my pattern soup".getBytes();
+
+    // The buffer is smaller than the pattern, so the matches span multiple reads.
+    long read = new ChannelScanner(4).scan(Channels.newChannel(new ByteArrayInputStream(input)), matcher);
+
+    assertEquals(input.length, read);
+    assertTrue(matcher.hasFinished());
+    assertEquals(18, matcher.pollMatch().getOffset());
+    assertEquals(33, matcher.pollMatch().getOffset());
+    assertNull(matcher.pollMatch());
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testRandomAccessSearch(StringMatcherBuilder builder) {
+    CompiledPatternSet compiled = builder
+      .addPattern("abab")
+      .addPattern("ba")
+      .addPattern("bbb")
+      .addPattern("aabaa")
+      .compile();
+
+    Random random = new Random(7);
+    byte[] haystack = new byte[200];
+
+    for (int i = 0; i < haystack.length; i++) {
+      haystack[i] = (byte) (random.nextBoolean() ? 'a' : 'b');
+    }
+
+    for (int round = 0; round < 50; round++) {
+      int from = random.nextInt(haystack.length);
+      int to = from + random.nextInt(haystack.length - from + 1);
+
+      // Stream the same segment through a cursor for reference.
+      java.util.ArrayList<String> expected = new java.util.ArrayList<>();
+      StringMatcher cursor = compiled.newCursor();
+      cursor.setMatchSink((offset, patternId) -> expected.add((from + offset) + ":" + patternId));
+      cursor.pushBytes(haystack, from, to - from);
+      cursor.finish();
+
+      java.util.ArrayList<String> found = new java.util.ArrayList<>();
+      compiled.findAll(haystack, from, to, (offset, patternId) -> found.add(offset + ":" + patternId));
+
+      Collections.sort(expected);
+      Collections.sort(found);
+
+      assertEquals(expected, found);
+      assertEquals(expected.size(), compiled.count(haystack, from, to));
+
+      Match first = compiled.findFirst(haystack, from, to);
+      long firstOffset = expected.stream().mapToLong(m -> Long.parseLong(m.split(":")[0])).min().orElse(-1);
+
+      if (firstOffset == -1) {
+        assertNull(first);
+      } else {
+        assertEquals(firstOffset, first.getOffset());
+        assertArrayEquals(first.getSubstring(), Arrays.copyOfRange(haystack, (int) firstOffset, (int) firstOffset + first.getSubstring().length));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("getBuilders")
+  void testFindFirstPrefersEarlierStart(StringMatcherBuilder builder) {
+    CompiledPatternSet compiled = builder.addPattern("bc").addPattern("abcd").compile();
+
+    // "bc" is found first, but "abcd" starts before it.
+    Match first = compiled.findFirst("xabcd".getBytes(), 0, 5);
+
+    assertNotNull(first);
+    assertEquals(1, first.getOffset());
+    assertArrayEquals("abcd".getBytes(), first.getSubstring());
+
+    assertNull(compiled.findFirst("xabcd".getBytes(), 3, 5));
+    assertThrows(IndexOutOfBoundsException.class, () -> compiled.count("xabcd".getBytes(), 2, 6));
+  }
+
+  @ParameterizedTest
+  @MethodSource("getParallelScannerBuilders")
+  void testParallelScanner(StringMatcherBuilder builder) throws IOException {
+    CompiledPatternSet compiled = builder
+      .addPattern("abab")
+      .addPattern("ba")
+      .addPattern("bbb")
+      .addPattern("aabaa")
+      .compile();
+
+    Random random = new Random(11);
+    byte[] haystack = new byte[1000];
+
+    for (int i = 0; i < haystack.length; i++) {
+      haystack[i] = (byte) (random.nextBoolean() ? 'a' : 'b');
+    }
+
+    // Stream the whole input through a cursor for reference, ordering the matches by offset and pattern.
+    java.util.ArrayList<Long> expected = new java.util.ArrayList<>();
+    StringMatcher cursor = compiled.newCursor();
+    cursor.setMatchSink((offset, patternId) -> expected.add(offset * 8 + patternId));
+    cursor.pushBytes(haystack, 0, haystack.length);
+    cursor.finish();
+    Collections.sort(expected);
+
+    // Chunks shorter than the patterns, so that matches span several chunks, and chunks spanning several waves.
+    ParallelScanner scanner = new ParallelScanner(compiled, 3).setMaxChunkSize(3);
+
+    java.util.ArrayList<Long> found = new java.util.ArrayList<>();
+    scanner.search(haystack, 0, haystack.length, (offset, patternId) -> found.add(offset * 8 + patternId));
+    assertEquals(expected, found);
+
+    File file = File.createTempFile("parallel-scanner", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), haystack);
+
+    found.clear();
+    scanner.setMaxChunkSize(97);
+
+    try (FileChannel channel = FileChannel.open(file.toPath())) {
+      assertEquals(haystack.length, scanner.search(channel, (offset, patternId) -> found.add(offset * 8 + patternId)));
+    }
+
+    assertEquals(expected, found);
+  }
+
+  @Test
+  void parallelScannerKeepsNonOverlappingMatchesApart() {
+    byte[] haystack = "a".repeat(36).getBytes();
+
+    for (MatchSemantics semantics : MatchSemantics.values()) {
+      CompiledPatternSet compiled = AhoCorasick.getBuilder()
+        .setMatchSemantics(semantics)
+        .addPattern("aa")
+        .addPattern("aaa")
+        .compile();
+
+      java.util.ArrayList<Long> expected = new java.util.ArrayList<>();
+      compiled.findAll(haystack, 0, haystack.length, (offset, patternId) -> expected.add(offset * 8 + patternId));
+      Collections.sort(expected);
+
+      java.util.ArrayList<Long> found = new java.util.ArrayList<>();
+      new ParallelScanner(compiled, 3)
+        .setMaxChunkSize(5)
+        .search(haystack, 0, haystack.length, (offset, patternId) -> found.add(offset * 8 + patternId));
+
+      assertEquals(semantics == MatchSemantics.ALL_OVERLAPPING, compiled.reportsAllMatches());
+      assertEquals(expected, found, semantics.toString());
+    }
+  }
+
+  static StringMatcherBuilder[] getParallelScannerBuilders() {
+    StringMatcherBuilder[] builders = getBuilders();
+    MatchSemantics[] semantics = { MatchSemantics.NON_OVERLAPPING, MatchSemantics.LEFTMOST_FIRST, MatchSemantics.LEFTMOST_LONGEST };
+    StringMatcherBuilder[] all = Arrays.copyOf(builders, builders.length + semantics.length);
+
+    for (int i = 0; i < semantics.length; i++) {
+      all[builders.length + i] = AhoCorasick.getBuilder().setMatchSemantics(semantics[i]);
+    }
+
+    return all;
+  }
+
   static StringMatcherBuilder[] getBuilders() {
     return new StringMatcherBuilder[] {
       RabinKarp.getBuilder(),
@@ -161,6 +471,8 @@ public class StringMatcherTest {
       BoyerMoore.getBuilder(),
       NaiveSearch.getBuilder(),
       AhoCorasick.getBuilder(),
+      new CompositeStringMatcherBuilder(),
+      Planner.getBuilder(),
     };
   }
 }
@@ -0,0 +1,65 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.app.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IgnoreRulesTest {
+  @Test
+  void globsMatchWithinSegments() {
+    assertTrue(IgnoreRules.matches("*.log", 0, "build.log", 0));
+    assertFalse(IgnoreRules.matches("*.log", 0, "logs/build", 0));
+    assertFalse(IgnoreRules.matches("*", 0, "a/b", 0));
+    assertTrue(IgnoreRules.matches("file?.txt", 0, "file1.txt", 0));
+    assertFalse(IgnoreRules.matches("a?b", 0, "a/b", 0));
+    assertTrue(IgnoreRules.matches("[a-c]x[!0-9]", 0, "bxy", 0));
+    assertFalse(IgnoreRules.matches("[a-c]x[!0-9]", 0, "bx1", 0));
+    assertTrue(IgnoreRules.matches("\\*", 0, "*", 0));
+    assertFalse(IgnoreRules.matches("\\*", 0, "a", 0));
+  }
+
+  @Test
+  void doubleAsteriskMatchesDirectories() {
+    assertTrue(IgnoreRules.matches("**/foo", 0, "foo", 0));
+    assertTrue(IgnoreRules.matches("**/foo", 0, "a/b/foo", 0));
+    assertTrue(IgnoreRules.matches("a/**/b", 0, "a/b", 0));
+    assertTrue(IgnoreRules.matches("a/**/b", 0, "a/x/y/b", 0));
+    assertFalse(IgnoreRules.matches("a/**/b", 0, "a/xb", 0));
+    assertTrue(IgnoreRules.matches("a/**", 0, "a/x/y", 0));
+    assertFalse(IgnoreRules.matches("a/**", 0, "a", 0));
+  }
+
+  @Test
+  void rulesOfDirectoriesAreApplied() throws IOException {
+    Path root = Files.createTempDirectory("ignore-rules");
+    Path sub = Files.createDirectories(root.resolve("src/sub"));
+
+    Files.writeString(root.resolve(".gitignore"), "# comment\n*.log\n/build/\ndocs/*.md\n!keep.log\n");
+    Files.writeString(sub.resolve(".ignore"), "!important.log\ngenerated\n");
+
+    IgnoreRules rules = IgnoreRules.root().enter(root);
+    IgnoreRules subRules = rules.enter(root.resolve("src")).enter(sub);
+
+    assertTrue(rules.ignores(root.resolve(".git"), true));
+    assertTrue(rules.ignores(root.resolve("a.log"), false));
+    assertFalse(rules.ignores(root.resolve("keep.log"), false));
+    assertTrue(rules.ignores(root.resolve("build"), true));
+    assertFalse(rules.ignores(root.resolve("build"), false));
+    assertFalse(rules.ignores(root.resolve("src/build"), true));
+    assertTrue(rules.ignores(root.resolve("docs/a.md"), false));
+    assertFalse(rules.ignores(root.resolve("src/docs/a.md"), false));
+
+    assertTrue(subRules.ignores(sub.resolve("other.log"), false));
+    assertFalse(subRules.ignores(sub.resolve("important.log"), false));
+    assertTrue(subRules.ignores(sub.resolve("generated"), true));
+    assertFalse(rules.ignores(root.resolve("generated"), true));
+  }
+}
@@ -35,4 +35,18 @@ public class HashMapTest {
       assertEquals(map.get(i), null);
     }
   }
+
+  @Test
+  void collidingKeys() {
+    HashMap<Integer, String> map = new HashMap<>();
+
+    // Same bucket in a table of 128 entries.
+    map.insert(1, "a");
+    map.insert(129, "b");
+    map.insert(1, "c");
+
+    assertEquals("c", map.get(1));
+    assertEquals("b", map.get(129));
+    assertEquals(2, map.size());
+  }
 }
@@ -0,0 +1,66 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InputWindowTest {
+  @Test
+  void capacityIsPowerOfTwo() {
+    assertEquals(1, new InputWindow(0).capacity());
+    assertEquals(4, new InputWindow(3).capacity());
+    assertEquals(8, new InputWindow(8).capacity());
+    assertEquals(3, new InputWindow(3).history());
+  }
+
+  @Test
+  void readHistoryAcrossSegments() {
+    InputWindow window = new InputWindow(5);
+    byte[] array = new byte[16];
+    long position = 0;
+
+    // Segments of varying sizes, some shorter and some longer than the carry-over array.
+    int[] sizes = { 3, 1, 0, 7, 2, 12, 5, 1, 1, 9 };
+
+    for (int size : sizes) {
+      // Place the segment in the middle of the array, surrounded by garbage.
+      for (int i = 0; i < array.length; i++) {
+        array[i] = (byte) -1;
+      }
+
+      for (int i = 0; i < size; i++) {
+        array[2 + i] = (byte) (position + i);
+      }
+
+      window.beginSegment(array, 2, size);
+
+      assertEquals(position, window.segmentStart());
+      assertEquals(position + size, window.end());
+
+      for (long p = Math.max(0, position - window.history()); p < position + size; p++) {
+        assertEquals((byte) p, window.get(p));
+      }
+
+      window.endSegment();
+      position += size;
+    }
+  }
+
+  @Test
+  void clearStartsNewStream() {
+    InputWindow window = new InputWindow(2);
+
+    window.beginSegment(new byte[] { 1, 2, 3 }, 0, 3);
+    window.endSegment();
+    window.clear();
+
+    window.beginSegment(new byte[] { 4, 5 }, 0, 2);
+    assertEquals(0, window.segmentStart());
+    assertEquals(4, window.get(0));
+    assertEquals(5, window.get(1));
+  }
+}
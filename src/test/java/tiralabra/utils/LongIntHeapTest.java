@@ -0,0 +1,68 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongIntHeapTest {
+  @Test
+  void removesPairsInOrderAcrossGrowth() {
+    Random random = new Random(3);
+    LongIntHeap heap = new LongIntHeap(2);
+    long[] pairs = new long[500];
+
+    for (int i = 0; i < pairs.length; i++) {
+      long l = random.nextInt(100);
+      int n = random.nextInt(10);
+
+      heap.push(l, n);
+      pairs[i] = l * 10 + n;
+    }
+
+    Arrays.sort(pairs);
+    assertEquals(pairs.length, heap.size());
+
+    for (long pair : pairs) {
+      assertEquals(pair / 10, heap.peekLong());
+      assertEquals(pair % 10, heap.peekInt());
+      assertTrue(heap.remove());
+    }
+
+    assertTrue(heap.empty());
+    assertFalse(heap.remove());
+  }
+
+  @Test
+  void interleavedPushAndRemove() {
+    LongIntHeap heap = new LongIntHeap(4);
+
+    heap.push(5, 0);
+    heap.push(3, 1);
+    heap.push(3, 0);
+
+    assertEquals(3, heap.peekLong());
+    assertEquals(0, heap.peekInt());
+    heap.remove();
+
+    heap.push(1, 2);
+    assertEquals(1, heap.peekLong());
+    heap.remove();
+
+    assertEquals(3, heap.peekLong());
+    assertEquals(1, heap.peekInt());
+    heap.remove();
+
+    assertEquals(5, heap.peekLong());
+    heap.remove();
+
+    assertTrue(heap.empty());
+    assertThrows(ArrayIndexOutOfBoundsException.class, heap::peekLong);
+  }
+}
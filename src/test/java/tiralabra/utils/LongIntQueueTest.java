@@ -0,0 +1,76 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongIntQueueTest {
+  @Test
+  void pushAndRemoveAcrossGrowth() {
+    LongIntQueue queue = new LongIntQueue(4);
+
+    // Move the start of the queue away from the beginning of the arrays before growing.
+    queue.push(-1, -1);
+    queue.push(-1, -1);
+    queue.remove();
+    queue.remove();
+
+    for (int i = 0; i < 100; i++) {
+      queue.push(i * 10000000000L, i);
+    }
+
+    assertEquals(100, queue.size());
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i * 10000000000L, queue.getLong(0));
+      assertEquals(i, queue.getInt(0));
+      assertTrue(queue.remove());
+    }
+
+    assertTrue(queue.empty());
+    assertFalse(queue.remove());
+  }
+
+  @Test
+  void drainWrappedQueue() {
+    LongIntQueue queue = new LongIntQueue(8);
+
+    for (int i = 0; i < 6; i++) {
+      queue.push(i, i);
+    }
+
+    for (int i = 0; i < 5; i++) {
+      queue.remove();
+    }
+
+    for (int i = 6; i < 12; i++) {
+      queue.push(i, -i);
+    }
+
+    long[] longs = new long[5];
+    int[] ints = new int[5];
+
+    assertEquals(5, queue.drain(longs, ints, 0, 5));
+    assertArrayEquals(new long[] { 5, 6, 7, 8, 9 }, longs);
+    assertArrayEquals(new int[] { 5, -6, -7, -8, -9 }, ints);
+
+    assertEquals(2, queue.drain(longs, ints, 1, 4));
+    assertEquals(10, longs[1]);
+    assertEquals(-11, ints[2]);
+
+    assertTrue(queue.empty());
+  }
+
+  @Test
+  void getOutOfBounds() {
+    LongIntQueue queue = new LongIntQueue(2);
+    queue.push(1, 1);
+
+    assertThrows(ArrayIndexOutOfBoundsException.class, () -> queue.getLong(1));
+    assertThrows(ArrayIndexOutOfBoundsException.class, () -> queue.getInt(-1));
+  }
+}
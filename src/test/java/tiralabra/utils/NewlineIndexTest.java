@@ -0,0 +1,104 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NewlineIndexTest {
+  private static byte[] randomLines(int size, long seed) {
+    Random random = new Random(seed);
+    byte[] array = new byte[size];
+
+    for (int i = 0; i < size; i++) {
+      // Include bytes which differ from a newline only in the high bit.
+      int r = random.nextInt(10);
+      array[i] = (byte) (r == 0 ? '\n' : r == 1 ? 0x8a : r == 2 ? 0x0b : 'a' + r);
+    }
+
+    return array;
+  }
+
+  @Test
+  void findsNewlinesInAllSegments() {
+    byte[] array = randomLines(40, 1);
+
+    for (int from = 0; from <= array.length; from++) {
+      for (int to = from; to <= array.length; to++) {
+        int count = 0;
+        int first = -1;
+        int last = -1;
+
+        for (int i = from; i < to; i++) {
+          if (array[i] == '\n') {
+            count++;
+            last = i;
+
+            if (first == -1)
+              first = i;
+          }
+        }
+
+        assertEquals(count, NewlineIndex.count(array, from, to));
+        assertEquals(first, NewlineIndex.indexOf(array, from, to));
+        assertEquals(last, NewlineIndex.lastIndexOf(array, from, to));
+      }
+    }
+  }
+
+  @Test
+  void countsNewlinesBeforeBlocks() throws IOException {
+    byte[] array = randomLines(1000, 2);
+    File file = File.createTempFile("newline-index", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), array);
+
+    NewlineIndex index;
+
+    try (FileChannel channel = FileChannel.open(file.toPath())) {
+      index = NewlineIndex.build(channel, 64, 3);
+    }
+
+    assertEquals(64, index.blockSize());
+    assertEquals(1000, index.size());
+
+    for (int block = 0; block <= 16; block++) {
+      int end = Math.min(array.length, block * 64);
+      assertEquals(NewlineIndex.count(array, 0, end), index.newlinesBefore(block));
+    }
+  }
+
+  @Test
+  void savedIndexIsCheckedAgainstFile() throws IOException {
+    byte[] array = randomLines(300, 3);
+    File file = File.createTempFile("newline-index", ".txt");
+    File saved = File.createTempFile("newline-index", ".lineidx");
+    file.deleteOnExit();
+    saved.deleteOnExit();
+    Files.write(file.toPath(), array);
+
+    try (FileChannel channel = FileChannel.open(file.toPath())) {
+      NewlineIndex.build(channel, 100, 2).save(saved, 1234);
+    }
+
+    NewlineIndex loaded = NewlineIndex.load(saved, 300, 1234);
+
+    assertNotNull(loaded);
+    assertEquals(100, loaded.blockSize());
+    assertEquals(NewlineIndex.count(array, 0, 200), loaded.newlinesBefore(2));
+    assertEquals(NewlineIndex.count(array, 0, 300), loaded.newlinesBefore(3));
+
+    assertNull(NewlineIndex.load(saved, 301, 1234));
+    assertNull(NewlineIndex.load(saved, 300, 1235));
+    assertNull(NewlineIndex.load(file, 300, 1234));
+  }
+}
@@ -64,4 +64,28 @@ public class RingBufferTest {
 
         assertArrayEquals(buffer.toArray(), new byte[] { 1,2,3,4,5,6,7,8 });
     }
-}
\ No newline at end of file
+
+    @Test
+    void testPartialToArray() {
+        RingBuffer buffer = new RingBuffer(4);
+
+        buffer.pushArray(new byte[] { 1,2,3 });
+        buffer.advance(2);
+        buffer.pushArray(new byte[] { 4,5 });
+
+        assertArrayEquals(new byte[] { 3,4,5 }, buffer.toArray());
+    }
+
+    @Test
+    void testSetCapacityKeepsContents() {
+        RingBuffer buffer = new RingBuffer(4);
+
+        buffer.pushArray(new byte[] { 1,2,3,4 });
+        buffer.advance(2);
+        buffer.pushArray(new byte[] { 5,6 });
+        buffer.setCapacity(8);
+        buffer.pushByte((byte) 7);
+
+        assertArrayEquals(new byte[] { 3,4,5,6,7 }, buffer.toArray());
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * @author : dogamak
+ * @created : 2026-10-19
+**/
+
+package tiralabra.utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpscRingBufferTest {
+  @Test
+  void capacityIsRoundedUpToPowerOfTwo() {
+    assertEquals(1, new SpscRingBuffer<Integer>(1).capacity());
+    assertEquals(8, new SpscRingBuffer<Integer>(5).capacity());
+    assertEquals(8, new SpscRingBuffer<Integer>(8).capacity());
+    assertThrows(IllegalArgumentException.class, () -> new SpscRingBuffer<Integer>(0));
+  }
+
+  @Test
+  void offerAndPollAcrossWrapAround() {
+    SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(4);
+
+    assertNull(queue.poll());
+    assertTrue(queue.empty());
+
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(queue.offer(round * 4 + i));
+      }
+
+      assertFalse(queue.offer(-1));
+      assertEquals(4, queue.size());
+
+      for (int i = 0; i < 3; i++) {
+        assertEquals(round * 4 + i, queue.poll());
+      }
+
+      assertTrue(queue.offer(-2));
+      assertEquals(round * 4 + 3, queue.poll());
+      assertEquals(-2, queue.poll());
+      assertNull(queue.poll());
+    }
+  }
+
+  @Test
+  void elementsArriveInOrderAcrossThreads() throws InterruptedException {
+    SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(16);
+    int count = 100000;
+
+    Thread producer = new Thread(() -> {
+      for (int i = 0; i < count; i++) {
+        queue.put(i);
+      }
+    });
+
+    producer.start();
+
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, queue.take());
+    }
+
+    producer.join();
+    assertTrue(queue.empty());
+  }
+}